@@ -92,7 +92,7 @@ export default function Dashboard() {
       for (const itemId of ["ITEM-001", "ITEM-002"]) {
         const stockResult = await javaApi.getStockLevels(itemId)
         if (stockResult.data) {
-          stockItems.push(stockResult.data)
+          stockItems.push(...stockResult.data)
         }
       }
       setInventory(stockItems)
@@ -0,0 +1,1035 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonReader;
+import eis.bench.Workload;
+import eis.bench.Workloads;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the workloads behind the JMH suites in eis.bench. Lives in the default package so it can use the
+ * server's package-private domain classes directly.
+ */
+public class BenchmarkWorkloads implements Workloads.Provider {
+
+    @Override
+    public Workload create(String operation, int size) throws Exception {
+        if (operation.startsWith("json:")) return serialization(operation.substring(5), size);
+        if (operation.startsWith("stress:")) return stress(operation.substring(7), size);
+        if (operation.startsWith("journal:")) return journal(operation.substring(8), size);
+        if (operation.startsWith("http:")) return http(operation.substring(5));
+        if (operation.startsWith("slotting:")) return slotting(FreeSpaceIndex.Policy.valueOf(operation.substring(9)), size);
+        if (operation.startsWith("putAway:")) return putAway(operation.substring(8), size);
+        if (operation.equals("wavePlan")) return wavePlan(size);
+        if (operation.equals("dispatchCutoff")) return dispatchCutoff(size);
+        if (operation.startsWith("pickScheduler:")) return pickScheduler(Integer.parseInt(operation.substring(14)), size);
+        if (operation.startsWith("ingest:")) return ingest(operation.substring(7), size);
+        if (operation.startsWith("consolidate:")) return consolidate(operation.substring(12), size);
+        if (operation.startsWith("receiving:")) return receiving(operation.substring(10), size);
+        if (operation.startsWith("logging:")) return logging(operation.substring(8));
+        if (operation.startsWith("httpLoad:")) return httpLoad(operation.substring(9), size);
+        if (operation.startsWith("metrics:")) return metrics(operation.substring(8), size);
+        if (operation.startsWith("responseCache:")) return responseCache(operation.substring(14), size);
+        if (operation.startsWith("batch:")) return batch(operation.substring(6), size);
+        return domain(operation, size);
+    }
+
+    // ------------------------------------------------------------------ synthetic catalogue
+
+    static String itemId(int i) { return "ITEM-" + i; }
+
+    static List<Item> items(int n) {
+        List<Item> items = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            items.add(new Item(itemId(i), "Item " + i, "Category " + (i % 50), String.valueOf(1_000_000 + i), 1.0, 20, 100, BigDecimal.valueOf(10 + i % 90)));
+        }
+        return items;
+    }
+
+    // One record per item spread over 10 warehouses; roughly a fifth of them sit at or below the reorder point
+    static StockMonitor stockMonitor(int n) {
+        StockMonitor monitor = new StockMonitor();
+        items(n).forEach(monitor::addItem);
+        for (int i = 0; i < n; i++) {
+            monitor.addInventoryRecord(new InventoryRecord("IR-" + i, itemId(i), "WH-" + (i % 10), "LOC-" + i, i % 100));
+        }
+        return monitor;
+    }
+
+    static ProcurementManager_BP8 procurement(int n, int suppliers) {
+        ProcurementManager_BP8 manager = new ProcurementManager_BP8("MGR-BENCH", new BigDecimal("10000"));
+        items(n).forEach(manager::addItem);
+        for (int i = 0; i < suppliers; i++) {
+            String id = i == 0 ? "SUP-01" : "SUP-" + (i + 1);
+            Supplier_BP8 supplier = new Supplier_BP8(id, "Supplier " + i, "Contact " + i, "s" + i + "@example.com", "555-" + i, i + " Supply Rd");
+            // Varied terms, and every supplier quotes the first ten items, so those items rank `suppliers` candidates
+            supplier.setTerms(3 + (i % 21) / 10.0, 2 + i % 19, BigDecimal.valueOf(i % 4 * 500), true);
+            for (int q = 0; q < Math.min(10, n); q++) supplier.setQuote(itemId(q), BigDecimal.valueOf(8 + (i * 7 + q) % 13));
+            manager.addSupplier(supplier);
+        }
+        return manager;
+    }
+
+    static Warehouse warehouse(int locations, int capacityPerLocation, boolean fillAllButLast) {
+        Warehouse wh = new Warehouse("WH-1", "Bench Warehouse", "1 Bench St", Integer.MAX_VALUE);
+        for (int i = 0; i < locations; i++) {
+            StorageLocation loc = new StorageLocation("LOC-" + i, capacityPerLocation);
+            if (fillAllButLast && i < locations - 1) loc.addItem("FILLER", capacityPerLocation);
+            wh.addStorageLocation(loc);
+        }
+        return wh;
+    }
+
+    // n packed orders; one package in a hundred is labeled and waiting for dispatch, the rest are already manifested
+    static PackingManager packing(int n) {
+        PackingManager packing = new PackingManager();
+        for (int i = 0; i < n; i++) {
+            Order order = new Order("ORD-" + i, "CUST-1", "NORMAL");
+            order.setProcessingStatus();
+            order.compareAndSetStatus(OrderStatus.PROCESSING, OrderStatus.PICKING);
+            packing.addOrder(order);
+            Package pkg = packing.createPackage(order.getOrderId(), "PL-" + i, "BOX");
+            packing.verifyPackage(pkg.getPackageId(), "bench");
+            packing.markLabeled(pkg.getPackageId(), "CR-UPS");
+            if (i % 100 != 0 && pkg.compareAndSetStatus(PackageStatus.LABELED, PackageStatus.MANIFESTED)) packing.packageStatusChanged(pkg);
+        }
+        return packing;
+    }
+
+    static Package labeledPackage(int i, String carrierId) {
+        Package pkg = new Package("PKG-" + i, "ORD-" + i, "PL-" + i, "BOX");
+        pkg.verifyPackage("bench");
+        pkg.markLabeled(carrierId);
+        return pkg;
+    }
+
+    // ------------------------------------------------------------------ domain operations
+
+    private Workload domain(String operation, int n) {
+        switch (operation) {
+            case "stockMonitoring": {
+                StockMonitor monitor = stockMonitor(n);
+                return monitor::performStockMonitoring;
+            }
+            case "stockLevelScan": {
+                StockMonitor monitor = stockMonitor(n);
+                String id = itemId(n / 2);
+                // The lookup API 9 used before StockMonitor kept an item index
+                return () -> monitor.getInventoryRecords().values().stream()
+                        .filter(r -> r.getItemId().equals(id)).findFirst().orElse(null);
+            }
+            case "stockLevelIndexed": {
+                StockMonitor monitor = stockMonitor(n);
+                String id = itemId(n / 2);
+                return () -> monitor.getRecordsForItem(id);
+            }
+            case "labeledPackagesScan": {
+                PackingManager packing = packing(n);
+                // How "all LABELED packages" was answered before PackingManager kept a status index
+                return () -> packing.getPackages().values().stream().filter(p -> p.getStatus() == PackageStatus.LABELED).collect(Collectors.toList());
+            }
+            case "labeledPackagesIndexed": {
+                PackingManager packing = packing(n);
+                return () -> new ArrayList<>(packing.getPackagesByStatus(PackageStatus.LABELED).values());
+            }
+            case "stockQuantityUpdate": {
+                StockMonitor monitor = stockMonitor(n);
+                return () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    return monitor.updateQuantity("IR-" + random.nextInt(n), random.nextInt(100));
+                };
+            }
+            case "findBestSupplier": {
+                ProcurementManager_BP8 manager = procurement(n, Math.max(10, n / 1000));
+                String reqId = manager.createPurchaseRequisition(itemId(0), 0, "BENCH").getRequisitionId();
+                // approveRequisition is the public path into supplier selection; the requisition stays approved after the
+                // first call, so later calls measure the choice itself
+                return () -> manager.approveRequisition(reqId, "BENCH");
+            }
+            case "supplierQuoteUpdate": {
+                // Re-quoting an item re-ranks that item's candidates and moves the supplier's catalogue entry
+                int suppliers = Math.max(10, n / 1000);
+                ProcurementManager_BP8 manager = procurement(n, suppliers);
+                return () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int s = random.nextInt(suppliers);
+                    return manager.setSupplierQuote(s == 0 ? "SUP-01" : "SUP-" + (s + 1), itemId(random.nextInt(10)), BigDecimal.valueOf(5 + random.nextInt(10)));
+                };
+            }
+            case "pendingRequisitions": {
+                ProcurementManager_BP8 manager = procurement(n, 1);
+                for (int i = 0; i < n; i++) {
+                    PurchaseRequisition req = manager.createPurchaseRequisition(itemId(i), 0, "BENCH");
+                    if (i % 2 == 0) manager.approveRequisition(req.getRequisitionId(), "BENCH");
+                }
+                // First page, as GET /api/procurement/requisitions/pending?limit=100 serves it
+                return () -> manager.getPendingRequisitions(null, Page.DEFAULT_LIMIT);
+            }
+            case "findAvailableLocation": {
+                Warehouse wh = warehouse(n, 100, true);
+                return () -> wh.findAvailableLocation(10);
+            }
+            case "storeItem": {
+                StorageManager storage = new StorageManager();
+                storage.addWarehouse(warehouse(n, Integer.MAX_VALUE / 2, false));
+                items(Math.min(n, 1000)).forEach(storage::addItem);
+                return () -> storage.processItemStorage(itemId(ThreadLocalRandom.current().nextInt(Math.min(n, 1000))), "WH-1", 1, "BENCH");
+            }
+            case "nextId":
+                return () -> IdGenerator.next("PO");
+            case "ledgerPost": {
+                // One receipt into a random SKU and bin; the ledger keeps every movement, so it grows through the run
+                InventorySystem ledger = new InventorySystem();
+                return () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    return ledger.receive(itemId(random.nextInt(n)), "BIN-" + random.nextInt(8), 1 + random.nextInt(10), "BENCH");
+                };
+            }
+            case "ledgerStockAsOf": {
+                // Per-bin stock of a random SKU at a random instant of a 1M-movement history
+                InventorySystem ledger = ledger(n, 1_000_000);
+                List<StockMovement> first = ledger.getMovementLog().values().stream().limit(1).collect(Collectors.toList());
+                LocalDateTime from = first.get(0).getPostedAt(), to = LocalDateTime.now();
+                long span = java.time.Duration.between(from, to).toMillis();
+                return () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    return ledger.getOnHandByBin(itemId(random.nextInt(n)), from.plusNanos(random.nextLong(span + 1) * 1_000_000));
+                };
+            }
+            case "pickConfirm": {
+                // One scan against an assigned batch list of n lines, through PickingManager as API 15 records it; every line
+                // needs far more units than a run confirms, so the list stays open
+                List<PickLine> lines = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    PickLine line = new PickLine(itemId(i), "A1-" + i);
+                    line.allocate("ORD-" + i % 100, 1_000_000_000);
+                    lines.add(line);
+                }
+                PickList pl = new PickList("PL-BENCH", "WAVE-BENCH", "NORMAL", new ArrayList<>(), lines);
+                pl.compareAndSetStatus(PickListStatus.PENDING, PickListStatus.ASSIGNED);
+                PickingManager picking = new PickingManager();
+                picking.restorePickList(pl);
+                return () -> picking.recordPickedItem("PL-BENCH", itemId(ThreadLocalRandom.current().nextInt(n)), 1, "BENCH");
+            }
+            default:
+                throw new IllegalArgumentException("Unknown domain operation: " + operation);
+        }
+    }
+
+    // ------------------------------------------------------------------ slotting
+
+    // Fills `bins` empty bins of capacity 100 with put-aways of 1..80 units (same seeded sequence for every policy)
+    // until the first one no bin can take, then reports how full the bins were at that point.
+    private Workload slotting(FreeSpaceIndex.Policy policy, int bins) {
+        Warehouse wh = warehouse(bins, 100, false);
+        wh.setSlottingPolicy(policy);
+        Random quantities = new Random(42);
+        return new Workload() {
+            long putAways;
+            public Object run() {
+                while (wh.allocate("ITEM-1", 1 + quantities.nextInt(80)) != null) putAways++;
+                return putAways;
+            }
+            public String report() {
+                return String.format("%s: %d put-aways, bins %.1f%% full at first overflow", policy, putAways, 100.0 * wh.getUsedCapacity() / (bins * 100L));
+            }
+        };
+    }
+
+    // Stores `lines` put-away lines of 1..20 units into a fresh 50k-bin warehouse, either as one
+    // processItemStorageBatch call ("batch") or one processItemStorage call per line ("single").
+    private Workload putAway(String mode, int lines) {
+        StorageManager storage = new StorageManager();
+        storage.addWarehouse(warehouse(50_000, 100, false));
+        Random random = new Random(42);
+        List<PutAwayLine> batch = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) batch.add(new PutAwayLine(i, itemId(i % 1000), "WH-1", 1 + random.nextInt(20)));
+        switch (mode) {
+            case "batch":
+                return () -> storage.processItemStorageBatch(batch, "BENCH");
+            case "single":
+                return () -> {
+                    int stored = 0;
+                    for (PutAwayLine line : batch) if (storage.processItemStorage(line.getItemId(), line.getWarehouseId(), line.getQuantity(), "BENCH")) stored++;
+                    return stored;
+                };
+            default:
+                throw new IllegalArgumentException("Unknown put-away mode: " + mode);
+        }
+    }
+
+    // ------------------------------------------------------------------ wave planning
+
+    // `orders` PROCESSING orders of 1-5 lines over 10k items slotted in 20 aisles x 500 bays, planned by the same
+    // WavePlanner PickingManager.planWaves uses (side-effect free, so it can run repeatedly on the same backlog)
+    private Workload wavePlan(int orders) {
+        Map<String, String> locations = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) locations.put(itemId(i), "A" + (1 + i % 20) + "-" + String.format("%03d", 1 + i / 20));
+        Random random = new Random(42);
+        List<Order> backlog = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            Order order = new Order("ORD-" + i, "CUST-1", i % 10 == 0 ? "HIGH" : "NORMAL");
+            for (int l = 1 + random.nextInt(5); l > 0; l--) order.addOrderItem(itemId(random.nextInt(10_000)), "Item", 1 + random.nextInt(3), 10.0);
+            backlog.add(order);
+        }
+        WavePlanner planner = new WavePlanner(locations, new PickPath(locations.values()), 2000, 40);
+        return new Workload() {
+            List<Wave> waves = List.of();
+            public Object run() {
+                waves = planner.plan(backlog).waves;
+                return waves;
+            }
+            public String report() {
+                long planned = waves.stream().mapToLong(Wave::getPlannedDistance).sum();
+                long single = waves.stream().mapToLong(Wave::getSingleOrderDistance).sum();
+                long lists = waves.stream().mapToLong(w -> w.getPickListIds().size()).sum();
+                return String.format("%d waves, %d pick lists; travel %d batched vs %d one-trip-per-order (%.1f%% saved)",
+                        waves.size(), lists, planned, single, single == 0 ? 0.0 : 100.0 * (single - planned) / single);
+            }
+        };
+    }
+
+    // ------------------------------------------------------------------ dispatch
+
+    // End-of-day cutoff on top of `history` packages already shipped on earlier manifests: each run labels 100 packages
+    // for each of 200 carriers and then builds every carrier's manifest.
+    private Workload dispatchCutoff(int history) {
+        DispatchManager dispatch = new DispatchManager();
+        int carriers = 200, perCarrier = 100;
+        for (int c = 0; c < carriers; c++) dispatch.addCarrier(new Carrier("CR-" + c, "Carrier " + c, "C" + c));
+        for (int i = 0; i < history; i++) dispatch.addPackage(labeledPackage(i, "CR-" + (i % carriers)));
+        for (int c = 0; c < carriers; c++) dispatch.createDispatchManifestForCarrier("CR-" + c);
+        int[] next = {history};
+        LongAdder labeled = new LongAdder();
+        return new Workload() {
+            public Object run() {
+                for (int i = 0; i < carriers * perCarrier; i++) dispatch.addPackage(labeledPackage(next[0]++, "CR-" + (i % carriers)));
+                labeled.add(carriers * perCarrier);
+                List<DispatchManifest> built = new ArrayList<>(carriers);
+                for (int c = 0; c < carriers; c++) built.add(dispatch.createDispatchManifestForCarrier("CR-" + c));
+                return built;
+            }
+            public void verify() {
+                long shipped = dispatch.getManifests().values().stream().mapToLong(m -> m.getPackageIds().size()).sum();
+                long distinct = dispatch.getManifests().values().stream().flatMap(m -> m.getPackageIds().stream()).distinct().count();
+                check("packages on manifests", history + labeled.sum(), shipped);
+                check("packages on two manifests", 0, shipped - distinct);
+                check("packages left in the working set", 0, dispatch.getPackages().size());
+            }
+        };
+    }
+
+    // ------------------------------------------------------------------ picker scheduling
+
+    // `openLists` PENDING pick lists queued in front of `pickers` pickers, all busy but one, driven straight through the
+    // PickScheduler PickingManager uses. Each operation queues one new list, auto-assigns one and completes it, so the
+    // queue stays `openLists` deep and the picker pool stays saturated; lists are not retained once completed.
+    private Workload pickScheduler(int pickers, int openLists) {
+        PickScheduler scheduler = new PickScheduler();
+        Random random = new Random(42);
+        String[] priorities = {"URGENT", "HIGH", "NORMAL", "NORMAL", "NORMAL", "LOW"};
+        List<PickLine> lines = new ArrayList<>();
+        for (int l = 0; l < 10; l++) lines.add(new PickLine(itemId(l), "A1-" + String.format("%03d", l + 1)));
+        java.util.function.Supplier<PickList> newList = () ->
+                new PickList(IdGenerator.next("PL"), null, priorities[random.nextInt(priorities.length)], List.of(), lines);
+        for (int i = 0; i < pickers; i++) scheduler.addPicker("PICKER-" + i);
+        for (int i = 0; i < openLists + pickers - 1; i++) scheduler.enqueue(newList.get());
+        scheduler.assignPending(pickers - 1);
+        return new Workload() {
+            public Object run() {
+                scheduler.enqueue(newList.get());
+                List<PickList> assigned = scheduler.assignPending(1);
+                for (PickList pl : assigned) { pl.markCompleted(); scheduler.release(pl); }
+                return assigned;
+            }
+            public String report() {
+                return scheduler.getStats().toString();
+            }
+        };
+    }
+
+    // ------------------------------------------------------------------ purchase order consolidation
+
+    // `requisitions` approved requisitions over 1000 items, each item quoted by one of 50 suppliers, for 4 delivery
+    // addresses, ordered either as one consolidated PO per supplier and address ("consolidated") or one PO per
+    // requisition through generatePurchaseOrder ("single"). Every run starts from a fresh manager and creates and approves
+    // its requisitions first, which costs the same in both modes; report() gives the ordering step alone.
+    private Workload consolidate(String mode, int requisitions) {
+        if (!mode.equals("consolidated") && !mode.equals("single")) throw new IllegalArgumentException("Unknown consolidation mode: " + mode);
+        int suppliers = 50, itemCount = 1000;
+        String[] addresses = {"1 North Dock", "2 East Dock", "3 South Dock", "4 West Dock"};
+        return new Workload() {
+            ProcurementManager_BP8 manager;
+            long orderingNanos; int purchaseOrders;
+            public Object run() {
+                manager = procurement(itemCount, 0);
+                for (int s = 0; s < suppliers; s++) {
+                    Supplier_BP8 supplier = new Supplier_BP8("SUP-" + s, "Supplier " + s, "Contact", "s@example.com", "555", s + " Supply Rd");
+                    for (int i = s; i < itemCount; i += suppliers) supplier.setQuote(itemId(i), BigDecimal.valueOf(5 + i % 5));
+                    manager.addSupplier(supplier);
+                }
+                List<String> ids = new ArrayList<>(requisitions);
+                for (int r = 0; r < requisitions; r++) {
+                    PurchaseRequisition req = manager.createPurchaseRequisition(itemId(r % itemCount), 0, "BENCH", addresses[r % addresses.length]);
+                    manager.approveRequisition(req.getRequisitionId(), "BENCH");
+                    ids.add(req.getRequisitionId());
+                }
+                long start = System.nanoTime();
+                if (mode.equals("consolidated")) {
+                    purchaseOrders = manager.consolidateApproved(java.time.Duration.ZERO).size();
+                } else {
+                    for (String id : ids) manager.generatePurchaseOrder(id, addresses[0]);
+                    purchaseOrders = manager.getPurchaseOrders().size();
+                }
+                orderingNanos = System.nanoTime() - start;
+                return purchaseOrders;
+            }
+            public void verify() {
+                long ordered = manager.getRequisitionsByStatus(RequisitionStatus.ORDERED).size();
+                long onOrders = manager.getPurchaseOrders().values().stream().mapToLong(po -> po.getRequisitionIds().size()).sum();
+                check("requisitions ordered", requisitions, ordered);
+                check("requisitions on purchase orders", requisitions, onOrders);
+            }
+            public String report() {
+                return String.format("%d requisitions -> %d purchase orders; ordering step %.1f ms (%.0f requisitions/s)", requisitions,
+                        purchaseOrders, orderingNanos / 1e6, requisitions / (orderingNanos / 1e9));
+            }
+        };
+    }
+
+    // ------------------------------------------------------------------ order ingestion
+
+    // `orders` orders of 1-5 lines, rendered once as a JSON array ("array") or as NDJSON ("ndjson"), streamed through
+    // OrderIngestion into a fresh OrderRepository on every run (the journal is not attached, as with persistence off)
+    private Workload ingest(String format, int orders) {
+        boolean ndjson;
+        switch (format) {
+            case "array": ndjson = false; break;
+            case "ndjson": ndjson = true; break;
+            default: throw new IllegalArgumentException("Unknown ingest format: " + format);
+        }
+        Random random = new Random(42);
+        String[] priorities = {"URGENT", "HIGH", "NORMAL", "NORMAL", "NORMAL", "LOW"};
+        StringBuilder body = new StringBuilder(orders * 200).append(ndjson ? "" : "[");
+        for (int i = 0; i < orders; i++) {
+            if (i > 0) body.append(ndjson ? "\n" : ",");
+            body.append("{\"orderId\":\"ORD-").append(i).append("\",\"customerId\":\"CUST-").append(random.nextInt(10_000))
+                    .append("\",\"priority\":\"").append(priorities[random.nextInt(priorities.length)]).append("\",\"items\":[");
+            for (int l = 1 + random.nextInt(5); l > 0; l--) {
+                body.append("{\"itemId\":\"").append(itemId(random.nextInt(10_000))).append("\",\"itemName\":\"Item\",\"quantity\":")
+                        .append(1 + random.nextInt(3)).append(",\"unitPrice\":19.99}").append(l > 1 ? "," : "");
+            }
+            body.append("]}");
+        }
+        byte[] bytes = body.append(ndjson ? "\n" : "]").toString().getBytes(StandardCharsets.UTF_8);
+        return new Workload() {
+            OrderRepository repo;
+            public Object run() throws Exception {
+                repo = new OrderRepository();
+                OrderIngestion ingestion = new OrderIngestion(repo);
+                ingestion.run(new JsonReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)));
+                if (ingestion.failed() || ingestion.getAccepted() != orders) throw new IllegalStateException("Ingestion failed");
+                return ingestion;
+            }
+            public void verify() {
+                check("orders ingested", orders, repo.getOrders().size());
+                check("orders PROCESSING", orders, repo.getByStatus(OrderStatus.PROCESSING).size());
+            }
+            public String report() {
+                return String.format("%d orders, %.1f MB of %s", orders, bytes.length / 1e6, format);
+            }
+        };
+    }
+
+    // ------------------------------------------------------------------ receiving and QC
+
+    static final Duration QC_INSPECTION = Duration.ofMillis(1);
+
+    // `batches` goods batches through receiving and QC, each inspection taking QC_INSPECTION (a station's time per batch).
+    // "sync" runs InspectIncomingGoodsProcess per batch on the caller, as API 6 used to; a number runs a fresh
+    // ReceivingPipeline with that many QC workers, fed in scanner submissions of 50 that back off while it is full, and
+    // the run ends when the last receipt is finished
+    private Workload receiving(String mode, int batches) {
+        List<GoodsBatch> all = new ArrayList<>(batches);
+        for (int i = 0; i < batches; i++) all.add(new GoodsBatch(itemId(i % 1000), "BATCH-" + i, 1 + i % 100));
+        if (mode.equals("sync")) {
+            return new Workload() {
+                int grns;
+                public Object run() {
+                    InspectIncomingGoodsProcess process = new InspectIncomingGoodsProcess(
+                            new WarehouseReceiving(), new QualityControl(QC_INSPECTION), new InventoryManager_BP4());
+                    grns = 0;
+                    for (GoodsBatch b : all) if (process.execute(b.sku, b.batchId, b.quantity) != null) grns++;
+                    return grns;
+                }
+                public void verify() { check("GRNs issued", batches, grns); }
+            };
+        }
+        int workers = Integer.parseInt(mode);
+        return new Workload() {
+            ReceivingPipeline pipeline;
+            long slowestAckNanos; int refusals;
+            public Object run() throws Exception {
+                if (pipeline != null) pipeline.stop();
+                pipeline = new ReceivingPipeline(new InventorySystem(), new QualityControl(QC_INSPECTION), workers, 64, 1000);
+                CountDownLatch done = new CountDownLatch(batches);
+                pipeline.subscribe(r -> done.countDown());
+                pipeline.start();
+                slowestAckNanos = 0; refusals = 0;
+                for (int from = 0; from < batches; from += 50) {
+                    List<GoodsBatch> submission = all.subList(from, Math.min(from + 50, batches));
+                    for (;;) {
+                        long start = System.nanoTime();
+                        List<Receipt> receipts = pipeline.submit(submission);
+                        slowestAckNanos = Math.max(slowestAckNanos, System.nanoTime() - start);
+                        if (receipts != null) break;
+                        refusals++;
+                        Thread.sleep(1);
+                    }
+                }
+                if (!done.await(5, TimeUnit.MINUTES)) throw new IllegalStateException("Receiving pipeline stalled");
+                return pipeline;
+            }
+            public void verify() {
+                check("receipts", batches, pipeline.getReceipts().size());
+                check("receipts ACCEPTED", batches, pipeline.getByStatus(ReceiptStatus.ACCEPTED).size());
+            }
+            public String report() {
+                return String.format("%d QC workers: slowest acknowledgement %.1f us, %d submissions refused while full",
+                        workers, slowestAckNanos / 1e3, refusals);
+            }
+            public void close() { pipeline.stop(); }
+        };
+    }
+
+    // ------------------------------------------------------------------ stock ledger
+
+    // `movements` receipts and transfers over `skus` SKUs in 4 bins each
+    static InventorySystem ledger(int skus, int movements) {
+        InventorySystem ledger = new InventorySystem();
+        Random random = new Random(42);
+        for (int i = 0; i < movements; i++) {
+            String sku = itemId(random.nextInt(skus));
+            if (i % 3 == 2) {
+                try {
+                    ledger.transfer(sku, "BIN-" + random.nextInt(4), "BIN-" + random.nextInt(4), 1, "SETUP");
+                } catch (IllegalArgumentException e) {
+                    ledger.receive(sku, "BIN-0", 1, "SETUP");
+                }
+            } else {
+                ledger.receive(sku, "BIN-" + random.nextInt(4), 1 + random.nextInt(10), "SETUP");
+            }
+        }
+        return ledger;
+    }
+
+    // ------------------------------------------------------------------ logging
+
+    // The pick-recorded log line of PickingManager.recordPickedItem, written to /dev/null. "stdout" is the old path:
+    // string concatenation and println on a PrintStream built like System.out (autoflush over a 128-byte buffer), whose
+    // lock every thread shares. "async" publishes the same event through an EventLog ring drained by its writer thread.
+    private Workload logging(String mode) throws Exception {
+        java.io.FileOutputStream devNull = new java.io.FileOutputStream("/dev/null");
+        String[] itemIds = new String[1024];
+        for (int i = 0; i < itemIds.length; i++) itemIds[i] = itemId(i);
+        switch (mode) {
+            case "stdout": {
+                java.io.PrintStream out = new java.io.PrintStream(new java.io.BufferedOutputStream(devNull, 128), true);
+                return () -> {
+                    int i = ThreadLocalRandom.current().nextInt(itemIds.length);
+                    out.println("Item " + itemIds[i] + " picked for list " + "PL-1001" + " qty=" + (i & 7));
+                    return out;
+                };
+            }
+            case "async": {
+                EventLog log = new EventLog(new java.io.BufferedWriter(new java.io.OutputStreamWriter(devNull, StandardCharsets.UTF_8), 1 << 16),
+                        8192, EventLog.Level.INFO);
+                return new Workload() {
+                    public Object run() {
+                        int i = ThreadLocalRandom.current().nextInt(itemIds.length);
+                        log.event(EventLog.Level.INFO, "pick.recorded").with("itemId", itemIds[i]).with("pickListId", "PL-1001").with("qty", i & 7).publish();
+                        return log;
+                    }
+                    public String report() { return "events dropped so far: " + log.getDropped(); }
+                    public void close() { log.close(); }
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown logging mode: " + mode);
+        }
+    }
+
+    // ------------------------------------------------------------------ serialization
+
+    // json:reflective:<type> is the previous response path: reflective Gson with JsonSerializer lambdas, rendered to a String.
+    // json:streaming:<type> is the current one: JsonWritable writers straight onto a Writer, as the json(...) route wrapper does.
+    private Workload serialization(String operation, int n) {
+        int colon = operation.indexOf(':');
+        String mode = operation.substring(0, colon), type = operation.substring(colon + 1);
+        Object payload = payload(type, n);
+        Gson reflective = reflectiveGson(), streaming = WarehouseApiServer.createGson();
+        StringWriter sample = new StringWriter();
+        streaming.toJson(payload, sample);
+        if (!sample.toString().equals(reflective.toJson(payload))) throw new IllegalStateException("Streaming JSON differs for " + type);
+        switch (mode) {
+            case "reflective":
+                return () -> reflective.toJson(payload);
+            case "streaming": {
+                CountingWriter sink = new CountingWriter();
+                return () -> { streaming.toJson(payload, sink); return sink.count; };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown serialization mode: " + mode);
+        }
+    }
+
+    static Gson reflectiveGson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(LocalDate.class, (JsonSerializer<LocalDate>) (src, t, ctx) -> new JsonPrimitive(src.toString()))
+                .registerTypeAdapter(LocalDateTime.class, (JsonSerializer<LocalDateTime>) (src, t, ctx) -> new JsonPrimitive(src.toString()))
+                .create();
+    }
+
+    // Stands in for the response stream: counts characters and drops them
+    static final class CountingWriter extends Writer {
+        long count;
+        @Override public void write(char[] buf, int off, int len) { count += len; }
+        @Override public void write(String str, int off, int len) { count += len; }
+        @Override public void write(int c) { count++; }
+        @Override public void flush() {}
+        @Override public void close() {}
+    }
+
+    static Object payload(String type, int n) {
+        switch (type) {
+            case "purchaseOrder": {
+                PurchaseOrder po = new PurchaseOrder("PR-BENCH", "SUP-01", "TechDistro", "123 Main St");
+                for (int i = 0; i < 10; i++) po.addOrderItem(itemId(i), "Item " + i, 10 + i, BigDecimal.valueOf(19.99));
+                return po;
+            }
+            case "pendingRequisitions": {
+                ProcurementManager_BP8 manager = procurement(n, 1);
+                for (int i = 0; i < n; i++) manager.createPurchaseRequisition(itemId(i), 0, "BENCH");
+                return manager.getPendingRequisitions();
+            }
+            case "inventoryRecords":
+                return new ArrayList<>(stockMonitor(n).getInventoryRecords().values());
+            case "stockAlerts": {
+                StockMonitor monitor = new StockMonitor();
+                items(n).forEach(monitor::addItem);
+                for (int i = 0; i < n; i++) monitor.addInventoryRecord(new InventoryRecord("IR-" + i, itemId(i), "WH-1", "LOC-" + i, 1));
+                return monitor.performStockMonitoring();
+            }
+            case "pickList":
+                return new PickList(IdGenerator.next("PL"), "ORD-1001");
+            case "package":
+                return new Package(IdGenerator.next("PKG"), "ORD-1001", "PL-1", "BOX");
+            case "shippingLabel":
+                return new ShippingLabel(IdGenerator.next("LBL"), "PKG-1", "ORD-1001", "CR-UPS");
+            case "dispatchManifest":
+                return new DispatchManifest(IdGenerator.next("MAN"), "CR-UPS", "UPS");
+            case "warehouse":
+                return warehouse(n, 100, false);
+            case "pickers": {
+                PickingManager picking = new PickingManager();
+                for (int i = 0; i < n; i++) picking.addPicker("PICKER-" + i);
+                return picking.getAvailablePickers();
+            }
+            default:
+                throw new IllegalArgumentException("Unknown payload type: " + type);
+        }
+    }
+
+    // ------------------------------------------------------------------ multi-threaded stress (throughput; ManagerConcurrencyTest checks correctness)
+
+    private Workload stress(String operation, int n) {
+        switch (operation) {
+            case "procurement": {
+                ProcurementManager_BP8 manager = procurement(n, 1);
+                return () -> {
+                    PurchaseRequisition req = manager.createPurchaseRequisition(itemId(ThreadLocalRandom.current().nextInt(n)), 0, "BENCH");
+                    manager.approveRequisition(req.getRequisitionId(), "BENCH");
+                    return manager.generatePurchaseOrder(req.getRequisitionId(), "1 Bench St");
+                };
+            }
+            case "putAway": {
+                StorageManager storage = new StorageManager();
+                storage.addWarehouse(warehouse(1000, 1_000_000, false));
+                return () -> storage.processItemStorage(itemId(ThreadLocalRandom.current().nextInt(n)), "WH-1", 1, "BENCH");
+            }
+            case "pickAssignment": {
+                PickingManager picking = new PickingManager();
+                for (int i = 0; i < n; i++) {
+                    Order order = new Order("ORD-" + i, "CUST-1", "NORMAL");
+                    order.setProcessingStatus();
+                    picking.addOrder(order);
+                }
+                for (int p = 1; p <= 8; p++) picking.addPicker("PICKER-0" + p);
+                return () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    PickList pl = picking.generatePickList("ORD-" + random.nextInt(n));
+                    List<String> ids = new ArrayList<>(picking.getPickLists().keySet());
+                    if (ids.isEmpty()) return pl;
+                    picking.assignPickList(ids.get(random.nextInt(ids.size())), "PICKER-0" + (1 + random.nextInt(8)));
+                    // Finish some list so pickers come free again; only an ASSIGNED list completes
+                    picking.completePickList(ids.get(random.nextInt(ids.size())));
+                    return pl;
+                };
+            }
+            case "stockUpdates": {
+                StockMonitor monitor = stockMonitor(n);
+                return () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    return monitor.updateQuantity("IR-" + random.nextInt(n), random.nextInt(100));
+                };
+            }
+            case "ledger": {
+                // Receipts and bin-to-bin transfers of the same SKUs from every thread
+                InventorySystem ledger = new InventorySystem();
+                return () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    String sku = itemId(random.nextInt(n));
+                    if (random.nextBoolean()) return ledger.receive(sku, "BIN-0", 5, "BENCH");
+                    try {
+                        return ledger.transfer(sku, "BIN-0", "BIN-1", 1, "BENCH");
+                    } catch (IllegalArgumentException e) {
+                        return e; // BIN-0 empty for this SKU
+                    }
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown stress operation: " + operation);
+        }
+    }
+
+    static void check(String what, long expected, long actual) {
+        if (expected != actual) throw new IllegalStateException("Lost updates in " + what + ": expected " + expected + " but found " + actual);
+    }
+
+    // ------------------------------------------------------------------ metrics
+
+    // One request's worth of recording (begin, tag with the route pattern, end with a status) against `routes` patterns,
+    // or one /metrics scrape once every pattern has been hit
+    private Workload metrics(String operation, int routes) {
+        Metrics metrics = new Metrics();
+        String[] patterns = new String[routes];
+        for (int i = 0; i < routes; i++) patterns[i] = "/api/bench/route-" + i + "/:id";
+        for (String pattern : patterns) {
+            Metrics.Timing t = metrics.begin();
+            metrics.tag(t, "GET", pattern);
+            metrics.end(t, "GET", 200);
+        }
+        switch (operation) {
+            case "record":
+                return () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    Metrics.Timing t = metrics.begin();
+                    metrics.tag(t, "GET", patterns[random.nextInt(routes)]);
+                    metrics.end(t, "GET", random.nextInt(20) == 0 ? 500 : 200);
+                    return metrics;
+                };
+            case "render":
+                return metrics::render;
+            default:
+                throw new IllegalArgumentException("Unknown metrics operation: " + operation);
+        }
+    }
+
+    // ------------------------------------------------------------------ response cache
+
+    // What one poll of GET /api/warehouse/capacity costs the route for a warehouse of `locations` bins, HTTP aside:
+    // "render" is every poll serializing the warehouse (no cache), "hit" a poll served from the response cache,
+    // "notModified" a poll whose If-None-Match is current. Each looks up the version and builds the ETag first.
+    private Workload responseCache(String mode, int locations) {
+        Gson gson = WarehouseApiServer.createGson();
+        Warehouse wh = warehouse(locations, 100, false);
+        for (int i = 0; i < locations; i += 2) wh.allocate(itemId(i), 10);
+        EntityVersions versions = new EntityVersions();
+        ResponseCache cache = new ResponseCache(versions, mode.equals("render") ? 0 : 10_000);
+        String current = versions.etag(versions.stamp("warehouse/WH-1"));
+        return () -> {
+            EntityVersions.Stamp stamp = versions.stamp("warehouse/WH-1");
+            String etag = versions.etag(stamp);
+            switch (mode) {
+                case "notModified":
+                    return versions.notModified(stamp, current, null) ? etag : null;
+                case "hit":
+                case "render":
+                    return cache.get("warehouse/WH-1", stamp.version, () -> gson.toJson(wh).getBytes(StandardCharsets.UTF_8));
+                default:
+                    throw new IllegalArgumentException("Unknown response cache mode: " + mode);
+            }
+        };
+    }
+
+    // ------------------------------------------------------------------ persistence
+
+    private Workload journal(String operation, int n) throws Exception {
+        Path dir = Files.createTempDirectory("warehouse-journal-bench");
+        ProcurementManager_BP8 source = procurement(1, 1);
+        for (int i = 0; i < n; i++) source.createPurchaseRequisition(itemId(0), 0, "BENCH");
+        switch (operation) {
+            case "append": {
+                DomainJournal journal = new DomainJournal(dir, 4096, Long.MAX_VALUE, Long.MAX_VALUE);
+                journal.start();
+                List<PurchaseRequisition> reqs = new ArrayList<>(source.getPurchaseRequisitions().values());
+                return new Workload() {
+                    public Object run() {
+                        PurchaseRequisition req = reqs.get(ThreadLocalRandom.current().nextInt(reqs.size()));
+                        journal.record("requisition", req.getRequisitionId(), req);
+                        return req;
+                    }
+                    public void close() throws Exception {
+                        journal.close();
+                        deleteRecursively(dir);
+                    }
+                };
+            }
+            case "recover": {
+                DomainJournal writer = new DomainJournal(dir, 4096, Long.MAX_VALUE, Long.MAX_VALUE);
+                writer.register("requisition", PurchaseRequisition.class, (id, r) -> source.restoreRequisition(r));
+                writer.start();
+                source.getPurchaseRequisitions().forEach((id, r) -> writer.record("requisition", id, r));
+                writer.close();
+                return new Workload() {
+                    public Object run() {
+                        ProcurementManager_BP8 target = procurement(1, 1);
+                        DomainJournal journal = new DomainJournal(dir, 4096, Long.MAX_VALUE, Long.MAX_VALUE);
+                        journal.register("requisition", PurchaseRequisition.class, (id, r) -> target.restoreRequisition(r));
+                        journal.recover();
+                        check("recovered requisitions", n, target.getPurchaseRequisitions().size());
+                        return target;
+                    }
+                    public void close() throws Exception {
+                        deleteRecursively(dir);
+                    }
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown journal operation: " + operation);
+        }
+    }
+
+    static void deleteRecursively(Path dir) throws Exception {
+        try (java.util.stream.Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) Files.deleteIfExists(p);
+        }
+    }
+
+    // ------------------------------------------------------------------ in-process HTTP
+
+    private static final String BASE_URL = "http://localhost:4567";
+    private static Map<String, String> seededIds;
+
+    private static synchronized Map<String, String> startServer(HttpClient client) throws Exception {
+        if (seededIds != null) return seededIds;
+        System.setProperty("warehouse.persistence", "false");
+        WarehouseApiServer.main(new String[0]);
+        spark.Spark.awaitInitialization();
+
+        // Walk one order through the whole flow so every route has a real entity to address
+        Map<String, String> ids = new HashMap<>();
+        JsonElement po = send(client, "POST", "/api/procurement/purchase-orders");
+        ids.put("purchaseOrder", po.getAsJsonObject().get("purchaseOrderId").getAsString());
+        ids.put("requisition", po.getAsJsonObject().get("requisitionId").getAsString());
+        JsonElement pl = send(client, "POST", "/api/warehouse/picking/create-picklist/ORD-1001");
+        ids.put("pickList", pl.getAsJsonObject().get("pickListId").getAsString());
+        send(client, "PUT", "/api/warehouse/picking/picklists/" + ids.get("pickList") + "/assign/PICKER-01");
+        JsonElement pkg = send(client, "POST", "/api/warehouse/packing/pack-order/" + ids.get("pickList"));
+        ids.put("package", pkg.getAsJsonObject().get("packageId").getAsString());
+        JsonElement label = send(client, "POST", "/api/shipping/labels/generate/" + ids.get("package") + "/CR-UPS/GROUND");
+        ids.put("label", label.getAsJsonObject().get("labelId").getAsString());
+        JsonElement manifest = send(client, "POST", "/api/shipping/dispatch/create-manifest/CR-UPS");
+        ids.put("manifest", manifest.getAsJsonObject().get("manifestId").getAsString());
+        JsonElement ret = send(client, "POST", "/api/returns/initiate");
+        ids.put("return", ret.getAsJsonObject().get("returnId").getAsString());
+        JsonElement audit = send(client, "POST", "/api/inventory/audits/initiate");
+        ids.put("audit", audit.getAsJsonObject().get("requestId").getAsString());
+        send(client, "POST", "/api/inventory/audits/" + ids.get("audit") + "/data");
+        seededIds = ids;
+        return ids;
+    }
+
+    private static JsonElement send(HttpClient client, String method, String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(BASE_URL + path)).method(method, HttpRequest.BodyPublishers.noBody()).build();
+        return JsonParser.parseString(client.send(request, HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    private Workload http(String route) throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        Map<String, String> ids = startServer(client);
+        String[] parts = route.split(" ", 2);
+        String path = parts[1];
+        for (Map.Entry<String, String> id : ids.entrySet()) path = path.replace("{" + id.getKey() + "}", id.getValue());
+        HttpRequest request = HttpRequest.newBuilder(URI.create(BASE_URL + path)).method(parts[0], HttpRequest.BodyPublishers.noBody()).build();
+        return new Workload() {
+            public Object run() throws Exception {
+                return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            }
+            public void close() {
+                spark.Spark.stop();
+                spark.Spark.awaitStop();
+            }
+        };
+    }
+
+    // A handheld's run of `scans` pick confirmations against one assigned pick list, over the in-process server:
+    // "individual" is one PUT per scan (API 15), "batch" all of them in one POST /api/batch.
+    private Workload batch(String mode, int scans) throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        startServer(client);
+        int lines = 50;
+        StringBuilder order = new StringBuilder("[{\"orderId\":\"ORD-BATCH-").append(mode).append("\",\"customerId\":\"CUST-1\",\"items\":[");
+        for (int l = 0; l < lines; l++) {
+            order.append(l > 0 ? "," : "").append("{\"itemId\":\"").append(itemId(l)).append("\",\"itemName\":\"Item\",\"quantity\":1000000,\"unitPrice\":1.0}");
+        }
+        post(client, "/api/orders/ingest", order.append("]}]").toString());
+        String listId = send(client, "POST", "/api/warehouse/picking/create-picklist/ORD-BATCH-" + mode).getAsJsonObject().get("pickListId").getAsString();
+        send(client, "PUT", "/api/warehouse/picking/picklists/" + listId + "/assign/PICKER-01");
+
+        HttpRequest[] individual = new HttpRequest[scans];
+        StringBuilder commands = new StringBuilder("[");
+        for (int i = 0; i < scans; i++) {
+            individual[i] = HttpRequest.newBuilder(URI.create(BASE_URL + "/api/warehouse/picking/picklists/" + listId + "/items/" + itemId(i % lines) + "/1"))
+                    .PUT(HttpRequest.BodyPublishers.noBody()).build();
+            commands.append(i > 0 ? "," : "").append("{\"op\":\"pick\",\"listId\":\"").append(listId).append("\",\"itemId\":\"")
+                    .append(itemId(i % lines)).append("\",\"quantity\":1}");
+        }
+        HttpRequest batch = HttpRequest.newBuilder(URI.create(BASE_URL + "/api/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(commands.append("]").toString())).build();
+        return new Workload() {
+            public Object run() throws Exception {
+                switch (mode) {
+                    case "individual": {
+                        int ok = 0;
+                        for (HttpRequest request : individual) if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) ok++;
+                        check("individual scans recorded", scans, ok);
+                        return ok;
+                    }
+                    case "batch": {
+                        JsonObject result = JsonParser.parseString(client.send(batch, HttpResponse.BodyHandlers.ofString()).body()).getAsJsonObject();
+                        check("batched scans recorded", scans, result.get("succeeded").getAsLong());
+                        return result;
+                    }
+                    default:
+                        throw new IllegalArgumentException("Unknown batch mode: " + mode);
+                }
+            }
+            public void close() {
+                spark.Spark.stop();
+                spark.Spark.awaitStop();
+            }
+        };
+    }
+
+    private static JsonElement post(HttpClient client, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(BASE_URL + path)).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return JsonParser.parseString(client.send(request, HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    // ------------------------------------------------------------------ HTTP load, server in its own JVM
+
+    private static final int LOAD_PORT = 4568, REQUESTS_PER_CONNECTION = 5;
+
+    // The server gets a JVM (and file descriptor budget) of its own so client and server sockets are not counted
+    // together; its log tells which execution mode it actually ran in.
+    private Workload httpLoad(String mode, int connections) throws Exception {
+        Path log = Files.createTempFile("warehouse-http-load", ".log");
+        Process server = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(), "-Xmx1g",
+                "-Dwarehouse.persistence=false", "-Dwarehouse.http.mode=" + mode, "-Dwarehouse.http.port=" + LOAD_PORT,
+                "-Dwarehouse.http.acceptQueue=4096", "-cp", System.getProperty("java.class.path"), "WarehouseApiServer")
+                .redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        ExecutorService callbacks = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "load-client");
+            t.setDaemon(true);
+            return t;
+        });
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(30))
+                .executor(callbacks).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + LOAD_PORT + "/api/warehouse/capacity")).GET().build();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) break;
+            } catch (java.io.IOException e) {
+                if (attempt == 150 || !server.isAlive()) throw new IllegalStateException("Server did not start, see " + log, e);
+            }
+            Thread.sleep(200);
+        }
+        String serverMode = Files.readAllLines(log).stream().filter(l -> l.contains("\"http.configured\"")).findFirst()
+                .map(l -> l.replaceAll(".*\"mode\":\"([A-Z]+)\".*", "$1")).orElse("?");
+
+        long[] latencies = new long[connections * REQUESTS_PER_CONNECTION];
+        AtomicInteger completed = new AtomicInteger();
+        LongAdder failed = new LongAdder();
+        long[] elapsed = new long[1];
+        return new Workload() {
+            // One chain per connection: the next request goes out when the previous response is in
+            CompletableFuture<Void> chain(int remaining) {
+                long start = System.nanoTime();
+                return client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).handle((response, error) -> {
+                    if (error != null || response.statusCode() != 200) failed.increment();
+                    else latencies[completed.getAndIncrement()] = System.nanoTime() - start;
+                    return null;
+                }).thenCompose(v -> remaining > 1 ? chain(remaining - 1) : CompletableFuture.completedFuture(null));
+            }
+
+            public Object run() {
+                completed.set(0);
+                long start = System.nanoTime();
+                CompletableFuture<?>[] chains = new CompletableFuture<?>[connections];
+                for (int c = 0; c < connections; c++) chains[c] = chain(REQUESTS_PER_CONNECTION);
+                CompletableFuture.allOf(chains).join();
+                elapsed[0] = System.nanoTime() - start;
+                return completed.get();
+            }
+
+            public String report() {
+                int n = completed.get();
+                if (n == 0) return null;
+                long[] sorted = Arrays.copyOf(latencies, n);
+                Arrays.sort(sorted);
+                return String.format("server mode %s: %d requests, %.0f req/s, p50 %.1f ms, p99 %.1f ms, max %.1f ms, %d failed so far",
+                        serverMode, n, n * 1e9 / elapsed[0], sorted[n / 2] / 1e6, sorted[(int) (n * 0.99)] / 1e6,
+                        sorted[n - 1] / 1e6, failed.sum());
+            }
+
+            public void verify() { check("HTTP load requests that failed", 0, failed.sum()); }
+
+            public void close() throws Exception {
+                server.destroy();
+                server.waitFor(10, TimeUnit.SECONDS);
+                callbacks.shutdownNow();
+                Files.deleteIfExists(log);
+            }
+        };
+    }
+}
@@ -0,0 +1,41 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A handheld uploading 500 pick scans for one pick list through the in-process server: one PUT per scan
+ * ("individual", API 15) against a single POST /api/batch ("batch"). Every run checks that all scans were recorded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dwarehouse.persistence=false"})
+public class BatchBenchmark {
+
+    @Param({"500"})
+    public int scans;
+
+    @Param({"individual", "batch"})
+    public String mode;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create("batch:" + mode, scans);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workload.close();
+    }
+
+    @Benchmark
+    public Object upload() throws Exception {
+        return workload.run();
+    }
+}
@@ -0,0 +1,37 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-threaded throughput of the shared managers. Every thread drives the same manager instance;
+ * that no update is lost under contention is checked by ManagerConcurrencyTest in the server module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Dwarehouse.persistence=false"})
+public class ConcurrencyBenchmark {
+
+    @Param({"stress:procurement", "stress:putAway", "stress:pickAssignment", "stress:stockUpdates", "stress:ledger"})
+    public String operation;
+
+    @Param({"1000"})
+    public int items;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create(operation, items);
+    }
+
+    @Benchmark
+    public Object run() throws Exception {
+        return workload.run();
+    }
+}
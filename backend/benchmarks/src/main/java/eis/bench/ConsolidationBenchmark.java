@@ -0,0 +1,48 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Purchase ordering for a burst of approved requisitions (100k over 50 suppliers and 4 delivery addresses): one
+ * consolidated multi-line PO per supplier and address, against one PO per requisition. Each invocation creates and
+ * approves the requisitions before ordering them; the line printed after every iteration times the ordering step alone.
+ * The trial ends by checking that every requisition is ORDERED and on exactly one purchase order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Dwarehouse.persistence=false"})
+public class ConsolidationBenchmark {
+
+    @Param({"100000"})
+    public int requisitions;
+
+    @Param({"consolidated", "single"})
+    public String mode;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create("consolidate:" + mode, requisitions);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        System.out.println(workload.report());
+    }
+
+    @TearDown(Level.Trial)
+    public void verify() {
+        workload.verify();
+    }
+
+    @Benchmark
+    public Object order() throws Exception {
+        return workload.run();
+    }
+}
@@ -0,0 +1,39 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-of-day dispatch cutoff: 20k packages are labeled across 200 carriers, then every carrier's manifest is built.
+ * `history` is the number of packages shipped on earlier manifests; manifest building should not depend on it.
+ * The trial ends by checking that every package shipped exactly once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 40)
+@Measurement(iterations = 30)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Dwarehouse.persistence=false"})
+public class DispatchCutoffBenchmark {
+
+    @Param({"0", "100000", "1000000"})
+    public int history;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create("dispatchCutoff", history);
+    }
+
+    @TearDown(Level.Trial)
+    public void verify() {
+        workload.verify();
+    }
+
+    @Benchmark
+    public Object cutoff() throws Exception {
+        return workload.run();
+    }
+}
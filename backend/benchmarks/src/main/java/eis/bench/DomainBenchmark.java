@@ -0,0 +1,46 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot domain operations against synthetic catalogues of 1k / 100k / 1M items.
+ * The stockLevelScan / stockLevelIndexed pair compares the old full-scan lookup of API 9 with the StockMonitor index,
+ * labeledPackagesScan / labeledPackagesIndexed a status filter over all packages with the PackingManager status index.
+ * ledgerPost posts one movement to the InventorySystem stock ledger, ledgerStockAsOf reads a SKU's per-bin stock at a
+ * past instant of a 1M-movement log. pickConfirm records one scan against an assigned pick list with one line per item.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Dwarehouse.persistence=false"})
+public class DomainBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int items;
+
+    @Param({"stockMonitoring", "stockLevelScan", "stockLevelIndexed", "labeledPackagesScan", "labeledPackagesIndexed", "stockQuantityUpdate", "findBestSupplier",
+            "supplierQuoteUpdate", "pendingRequisitions", "findAvailableLocation", "storeItem", "nextId",
+            "ledgerPost", "ledgerStockAsOf", "pickConfirm"})
+    public String operation;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create(operation, items);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workload.close();
+    }
+
+    @Benchmark
+    public Object run() throws Exception {
+        return workload.run();
+    }
+}
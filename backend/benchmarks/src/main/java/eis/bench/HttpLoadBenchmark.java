@@ -0,0 +1,53 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HTTP front end under many concurrent keep-alive connections, once per execution mode (-Dwarehouse.http.mode).
+ * The server runs in a JVM of its own; every iteration sends 5 GET /api/warehouse/capacity requests down each of the
+ * connections at once, the next one on a connection as soon as the previous response is in. The line printed after
+ * each iteration gives the mode the server actually ran in (virtual needs JDK 21+), throughput and p50/p99/max latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+public class HttpLoadBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"1000", "10000"})
+    public int connections;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create("httpLoad:" + mode, connections);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        String line = workload.report();
+        if (line != null) System.out.println(line);
+    }
+
+    @TearDown(Level.Trial)
+    public void verify() throws Exception {
+        try {
+            workload.verify();
+        } finally {
+            workload.close();
+        }
+    }
+
+    @Benchmark
+    public Object load() throws Exception {
+        return workload.run();
+    }
+}
@@ -0,0 +1,72 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process HTTP throughput and latency of each of the 31 routes. The server is started once per fork with
+ * persistence disabled; {placeholders} in a route are filled with IDs created during setup.
+ * Throughput mode gives requests per millisecond, sample mode the latency percentiles (p50/p99/p99.9).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dwarehouse.persistence=false"})
+public class HttpRoutesBenchmark {
+
+    @Param({
+            "POST /api/procurement/purchase-orders",
+            "PUT /api/procurement/requisitions/{requisition}/approve",
+            "GET /api/procurement/purchase-orders/{purchaseOrder}",
+            "PUT /api/procurement/requisitions/{requisition}/reject",
+            "POST /api/warehouse/shipments/receive",
+            "POST /api/warehouse/qc/inspect",
+            "POST /api/inventory/records/update-from-receipt",
+            "POST /api/warehouse/storage/store-item",
+            "GET /api/inventory/stock-levels/ITEM-001",
+            "POST /api/inventory/stock-monitor/run",
+            "POST /api/procurement/reorder",
+            "GET /api/procurement/requisitions/pending",
+            "POST /api/warehouse/picking/create-picklist/ORD-1001",
+            "PUT /api/warehouse/picking/picklists/{pickList}/assign/PICKER-01",
+            "PUT /api/warehouse/picking/picklists/{pickList}/items/ITEM-001/1",
+            "POST /api/warehouse/packing/pack-order/{pickList}",
+            "GET /api/warehouse/packing/packages/{package}",
+            "POST /api/shipping/labels/generate/{package}/CR-UPS/GROUND",
+            "GET /api/shipping/labels/{label}",
+            "POST /api/shipping/dispatch/create-manifest/CR-UPS",
+            "PUT /api/shipping/dispatch/manifests/{manifest}/handover",
+            "GET /api/shipping/tracking/TRK-1",
+            "POST /api/returns/initiate",
+            "PUT /api/returns/requests/{return}/approve",
+            "POST /api/returns/process-received/{return}",
+            "POST /api/inventory/audits/initiate",
+            "POST /api/inventory/audits/{audit}/data",
+            "GET /api/inventory/audits/{audit}/report",
+            "PUT /api/inventory/stock-levels/adjust",
+            "GET /api/warehouse/capacity",
+            "GET /api/warehouse/personnel/pickers",
+            "GET /api/procurement/requisitions/pending?limit=100"
+    })
+    public String route;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create("http:" + route, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workload.close();
+    }
+
+    @Benchmark
+    public Object call() throws Exception {
+        return workload.run();
+    }
+}
@@ -0,0 +1,53 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of a simulated request (workTokens of CPU work) that logs one pick event, with 8 request
+ * threads at once: println on a shared System.out-style PrintStream ("stdout") against publishing to the EventLog ring
+ * ("async"). Both write to /dev/null, so the difference is the calling side: lock contention and flushes against a
+ * claim-and-publish. Read the p0.99 rows. The async run prints how many events a full ring discarded (none expected).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(8)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dwarehouse.persistence=false"})
+public class LoggingBenchmark {
+
+    @Param({"stdout", "async"})
+    public String mode;
+
+    // Blackhole CPU tokens spent by the simulated request before it logs
+    @Param({"1000"})
+    public int workTokens;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create("logging:" + mode, 0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        String line = workload.report();
+        if (line != null) System.out.println(line);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workload.close();
+    }
+
+    @Benchmark
+    public Object request() throws Exception {
+        Blackhole.consumeCPU(workTokens);
+        return workload.run();
+    }
+}
@@ -0,0 +1,37 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of request metrics: "record" is what every request pays (start timing, tag the route pattern, record status
+ * and latency) spread over 60 route patterns, "render" one /metrics scrape with all of them populated. Run with -t 4
+ * or more to see recording under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dwarehouse.persistence=false"})
+public class MetricsBenchmark {
+
+    @Param({"60"})
+    public int routes;
+
+    @Param({"record", "render"})
+    public String operation;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create("metrics:" + operation, routes);
+    }
+
+    @Benchmark
+    public Object run() throws Exception {
+        return workload.run();
+    }
+}
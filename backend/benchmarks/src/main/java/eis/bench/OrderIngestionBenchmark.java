@@ -0,0 +1,43 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk order ingestion: 100k orders of 1-5 lines streamed from an in-memory body (a JSON array or NDJSON) through
+ * OrderIngestion into an empty order repository, i.e. parsing, validation and batched commits without the HTTP hop.
+ * Throughput is reported per order, so the score reads directly as orders per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(OrderIngestionBenchmark.ORDERS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Dwarehouse.persistence=false"})
+public class OrderIngestionBenchmark {
+
+    static final int ORDERS = 100_000;
+
+    @Param({"array", "ndjson"})
+    public String format;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create("ingest:" + format, ORDERS);
+        System.out.println(workload.report());
+    }
+
+    @TearDown(Level.Trial)
+    public void verify() {
+        workload.verify();
+    }
+
+    @Benchmark
+    public Object ingest() throws Exception {
+        return workload.run();
+    }
+}
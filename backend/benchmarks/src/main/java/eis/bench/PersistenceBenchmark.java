@@ -0,0 +1,50 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journal write throughput (records per second through the group-committed writer, including backpressure
+ * once the queue is full) and cold recovery time of a data directory holding {@code records} entities.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Dwarehouse.persistence=false"})
+public class PersistenceBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int records;
+
+    private Workload append;
+    private Workload recovery;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        append = Workloads.create("journal:append", records);
+        recovery = Workloads.create("journal:recover", records);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        append.close();
+        recovery.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 2, time = 1)
+    @Measurement(iterations = 5, time = 2)
+    public Object append() throws Exception {
+        return append.run();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public Object recover() throws Exception {
+        return recovery.run();
+    }
+}
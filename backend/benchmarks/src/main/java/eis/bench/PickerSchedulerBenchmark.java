@@ -0,0 +1,42 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picker assignment under a deep backlog: `openLists` PENDING pick lists queue for `pickers` pickers. One operation
+ * queues a pick list, auto-assigns the next one (priority, then age) to the least-loaded idle picker and completes it,
+ * i.e. one full trip through the scheduler. Queue depth and wait statistics are printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Dwarehouse.persistence=false"})
+public class PickerSchedulerBenchmark {
+
+    @Param({"100", "500"})
+    public int pickers;
+
+    @Param({"10000", "50000"})
+    public int openLists;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create("pickScheduler:" + pickers, openLists);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        System.out.println(workload.report());
+    }
+
+    @Benchmark
+    public Object assignAndComplete() throws Exception {
+        return workload.run();
+    }
+}
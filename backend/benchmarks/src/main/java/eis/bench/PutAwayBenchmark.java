@@ -0,0 +1,36 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storing a truckload of put-away lines into a fresh 50k-bin warehouse: one batch call versus one
+ * processItemStorage call per line. Lines per second is {@code lines} divided by the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Dwarehouse.persistence=false"})
+public class PutAwayBenchmark {
+
+    @Param({"batch", "single"})
+    public String mode;
+
+    @Param({"10000"})
+    public int lines;
+
+    private Workload workload;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        workload = Workloads.create("putAway:" + mode, lines);
+    }
+
+    @Benchmark
+    public Object store() throws Exception {
+        return workload.run();
+    }
+}
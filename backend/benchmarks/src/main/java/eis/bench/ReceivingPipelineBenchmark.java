@@ -0,0 +1,50 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receiving and QC for 2,000 goods batches whose inspections take 1 ms each: the old synchronous process on one
+ * thread ("sync"), against the staged pipeline with 1, 4 and 16 QC workers. Each pipeline run is fed in submissions of
+ * 50 and ends when the last receipt has its GRN; the line printed after every iteration gives the slowest submission
+ * acknowledgement and how often a full pipeline refused one. The trial ends by checking that every batch was accepted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Dwarehouse.persistence=false"})
+public class ReceivingPipelineBenchmark {
+
+    @Param({"2000"})
+    public int batches;
+
+    @Param({"sync", "1", "4", "16"})
+    public String qcWorkers;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create("receiving:" + qcWorkers, batches);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        String line = workload.report();
+        if (line != null) System.out.println(line);
+    }
+
+    @TearDown(Level.Trial)
+    public void verify() throws Exception {
+        workload.verify();
+        workload.close();
+    }
+
+    @Benchmark
+    public Object receive() throws Exception {
+        return workload.run();
+    }
+}
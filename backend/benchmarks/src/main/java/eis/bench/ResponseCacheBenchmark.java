@@ -0,0 +1,37 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route-side cost of one dashboard poll of the warehouse capacity lookup (10 / 1,000 bins): serializing it every
+ * time ("render", caching off), answering from the response cache ("hit") and answering a current If-None-Match
+ * ("notModified"). HttpRoutesBenchmark gives the same routes end to end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dwarehouse.persistence=false"})
+public class ResponseCacheBenchmark {
+
+    @Param({"10", "1000"})
+    public int locations;
+
+    @Param({"render", "hit", "notModified"})
+    public String mode;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create("responseCache:" + mode, locations);
+    }
+
+    @Benchmark
+    public Object poll() throws Exception {
+        return workload.run();
+    }
+}
@@ -0,0 +1,41 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of the route response types. {@code reflective} is the old reflective Gson path rendered to a
+ * String, {@code streaming} the JsonWritable writers writing straight to a stream. List types are serialized as lists
+ * of {@code size} elements, single entities ignore it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Dwarehouse.persistence=false"})
+public class SerializationBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"reflective", "streaming"})
+    public String mode;
+
+    @Param({"purchaseOrder", "pendingRequisitions", "inventoryRecords", "stockAlerts", "pickList",
+            "package", "shippingLabel", "dispatchManifest", "warehouse", "pickers"})
+    public String type;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create("json:" + mode + ":" + type, size);
+    }
+
+    @Benchmark
+    public Object serialize() throws Exception {
+        return workload.run();
+    }
+}
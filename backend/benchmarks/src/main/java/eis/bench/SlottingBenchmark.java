@@ -0,0 +1,42 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Put-away slotting through Warehouse.allocate: one operation fills a fresh 50k-bin warehouse until the first
+ * put-away that no bin can take. Time is the cost of slotting the whole run; the space utilisation reached by
+ * each policy is printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Dwarehouse.persistence=false"})
+public class SlottingBenchmark {
+
+    @Param({"BEST_FIT", "FIRST_FIT"})
+    public String policy;
+
+    @Param({"50000"})
+    public int bins;
+
+    private Workload workload;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        workload = Workloads.create("slotting:" + policy, bins);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        System.out.println(workload.report());
+    }
+
+    @Benchmark
+    public Object fill() throws Exception {
+        return workload.run();
+    }
+}
@@ -0,0 +1,39 @@
+package eis.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wave planning over a backlog of PROCESSING orders, as PickingManager.planWaves runs it: one operation plans every
+ * order into waves of at most 2000 orders and batch pick lists of at most 40 stops. The travel distance saved against
+ * one S-shape trip per order is printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Dwarehouse.persistence=false"})
+public class WavePlanningBenchmark {
+
+    @Param({"1000", "5000", "20000"})
+    public int orders;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workloads.create("wavePlan", orders);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        System.out.println(workload.report());
+    }
+
+    @Benchmark
+    public Object plan() throws Exception {
+        return workload.run();
+    }
+}
@@ -0,0 +1,19 @@
+package eis.bench;
+
+/**
+ * One benchmarked operation, prepared during setup and invoked once per JMH operation.
+ * Implementations live in the default package next to the server classes (see BenchmarkWorkloads),
+ * because JMH refuses benchmark classes in the default package.
+ */
+public interface Workload {
+
+    Object run() throws Exception;
+
+    /** Checks invariants after the measured run (for example that no update was lost); throws if they do not hold. */
+    default void verify() {}
+
+    /** Optional result line printed after the run, for outcomes JMH does not measure (for example space utilisation). */
+    default String report() { return null; }
+
+    default void close() throws Exception {}
+}
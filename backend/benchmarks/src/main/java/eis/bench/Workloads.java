@@ -0,0 +1,26 @@
+package eis.bench;
+
+/**
+ * Looks up workloads from the default-package BenchmarkWorkloads class, which can see the server's
+ * package-private domain classes.
+ */
+public final class Workloads {
+
+    /** Implemented by BenchmarkWorkloads. */
+    public interface Provider {
+        Workload create(String operation, int size) throws Exception;
+    }
+
+    private static volatile Provider provider;
+
+    private Workloads() {}
+
+    public static Workload create(String operation, int size) throws Exception {
+        Provider p = provider;
+        if (p == null) {
+            p = (Provider) Class.forName("BenchmarkWorkloads").getDeclaredConstructor().newInstance();
+            provider = p;
+        }
+        return p.create(operation, size);
+    }
+}
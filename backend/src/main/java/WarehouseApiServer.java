@@ -1,13 +1,85 @@
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializer;
-
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
 import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
+
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.ForwardedRequestCustomizer;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import spark.Request;
+import spark.Response;
+import spark.Route;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
+import spark.embeddedserver.jetty.JettyServerFactory;
 
 import static spark.Spark.*;
 
@@ -20,8 +92,16 @@ import static spark.Spark.*;
 public class WarehouseApiServer {
 
     public static void main(String[] args) {
-        port(4567); // Set the server port
+        // HTTP front end: port, execution mode, pool and connector sizing (-Dwarehouse.http.*), see HttpServerFactory
+        HttpServerFactory httpServer = HttpServerFactory.fromProperties();
+        port(httpServer.port);
+        EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY, new EmbeddedJettyFactory(httpServer));
+        EventLog.info("http.configured").with("mode", httpServer.mode.name()).with("port", httpServer.port)
+                .with("maxThreads", httpServer.maxThreads).with("acceptors", httpServer.acceptors).with("selectors", httpServer.selectors).publish();
+        // Request metrics: timing starts in this first filter and ends in afterAfter, which also runs after exceptions
+        before((req, res) -> Metrics.DEFAULT.begin(req));
         options("/*", (request, response) -> {
+            Metrics.DEFAULT.tag(request);
             String acrh = request.headers("Access-Control-Request-Headers");
             if (acrh != null) {
                 response.header("Access-Control-Allow-Headers", acrh);
@@ -53,13 +133,7 @@ public class WarehouseApiServer {
 
 
 
-        // Gson with java.time adapters
-        Gson gson = new GsonBuilder()
-            .registerTypeAdapter(LocalDate.class,
-                (JsonSerializer<LocalDate>) (src, type, ctx) -> new JsonPrimitive(src.toString()))
-            .registerTypeAdapter(LocalDateTime.class,
-                (JsonSerializer<LocalDateTime>) (src, type, ctx) -> new JsonPrimitive(src.toString()))
-            .create();
+        Gson gson = RESPONSE_GSON;
 
         // ------- Global handlers: JSON everywhere + helpful errors -------
         after((req, res) -> { if (res.type() == null) res.type("application/json"); });
@@ -69,13 +143,14 @@ public class WarehouseApiServer {
             res.status(500);
             String msg = e.getMessage() == null ? "" : e.getMessage().replace("\"","\\\"");
             res.body("{\"error\":\"" + e.getClass().getSimpleName() + ": " + msg + "\"}");
-            e.printStackTrace();
+            EventLog.error("request.failed").with("method", req.requestMethod()).with("path", req.pathInfo()).error(e).publish();
         });
 
         notFound((req, res) -> {
             res.type("application/json");
             return "{\"error\":\"Not found\"}";
         });
+        afterAfter((req, res) -> Metrics.DEFAULT.end(req, res.status()));
         // ------------------------------------------------------------------
 
         // =================================================================================
@@ -85,17 +160,43 @@ public class WarehouseApiServer {
         InventorySystem inventorySystem = new InventorySystem();
         StorageManager storageManager = new StorageManager();
         StockMonitor stockMonitor = new StockMonitor();
-        PickingManager pickingManager = new PickingManager();
-        PackingManager packingManager = new PackingManager();
+        OrderRepository orderRepository = new OrderRepository();
+        PickingManager pickingManager = new PickingManager(orderRepository);
+        PackingManager packingManager = new PackingManager(orderRepository);
         LabelManager labelManager = new LabelManager();
         DispatchManager dispatchManager = new DispatchManager();
         ReturnService returnService = new ReturnService(inventorySystem);
         AuditService auditService = new AuditService();
+        // Receiving/QC stages; QC is usually the slow one (a station per worker), inspectionMillis models its time per batch
+        ReceivingPipeline receivingPipeline = new ReceivingPipeline(inventorySystem,
+                new QualityControl(Duration.ofMillis(Long.getLong("warehouse.qc.inspectionMillis", 0))),
+                Integer.getInteger("warehouse.qc.workers", 4),
+                Integer.getInteger("warehouse.receiving.stageQueue", 64),
+                Integer.getInteger("warehouse.receiving.capacity", 10_000));
+        dispatchManager.setPackageStatusListener(packingManager::packageStatusChanged);
+        inventorySystem.setMovementListener(m -> stockMonitor.ledgerBalanceChanged("WH-1", m));
+        WarehouseCommands commands = new WarehouseCommands(pickingManager, packingManager, labelManager, dispatchManager, returnService);
+        // Entity versions behind the ETags of the polled lookups; stock levels and capacity are views over several entities
+        EntityVersions entityVersions = new EntityVersions();
+        entityVersions.derive("inventoryRecord", "stockLevel", (id, record) -> ((InventoryRecord) record).getItemId());
+        entityVersions.derive("storageLocation", "warehouse", (id, location) -> id.substring(0, id.indexOf('/')));
+        ResponseCache responseCache = new ResponseCache(entityVersions, Integer.getInteger("warehouse.cache.maxEntries", 10_000));
 
         // =================================================================================
         // PRE-POPULATE SYSTEM WITH DUMMY DATA FOR TESTING
         // =================================================================================
-        setupInitialData(procurementManager, storageManager, stockMonitor, pickingManager, packingManager, labelManager, dispatchManager);
+        setupInitialData(procurementManager, storageManager, stockMonitor, pickingManager, labelManager, dispatchManager);
+
+        // Replay the journal over the initial data, then start journaling new mutations
+        DomainJournal journal = attachPersistence(entityVersions, procurementManager, inventorySystem, storageManager, stockMonitor, orderRepository,
+                pickingManager, packingManager, labelManager, dispatchManager, returnService, auditService, receivingPipeline);
+        stockMonitor.reconcile(inventorySystem);
+        receivingPipeline.start();
+
+        // Approved requisitions are batched into purchase orders per supplier and address (0 switches the job off)
+        long consolidateEverySeconds = Long.getLong("warehouse.procurement.consolidationIntervalSeconds", 60);
+        Duration consolidationWindow = Duration.ofSeconds(Long.getLong("warehouse.procurement.consolidationWindowSeconds", 900));
+        if (consolidateEverySeconds > 0) procurementManager.scheduleConsolidation(Duration.ofSeconds(consolidateEverySeconds), consolidationWindow);
 
         /*
          * =================================================================================
@@ -104,7 +205,7 @@ public class WarehouseApiServer {
          */
 
         // API 1: Create Purchase Order
-        post("/api/procurement/purchase-orders", (req, res) -> {
+        post("/api/procurement/purchase-orders", json((req, res) -> {
             PurchaseRequisition requisition = procurementManager.createPurchaseRequisition("ITEM-001", 5, "API_CALL");
             if (requisition == null) {
                 res.status(400);
@@ -122,10 +223,30 @@ public class WarehouseApiServer {
             }
             res.status(201);
             return po;
-        }, gson::toJson);
+        }));
+
+        // API 1b: Consolidate approved requisitions into one purchase order per supplier and delivery address now.
+        // ?windowSeconds= releases only groups whose oldest approval is that old (default: the scheduled job's window, 0: all)
+        post("/api/procurement/purchase-orders/consolidate", json((req, res) -> {
+            Duration window;
+            try {
+                String param = req.queryParams("windowSeconds");
+                window = param == null ? consolidationWindow : Duration.ofSeconds(Long.parseLong(param));
+            } catch (NumberFormatException e) {
+                res.status(400);
+                return Map.of("error", "windowSeconds must be a number");
+            }
+            if (window.isNegative()) {
+                res.status(400);
+                return Map.of("error", "windowSeconds must not be negative");
+            }
+            List<PurchaseOrder> created = procurementManager.consolidateApproved(window);
+            res.status(created.isEmpty() ? 200 : 201);
+            return created;
+        }));
 
         // API 2: Approve a Purchase Requisition
-        put("/api/procurement/requisitions/:id/approve", (req, res) -> {
+        put("/api/procurement/requisitions/:id/approve", json((req, res) -> {
             String reqId = req.params(":id");
             boolean success = procurementManager.approveRequisition(reqId, "API_USER");
             if (!success) {
@@ -134,33 +255,88 @@ public class WarehouseApiServer {
             }
             res.status(200);
             return procurementManager.getPurchaseRequisitions().get(reqId);
-        }, gson::toJson);
+        }));
 
         // API 3: Get Purchase Order by ID
-        get("/api/procurement/purchase-orders/:id", (req, res) -> {
-            PurchaseOrder po = procurementManager.getPurchaseOrders().get(req.params(":id"));
-            if (po == null) {
-                res.status(404);
-                return Map.of("error", "Purchase Order not found");
-            }
-            return po;
-        }, gson::toJson);
+        get("/api/procurement/purchase-orders/:id", cached(responseCache, "purchaseOrder", req -> req.params(":id"),
+                procurementManager.getPurchaseOrders()::get, "Purchase Order not found"));
 
         // API 4: Reject a Purchase Requisition
-        put("/api/procurement/requisitions/:id/reject", (req, res) -> {
+        put("/api/procurement/requisitions/:id/reject", json((req, res) -> {
             String reqId = req.params(":id");
-            PurchaseRequisition requisition = procurementManager.getPurchaseRequisitions().get(reqId);
-            if (requisition == null) {
+            if (!procurementManager.rejectRequisition(reqId, "Rejected by API user")) {
                 res.status(404);
-                return Map.of("error", "Requisition not found");
+                return Map.of("error", "Requisition not found or no longer pending");
             }
-            requisition.reject("Rejected by API user");
             res.status(200);
-            return requisition;
-        }, gson::toJson);
+            return procurementManager.getPurchaseRequisitions().get(reqId);
+        }));
+
+        // API 4b: Ranked supplier candidates for an item, the first one meeting its minimum order wins approvals
+        get("/api/procurement/sourcing/:itemId", json((req, res) -> {
+            List<SourcingEngine.Candidate> candidates = procurementManager.getSourcingCandidates(req.params(":itemId"));
+            if (candidates == null) {
+                res.status(404);
+                return Map.of("error", "Item not found");
+            }
+            return candidates;
+        }));
+
+        // API 4c: Update supplier terms (?rating=&leadTimeDays=&minimumOrderValue=&active=, omitted ones stay as they are)
+        put("/api/procurement/suppliers/:id", json((req, res) -> {
+            Supplier_BP8 s = procurementManager.getSuppliers().get(req.params(":id"));
+            if (s == null) {
+                res.status(404);
+                return Map.of("error", "Supplier not found");
+            }
+            double rating; int leadTime; BigDecimal minimumOrder;
+            try {
+                rating = req.queryParams("rating") == null ? s.getPerformanceRating() : Double.parseDouble(req.queryParams("rating"));
+                leadTime = req.queryParams("leadTimeDays") == null ? s.getDeliveryLeadTime() : Integer.parseInt(req.queryParams("leadTimeDays"));
+                minimumOrder = req.queryParams("minimumOrderValue") == null ? s.getMinimumOrderValue() : new BigDecimal(req.queryParams("minimumOrderValue"));
+            } catch (NumberFormatException e) {
+                res.status(400);
+                return Map.of("error", "rating, leadTimeDays and minimumOrderValue must be numbers");
+            }
+            if (rating < 0 || rating > 5 || leadTime < 0 || minimumOrder.signum() < 0) {
+                res.status(400);
+                return Map.of("error", "rating must be 0-5, leadTimeDays and minimumOrderValue non-negative");
+            }
+            boolean active = req.queryParams("active") == null ? s.isActive() : Boolean.parseBoolean(req.queryParams("active"));
+            return procurementManager.updateSupplierTerms(s.getSupplierId(), rating, leadTime, minimumOrder, active);
+        }));
+
+        // API 4d: Quote a unit cost for an item (?unitCost=), or withdraw the quote with DELETE
+        put("/api/procurement/suppliers/:id/quotes/:itemId", json((req, res) -> {
+            BigDecimal unitCost;
+            try {
+                unitCost = new BigDecimal(Objects.requireNonNullElse(req.queryParams("unitCost"), ""));
+            } catch (NumberFormatException e) {
+                res.status(400);
+                return Map.of("error", "unitCost must be a number");
+            }
+            if (unitCost.signum() <= 0) {
+                res.status(400);
+                return Map.of("error", "unitCost must be positive");
+            }
+            Supplier_BP8 s = procurementManager.setSupplierQuote(req.params(":id"), req.params(":itemId"), unitCost);
+            if (s == null) {
+                res.status(404);
+                return Map.of("error", "Supplier not found");
+            }
+            return s;
+        }));
+        delete("/api/procurement/suppliers/:id/quotes/:itemId", json((req, res) -> {
+            Supplier_BP8 s = procurementManager.setSupplierQuote(req.params(":id"), req.params(":itemId"), null);
+            if (s == null) {
+                res.status(404);
+                return Map.of("error", "Supplier not found");
+            }
+            return s;
+        }));
 
         // API 5: Receive a Supplier Shipment
-        post("/api/warehouse/shipments/receive", (req, res) -> {
+        post("/api/warehouse/shipments/receive", json((req, res) -> {
             ShipmentNotification notification = new ShipmentNotification(new Random().nextInt(1000), "ABC Supplier", new Date());
             Goods goods = new Goods("Laptops", 50);
             Delivery delivery = new Delivery(notification, goods);
@@ -168,70 +344,214 @@ public class WarehouseApiServer {
             clerk.performCheck(delivery);
             res.status(201);
             return Map.of("status", "Shipment received and checked", "shipmentId", notification.getShipmentId());
-        }, gson::toJson);
-
-        // API 6: Inspect Incoming Goods
-        post("/api/warehouse/qc/inspect", (req, res) -> {
-            WarehouseReceiving receiving = new WarehouseReceiving();
-            QualityControl qc = new QualityControl();
-            InventoryManager_BP4 inv = new InventoryManager_BP4();
-            InspectIncomingGoodsProcess process = new InspectIncomingGoodsProcess(receiving, qc, inv);
-            GoodsReceivedNote grn = process.execute("SKU-LAPTOP-001", "BATCH-" + new Random().nextInt(1000), 100);
-            if (grn == null) {
-                return Map.of("status", "Inspection failed", "outcome", "Quarantined");
+        }));
+
+        // API 6: Inspect Incoming Goods. Queues one {sku, batchId, quantity} batch or an array of them for receiving and QC
+        // and answers 202 with the receipts straight away; 503 when the pipeline is full. No body queues a sample batch.
+        post("/api/warehouse/qc/inspect", json((req, res) -> {
+            List<GoodsBatch> batches;
+            try (JsonReader in = new JsonReader(bodyReader(req))) {
+                batches = Receipt.readBatches(in, receivingPipeline.getCapacity());
+                if (batches.isEmpty()) batches = List.of(new GoodsBatch("SKU-LAPTOP-001", IdGenerator.next("BATCH"), 100));
+            } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+                res.status(400);
+                return Map.of("error", "Invalid batch submission: " + e.getMessage());
             }
-            return grn;
-        }, gson::toJson);
+            List<Receipt> receipts = receivingPipeline.submit(batches);
+            if (receipts == null) {
+                res.status(503);
+                res.header("Retry-After", "1");
+                return Map.of("error", "Receiving pipeline is full, retry shortly");
+            }
+            res.status(202);
+            return receipts;
+        }));
+
+        // API 6b: Receipts, filtered by ?status= (ACCEPTED ones carry their GRN)
+        get("/api/warehouse/qc/receipts", json((req, res) -> req.queryParams("status") == null
+                ? list(req, res, receivingPipeline.getReceipts().values(), (cursor, limit) -> Page.of(receivingPipeline.getReceipts(), cursor, limit))
+                : listByStatus(req, res, ReceiptStatus.class, receivingPipeline::getByStatus)));
+
+        // API 6c: Push each receipt as it finishes (GRN issued or quarantined) as Server-Sent Events
+        get("/api/warehouse/qc/receipts/stream", (req, res) -> {
+            Metrics.DEFAULT.tag(req);
+            res.type("text/event-stream");
+            res.header("Cache-Control", "no-cache");
+            BlockingQueue<Receipt> queue = new LinkedBlockingQueue<>(1000);
+            Runnable unsubscribe = receivingPipeline.subscribe(queue::offer);
+            try {
+                java.io.PrintWriter out = res.raw().getWriter();
+                out.write(": subscribed\n\n");
+                out.flush();
+                while (!out.checkError()) {
+                    Receipt receipt = queue.poll(15, TimeUnit.SECONDS);
+                    out.write(receipt == null ? ": keep-alive\n\n" : "event: receipt\ndata: " + gson.toJson(receipt) + "\n\n");
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                unsubscribe.run();
+            }
+            return "";
+        });
+
+        // API 6d: One receipt, for scanners polling their acknowledgement
+        get("/api/warehouse/qc/receipts/:receiptId", json((req, res) -> {
+            Receipt receipt = receivingPipeline.getReceipt(req.params(":receiptId"));
+            if (receipt == null) {
+                res.status(404);
+                return Map.of("error", "Receipt not found");
+            }
+            return receipt;
+        }));
+
+        // API 6e: Pipeline depth per stage and receipts per status
+        get("/api/warehouse/qc/pipeline", json((req, res) -> receivingPipeline.getStats()));
 
         // API 7: Update Inventory Records after Receipt
-        post("/api/inventory/records/update-from-receipt", (req, res) -> {
+        post("/api/inventory/records/update-from-receipt", json((req, res) -> {
             GoodsReceivedNote grn = new GoodsReceivedNote("GRN-12345", new GoodsBatch("SKU-LAPTOP-001", "BATCH-XYZ", 100));
             PurchaseOrderLine po = new PurchaseOrderLine("SKU-LAPTOP-001", 100);
             UpdateInventoryRecordsProcess process = new UpdateInventoryRecordsProcess(inventorySystem);
-            process.execute(grn, po, true, 550.0);
-            return Map.of("status", "Inventory updated successfully for GRN " + grn.grnId);
-        }, gson::toJson);
+            List<StockMovement> movements = process.execute(grn, po, true, 550.0);
+            return Map.of("status", "Inventory updated successfully for GRN " + grn.grnId, "movements", movements);
+        }));
+
+        // API 7b: Stock ledger position of a SKU per bin, now or at the end of ?asOf= (ISO local date-time)
+        get("/api/inventory/ledger/:sku", json((req, res) -> {
+            String sku = req.params(":sku"), asOf = req.queryParams("asOf");
+            Map<String, Long> bins;
+            try {
+                bins = asOf == null ? inventorySystem.getOnHandByBin(sku) : inventorySystem.getOnHandByBin(sku, LocalDateTime.parse(asOf));
+            } catch (DateTimeParseException e) {
+                res.status(400);
+                return Map.of("error", "asOf must be an ISO date-time such as 2025-01-31T17:00:00");
+            }
+            Map<String, Object> position = new LinkedHashMap<>();
+            position.put("sku", sku);
+            if (asOf != null) position.put("asOf", asOf);
+            position.put("onHand", bins.values().stream().mapToLong(Long::longValue).sum());
+            position.put("bins", bins);
+            return position;
+        }));
+
+        // API 7c: A SKU's latest ledger movements (?limit=, default 100), oldest first
+        get("/api/inventory/ledger/:sku/movements", json((req, res) -> {
+            int limit;
+            try {
+                limit = Integer.parseInt(Objects.requireNonNullElse(req.queryParams("limit"), String.valueOf(Page.DEFAULT_LIMIT)));
+                if (limit < 1) throw new NumberFormatException();
+            } catch (NumberFormatException e) {
+                res.status(400);
+                return Map.of("error", "limit must be a positive integer");
+            }
+            return inventorySystem.getMovements(req.params(":sku"), Math.min(limit, Page.MAX_LIMIT));
+        }));
+
+        // API 7d: Post a JSON array of {sku, bin, type, quantity, reference} movements as one atomic batch;
+        // 409 and nothing posted when a line would take a bin below zero
+        post("/api/inventory/ledger/movements", json((req, res) -> {
+            List<StockMovement> lines;
+            try (JsonReader in = new JsonReader(bodyReader(req))) {
+                lines = StockMovement.readAll(in, MAX_BATCH_LINES);
+            } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+                res.status(400);
+                return Map.of("error", "Invalid movement batch: " + e.getMessage());
+            }
+            try {
+                List<StockMovement> posted = inventorySystem.post(lines);
+                res.status(201);
+                return posted;
+            } catch (IllegalArgumentException e) {
+                res.status(409);
+                return Map.of("error", e.getMessage());
+            }
+        }));
 
         // API 8: Store Items into a Warehouse Bin
-        post("/api/warehouse/storage/store-item", (req, res) -> {
+        post("/api/warehouse/storage/store-item", json((req, res) -> {
             boolean success = storageManager.processItemStorage("ITEM-001", "WH-1", 50, "USER-API");
             if (!success) {
                 res.status(400);
                 return Map.of("status", "Storage failed. Check item, warehouse, or available space.");
             }
             return Map.of("status", "Storage successful: true");
-        }, gson::toJson);
-
-        // API 9: Get Current Stock Levels
-        get("/api/inventory/stock-levels/:itemId", (req, res) -> {
-            InventoryRecord record = stockMonitor.getInventoryRecords().values().stream()
-                    .filter(r -> r.getItemId().equals(req.params(":itemId")))
-                    .findFirst().orElse(null);
-            if (record == null) {
-                res.status(404);
-                return Map.of("error", "Item not found in inventory");
+        }));
+
+        // API 8b: Batch put-away, a JSON array of {itemId, warehouseId, qty} lines with a result per line
+        post("/api/warehouse/storage/store-items", json((req, res) -> {
+            List<PutAwayLine> lines;
+            try (JsonReader in = new JsonReader(bodyReader(req))) {
+                lines = PutAwayLine.readAll(in, MAX_BATCH_LINES);
+            } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+                res.status(400);
+                return Map.of("error", "Invalid put-away batch: " + e.getMessage());
             }
-            return record;
-        }, gson::toJson);
+            storageManager.processItemStorageBatch(lines, "USER-API");
+            long stored = lines.stream().filter(l -> "STORED".equals(l.getStatus())).count();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("stored", stored);
+            result.put("rejected", lines.size() - stored);
+            result.put("results", lines);
+            return result;
+        }));
+
+        // API 9: Get Current Stock Levels (all records for the item, across warehouses and bins)
+        get("/api/inventory/stock-levels/:itemId", cached(responseCache, "stockLevel", req -> req.params(":itemId"), itemId -> {
+            Collection<InventoryRecord> records = stockMonitor.getRecordsForItem(itemId);
+            return records.isEmpty() ? null : records;
+        }, "Item not found in inventory"));
 
         // API 10: Monitor All Stock Levels for Reorder
-        post("/api/inventory/stock-monitor/run", (req, res) -> stockMonitor.performStockMonitoring(), gson::toJson);
+        post("/api/inventory/stock-monitor/run", json((req, res) -> list(req, res, stockMonitor.getLowStockAlerts(), stockMonitor::getLowStockAlerts)));
+
+        // API 10b: Push low-stock alerts to subscribers as Server-Sent Events
+        get("/api/inventory/stock-alerts/stream", (req, res) -> {
+            Metrics.DEFAULT.tag(req);
+            res.type("text/event-stream");
+            res.header("Cache-Control", "no-cache");
+            BlockingQueue<StockAlert> queue = new LinkedBlockingQueue<>(1000);
+            Runnable unsubscribe = stockMonitor.subscribe(queue::offer);
+            try {
+                java.io.PrintWriter out = res.raw().getWriter();
+                for (StockAlert alert : stockMonitor.getLowStockAlerts()) {
+                    out.write("event: stock-alert\ndata: " + gson.toJson(alert) + "\n\n");
+                }
+                out.flush();
+                while (!out.checkError()) {
+                    StockAlert alert = queue.poll(15, TimeUnit.SECONDS);
+                    out.write(alert == null ? ": keep-alive\n\n" : "event: stock-alert\ndata: " + gson.toJson(alert) + "\n\n");
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                unsubscribe.run();
+            }
+            return "";
+        });
 
         // API 11: Create a Reorder Stock Request
-        post("/api/procurement/reorder", (req, res) -> {
+        post("/api/procurement/reorder", json((req, res) -> {
             PurchaseRequisition requisition = procurementManager.createPurchaseRequisition("ITEM-002", 8, "API_CALL"); // ITEM-002 has reorder point 10
             if (requisition == null) {
                 res.status(400);
                 return Map.of("error", "Item does not need reordering");
             }
             return requisition;
-        }, gson::toJson);
+        }));
 
         // API 12: Get All Pending Purchase Requisitions
-        get("/api/procurement/requisitions/pending", (req, res) -> procurementManager.getPendingRequisitions(), gson::toJson);
+        get("/api/procurement/requisitions/pending", json((req, res) ->
+                list(req, res, procurementManager.getPendingRequisitions(), procurementManager::getPendingRequisitions)));
+
+        // API 12b: Requisitions in one lifecycle status, e.g. ?status=APPROVED
+        get("/api/procurement/requisitions", json((req, res) ->
+                listByStatus(req, res, RequisitionStatus.class, procurementManager::getRequisitionsByStatus)));
 
         // API 13: Pick Items for a Customer Order
-        post("/api/warehouse/picking/create-picklist/:orderId", (req, res) -> {
+        post("/api/warehouse/picking/create-picklist/:orderId", json((req, res) -> {
             String orderId = req.params(":orderId");
             PickList pickList = pickingManager.generatePickList(orderId);
             if (pickList == null) {
@@ -239,37 +559,106 @@ public class WarehouseApiServer {
                 return Map.of("error", "Order not found or not ready for picking");
             }
             return pickList;
-        }, gson::toJson);
+        }));
+
+        // API 13b: Plan waves over all PROCESSING orders into route-sorted batch pick lists
+        post("/api/warehouse/picking/waves", json((req, res) -> {
+            int maxOrders, maxLines;
+            try {
+                maxOrders = Integer.parseInt(Objects.requireNonNullElse(req.queryParams("maxOrders"), "2000"));
+                maxLines = Integer.parseInt(Objects.requireNonNullElse(req.queryParams("maxLines"), "40"));
+            } catch (NumberFormatException e) {
+                res.status(400);
+                return Map.of("error", "maxOrders and maxLines must be integers");
+            }
+            if (maxOrders < 1 || maxLines < 1) {
+                res.status(400);
+                return Map.of("error", "maxOrders and maxLines must be positive");
+            }
+            List<Wave> waves = pickingManager.planWaves(maxOrders, maxLines);
+            res.status(waves.isEmpty() ? 200 : 201);
+            return waves;
+        }));
+
+        get("/api/warehouse/picking/waves/:id", json((req, res) -> {
+            Wave wave = pickingManager.getWaves().get(req.params(":id"));
+            if (wave == null) {
+                res.status(404);
+                return Map.of("error", "Wave not found");
+            }
+            return wave;
+        }));
+
+        get("/api/warehouse/picking/picklists", json((req, res) ->
+                listByStatus(req, res, PickListStatus.class, pickingManager::getPickListsByStatus)));
+
+        get("/api/warehouse/picking/picklists/:id", json((req, res) -> {
+            PickList pl = pickingManager.getPickLists().get(req.params(":id"));
+            if (pl == null) {
+                res.status(404);
+                return Map.of("error", "Picklist not found");
+            }
+            return pl;
+        }));
 
         // API 14: Assign a Pick List to a Picker
-        put("/api/warehouse/picking/picklists/:id/assign/:pickerId", (req, res) -> {
+        put("/api/warehouse/picking/picklists/:id/assign/:pickerId", json((req, res) -> {
             boolean success = pickingManager.assignPickList(req.params(":id"), req.params(":pickerId"));
             if (!success) {
                 res.status(400);
                 return Map.of("error", "Picklist not available for assignment or picker not found");
             }
             return Map.of("status", "Picklist " + req.params(":id") + " assigned to " + req.params(":pickerId"));
-        }, gson::toJson);
-
-        // API 15: Update Item Picked Status
-        put("/api/warehouse/picking/picklists/:listId/items/:itemId/:quantity", (req, res) -> {
-            int qty = Integer.parseInt(req.params(":quantity"));
-            boolean success = pickingManager.recordPickedItem(req.params(":listId"), req.params(":itemId"), qty, "Picked via API");
-            if (!success) {
+        }));
+
+        // API 14b: Hand queued pick lists to idle pickers, highest priority and oldest first, least-loaded picker first
+        post("/api/warehouse/picking/assignments/auto", json((req, res) -> {
+            int max;
+            try {
+                max = Integer.parseInt(Objects.requireNonNullElse(req.queryParams("max"), String.valueOf(Integer.MAX_VALUE)));
+            } catch (NumberFormatException e) {
+                res.status(400);
+                return Map.of("error", "max must be an integer");
+            }
+            if (max < 1) {
                 res.status(400);
-                return Map.of("error", "Could not record picked item. Check picklist status or item ID.");
+                return Map.of("error", "max must be positive");
             }
-            return Map.of("status", "Item " + req.params(":itemId") + " on list " + req.params(":listId") + " marked as picked with quantity " + qty);
-        }, gson::toJson);
+            return pickingManager.autoAssignPickLists(max);
+        }));
+
+        get("/api/warehouse/picking/scheduler", json((req, res) -> {
+            Map<String, Object> body = new LinkedHashMap<>(pickingManager.getSchedulerStats());
+            body.put("pickers", pickingManager.getPickerStates());
+            return body;
+        }));
+
+        // API 15: Update Item Picked Status
+        put("/api/warehouse/picking/picklists/:listId/items/:itemId/:quantity", json((req, res) ->
+                reply(res, commands.pick(req.params(":listId"), req.params(":itemId"), Integer.parseInt(req.params(":quantity"))))));
 
         // API 16: Pack Items for Shipment
-        post("/api/warehouse/packing/pack-order/:pickListId", (req, res) -> {
+        post("/api/warehouse/packing/pack-order/:pickListId", json((req, res) -> {
             PickList pl = pickingManager.getPickLists().get(req.params(":pickListId"));
             if (pl == null) {
                 res.status(404);
                 return Map.of("error", "Picklist not found");
             }
-            pl.markCompleted();
+            if (pickingManager.claimForPacking(pl.getPickListId()) == null) {
+                res.status(400);
+                return Map.of("error", pl.getStatus() == PickListStatus.COMPLETED ? "Picklist has already been packed"
+                        : "Picklist is " + pl.getStatus() + "; only ASSIGNED or completed picklists can be packed");
+            }
+
+            if (pl.getWaveId() != null) {
+                // Batch list: pack every order whose lines across the wave are now all picked
+                List<Package> packages = new ArrayList<>();
+                for (String orderId : pickingManager.claimOrdersReadyToPack(pl)) {
+                    Package pkg = packingManager.createPackage(orderId, pl.getPickListId(), "BOX");
+                    if (pkg != null) packages.add(pkg);
+                }
+                return packages;
+            }
 
             Package pkg = packingManager.createPackage(pl.getOrderId(), req.params(":pickListId"), "BOX");
             if (pkg == null) {
@@ -277,144 +666,325 @@ public class WarehouseApiServer {
                 return Map.of("error", "Could not create package. Picklist might not be complete.");
             }
             return pkg;
-        }, gson::toJson);
+        }));
 
         // API 17: Get Package Details
-        get("/api/warehouse/packing/packages/:id", (req, res) -> {
-            Package pkg = packingManager.getPackages().get(req.params(":id"));
-            if (pkg == null) {
-                res.status(404);
-                return Map.of("error", "Package not found");
-            }
-            return pkg;
-        }, gson::toJson);
+        get("/api/warehouse/packing/packages/:id", cached(responseCache, "package", req -> req.params(":id"),
+                packingManager.getPackages()::get, "Package not found"));
+
+        // API 17b: Packages in one lifecycle status, e.g. ?status=LABELED
+        get("/api/warehouse/packing/packages", json((req, res) ->
+                listByStatus(req, res, PackageStatus.class, packingManager::getPackagesByStatus)));
 
         // API 18: Generate a Shipping Label
-        post("/api/shipping/labels/generate/:packageId/:carrierId/:serviceLevel", (req, res) -> {
-            Package pkg = packingManager.getPackages().get(req.params(":packageId"));
-            if (pkg == null) {
-                res.status(404);
-                return Map.of("error", "Package not found");
-            }
-            // Verify, label, and make the package discoverable by Dispatch
-            pkg.verifyPackage("Auto-verified by API");
-            ShippingLabel label = labelManager.generateShippingLabel(req.params(":packageId"), req.params(":carrierId"), req.params(":serviceLevel"));
-            if (label == null) {
-                res.status(400);
-                return Map.of("error", "Could not generate label. Check package status, carrier, or customer address.");
-            }
-            pkg.markLabeled();                 // <- enable dispatch eligibility
-            dispatchManager.addPackage(pkg);   // <- make it visible to manifests
-            return label;
-        }, gson::toJson);
+        post("/api/shipping/labels/generate/:packageId/:carrierId/:serviceLevel", json((req, res) ->
+                reply(res, commands.label(req.params(":packageId"), req.params(":carrierId"), req.params(":serviceLevel")))));
 
         // API 19: Get a Shipping Label
-        get("/api/shipping/labels/:id", (req, res) -> {
-            ShippingLabel label = labelManager.getShippingLabels().get(req.params(":id"));
-            if (label == null) {
-                res.status(404);
-                return Map.of("error", "Label not found");
-            }
-            return label;
-        }, gson::toJson);
+        get("/api/shipping/labels/:id", cached(responseCache, "label", req -> req.params(":id"),
+                labelManager.getShippingLabels()::get, "Label not found"));
 
         // API 20: Create Dispatch Manifest
-        post("/api/shipping/dispatch/create-manifest/:carrierId", (req, res) -> {
+        post("/api/shipping/dispatch/create-manifest/:carrierId", json((req, res) -> {
             DispatchManifest manifest = dispatchManager.createDispatchManifestForCarrier(req.params(":carrierId"));
             if (manifest == null) {
                 res.status(400);
                 return Map.of("error", "No packages ready for dispatch for this carrier.");
             }
             return manifest;
-        }, gson::toJson);
+        }));
 
         // API 21: Record Courier Handover
-        put("/api/shipping/dispatch/manifests/:id/handover", (req, res) -> {
-            boolean success = dispatchManager.recordPickup(req.params(":id"), "SIGNATURE_ON_FILE", "CONF-" + new Random().nextInt());
-            if (!success) {
-                res.status(400);
-                return Map.of("error", "Manifest not found or not ready for pickup.");
-            }
-            return Map.of("status", "Manifest " + req.params(":id") + " handed over to courier.");
-        }, gson::toJson);
+        put("/api/shipping/dispatch/manifests/:id/handover", json((req, res) -> reply(res, commands.handover(req.params(":id")))));
 
         // API 22: Track a Shipment
-        get("/api/shipping/tracking/:trackingId", (req, res) -> {
+        get("/api/shipping/tracking/:trackingId", json((req, res) -> {
             CourierPartner partner = new CourierPartner("UPS");
             ShipmentRecord record = partner.updateShipment(req.params(":trackingId"), "Warehouse", "Customer City");
             return record;
-        }, gson::toJson);
+        }));
 
         // API 23: Initiate a Customer Return
-        post("/api/returns/initiate", (req, res) -> {
+        post("/api/returns/initiate", json((req, res) -> {
             ReturnRequest returnRequest = returnService.initiateReturn("CUST-001", "SKU-LAPTOP-001", "No longer needed");
             return returnRequest;
-        }, gson::toJson);
+        }));
+
+        // API 23b: Return requests in one lifecycle status
+        get("/api/returns/requests", json((req, res) -> listByStatus(req, res, ReturnStatus.class, returnService::getReturnsByStatus)));
 
         // API 24: Approve a Return Request
-        put("/api/returns/requests/:id/approve", (req, res) -> {
-            boolean success = returnService.approveReturn(req.params(":id"));
-            if (!success) {
-                res.status(404);
-                return Map.of("error", "Return request not found.");
-            }
-            return Map.of("status", "Return request " + req.params(":id") + " approved.");
-        }, gson::toJson);
+        put("/api/returns/requests/:id/approve", json((req, res) -> reply(res, commands.approveReturn(req.params(":id")))));
 
         // API 25: Process a Received Return
-        post("/api/returns/process-received/:returnId", (req, res) -> {
+        post("/api/returns/process-received/:returnId", json((req, res) -> {
             String result = returnService.processReceivedReturn(req.params(":returnId"), "API_STAFF");
             if (result.contains("not found") || result.contains("not approved")) {
                 res.status(400);
             }
             return Map.of("status", result);
-        }, gson::toJson);
+        }));
 
         // API 26: Initiate an Inventory Audit
-        post("/api/inventory/audits/initiate", (req, res) -> {
+        post("/api/inventory/audits/initiate", json((req, res) -> {
             InventoryManager_BP15 manager = new InventoryManager_BP15("Audit Manager");
             AuditRequest auditRequest = manager.initiateAudit("AUDIT-" + new Random().nextInt(100), "Cycle count for electronics aisle");
             auditService.addRequest(auditRequest);
             return auditRequest;
-        }, gson::toJson);
+        }));
 
         // API 27: Submit Audit Data
-        post("/api/inventory/audits/:id/data", (req, res) -> {
+        post("/api/inventory/audits/:id/data", json((req, res) -> {
             WarehouseStaff_BP15 staff = new WarehouseStaff_BP15("Alice");
             InventoryData data = staff.gatherInventoryData("SKU-LAPTOP-001");
             auditService.addInventoryData(req.params(":id"), data);
             return Map.of("status", "Data for audit " + req.params(":id") + " received.");
-        }, gson::toJson);
+        }));
 
         // API 28: Generate an Audit Report
-        get("/api/inventory/audits/:id/report", (req, res) -> {
+        get("/api/inventory/audits/:id/report", json((req, res) -> {
             AuditReport report = auditService.generateAuditReport(req.params(":id"));
             if (report == null) {
                 res.status(404);
                 return Map.of("error", "Audit request or data not found.");
             }
             return report;
-        }, gson::toJson);
-
-        // API 29: Adjust Inventory Manually
-        put("/api/inventory/stock-levels/adjust", (req, res) -> Map.of("status", "Inventory for SKU-XYZ adjusted successfully."));
+        }));
+
+        // API 29: Adjust Inventory Manually, one signed {sku, bin, delta, reason} ADJUSTMENT posted to the stock ledger;
+        // 409 and nothing posted when it would take the bin below zero
+        put("/api/inventory/stock-levels/adjust", json((req, res) -> {
+            StockMovement line;
+            try (JsonReader in = new JsonReader(bodyReader(req))) {
+                line = StockAdjustment.read(in);
+            } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+                res.status(400);
+                return Map.of("error", "Invalid adjustment: " + e.getMessage());
+            }
+            try {
+                return inventorySystem.post(List.of(line)).get(0);
+            } catch (IllegalArgumentException e) {
+                res.status(409);
+                return Map.of("error", e.getMessage());
+            }
+        }));
 
         // API 30: Get Warehouse Capacity
-        get("/api/warehouse/capacity", (req, res) -> {
-            Warehouse wh = storageManager.getWarehouses().get("WH-1");
-            return wh;
-        }, gson::toJson);
+        get("/api/warehouse/capacity", cached(responseCache, "warehouse", req -> "WH-1",
+                storageManager.getWarehouses()::get, "Warehouse not found"));
 
         // API 31: Get All Available Pickers
-        get("/api/warehouse/personnel/pickers", (req, res) -> pickingManager.getAvailablePickers(), gson::toJson);
+        get("/api/warehouse/personnel/pickers", json((req, res) -> list(req, res, pickingManager.getAvailablePickers(), pickingManager::getAvailablePickers)));
+
+        // API 32: Bulk order ingestion, a JSON array or NDJSON stream of orders; accepted orders go straight to PROCESSING
+        post("/api/orders/ingest", json((req, res) -> {
+            OrderIngestion ingestion = new OrderIngestion(orderRepository);
+            try (JsonReader in = new JsonReader(bodyReader(req))) {
+                ingestion.run(in);
+            }
+            if (ingestion.failed()) res.status(400);
+            return ingestion;
+        }));
+
+        // Metrics: per-route request counts, latency histograms and in-flight gauges, domain counters and JVM gauges
+        Metrics.DEFAULT.gauge("warehouse_pick_lists_open", "Pick lists pending or assigned",
+                () -> pickingManager.getPickListsByStatus(PickListStatus.PENDING).size() + pickingManager.getPickListsByStatus(PickListStatus.ASSIGNED).size());
+        get("/metrics", (req, res) -> {
+            Metrics.DEFAULT.tag(req);
+            res.type("text/plain; version=0.0.4; charset=utf-8");
+            return Metrics.DEFAULT.render();
+        });
+
+        // API 33: Run many scanner commands (pick, approveReturn, label, handover) in one round trip. Answers 200 with
+        // {succeeded, failed, results}, one {status, body} per command in submission order, as the single routes would.
+        post("/api/batch", json((req, res) -> {
+            List<BatchCommand> batch;
+            try (JsonReader in = new JsonReader(bodyReader(req))) {
+                batch = BatchCommand.readAll(in, MAX_BATCH_LINES);
+            } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+                res.status(400);
+                return Map.of("error", "Invalid command batch: " + e.getMessage());
+            }
+            List<CommandResult> results = commands.execute(batch);
+            long succeeded = results.stream().filter(CommandResult::succeeded).count();
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("succeeded", succeeded);
+            response.put("failed", results.size() - succeeded);
+            response.put("results", results);
+            return response;
+        }));
+
+        // Persistence: journal/snapshot statistics and on-demand compaction
+        get("/api/system/persistence", json((req, res) -> journal == null ? Map.of("enabled", false) : journal.getStats()));
+        post("/api/system/persistence/snapshot", json((req, res) -> {
+            if (journal == null) {
+                res.status(400);
+                return Map.of("error", "Persistence is disabled");
+            }
+            journal.requestSnapshot();
+            res.status(202);
+            return Map.of("status", "Snapshot scheduled");
+        }));
+    }
+
+    private static final Gson RESPONSE_GSON = createGson();
+    static final int MAX_BATCH_LINES = Integer.getInteger("warehouse.batch.maxLines", 50_000);
+
+    // Spark's request wrapper caches the whole body and then serves it one byte per read() call; bulk endpoints stream
+    // the container's input instead (they never touch req.body(), so nothing else needs the cache)
+    static Reader bodyReader(Request req) throws IOException {
+        ServletRequest raw = req.raw();
+        if (raw instanceof ServletRequestWrapper) raw = ((ServletRequestWrapper) raw).getRequest();
+        return new InputStreamReader(raw.getInputStream(), StandardCharsets.UTF_8);
+    }
+
+    // Gson with streaming writers for the JsonWritable domain types and java.time adapters
+    static Gson createGson() {
+        return JsonSupport.builder()
+            .registerTypeAdapterFactory(new JsonWritableAdapterFactory())
+            .create();
+    }
+
+    // List endpoints: a JSON array by default, a Page ({"items", "nextCursor"}) when limit or cursor is given, and NDJSON
+    // with ?format=ndjson or Accept: application/x-ndjson (paged the same way, next cursor in X-Next-Cursor).
+    // Unpaged lists are written from the managers' live views while iterating, so no per-request copy is made.
+    static Object list(Request req, Response res, Collection<?> all, BiFunction<String, Integer, Page<?>> pager) throws IOException {
+        String cursor = req.queryParams("cursor"), limitParam = req.queryParams("limit");
+        Page<?> page = null;
+        if (cursor != null || limitParam != null) {
+            try {
+                int limit = limitParam == null ? Page.DEFAULT_LIMIT : Integer.parseInt(limitParam);
+                if (limit < 1) throw new IllegalArgumentException();
+                page = pager.apply(cursor, Math.min(limit, Page.MAX_LIMIT));
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return Map.of("error", "Invalid cursor or limit");
+            }
+        }
+        String accept = req.headers("Accept");
+        if (!"ndjson".equals(req.queryParams("format")) && (accept == null || !accept.contains("application/x-ndjson"))) {
+            return page != null ? page : all;
+        }
+        res.type("application/x-ndjson");
+        if (page != null && page.getNextCursor() != null) res.header("X-Next-Cursor", page.getNextCursor());
+        Writer writer = new OutputStreamWriter(res.raw().getOutputStream(), StandardCharsets.UTF_8);
+        for (Object item : page != null ? page.getItems() : all) {
+            RESPONSE_GSON.toJson(item, writer);
+            writer.write('\n');
+        }
+        writer.flush();
+        return "";
+    }
+
+    // list() over one partition of a status index, named by ?status=; 400 for a status the lifecycle does not have
+    static <S extends Enum<S>> Object listByStatus(Request req, Response res, Class<S> type,
+                                                   Function<S, NavigableMap<String, ?>> index) throws IOException {
+        S status;
+        try {
+            status = Enum.valueOf(type, Objects.requireNonNullElse(req.queryParams("status"), "").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            res.status(400);
+            return Map.of("error", "status must be one of " + Arrays.toString(type.getEnumConstants()));
+        }
+        NavigableMap<String, ?> partition = index.apply(status);
+        return list(req, res, partition.values(), (cursor, limit) -> Page.of(partition, cursor, limit));
+    }
+
+    // Polled single-entity lookups: ETag/Last-Modified from the entity's version and 304 when the client's copy is current,
+    // otherwise JSON from the response cache (rendered once per version). A null lookup is a 404 with `notFound`.
+    static Route cached(ResponseCache cache, String kind, Function<Request, String> idOf, Function<String, ?> lookup, String notFound) {
+        return json((req, res) -> {
+            String id = idOf.apply(req);
+            Object entity = lookup.apply(id);
+            if (entity == null) {
+                res.status(404);
+                return Map.of("error", notFound);
+            }
+            String key = kind + '/' + id;
+            EntityVersions.Stamp stamp = cache.versions.stamp(key);
+            res.header("ETag", cache.versions.etag(stamp));
+            res.header("Last-Modified", EntityVersions.lastModified(stamp));
+            if (cache.versions.notModified(stamp, req.headers("If-None-Match"), req.headers("If-Modified-Since"))) {
+                cache.countNotModified();
+                res.status(304);
+                return "";
+            }
+            byte[] body = cache.get(key, stamp.version, () -> RESPONSE_GSON.toJson(entity).getBytes(StandardCharsets.UTF_8));
+            res.type("application/json");
+            res.raw().setContentLength(body.length);
+            res.raw().getOutputStream().write(body);
+            return "";
+        });
+    }
+
+    static Object reply(Response res, CommandResult result) {
+        res.status(result.status);
+        return result.body;
+    }
+
+    // Writes the route result straight to the response stream, no intermediate String; String results pass through as-is
+    static Route json(Route route) {
+        return (req, res) -> {
+            Metrics.DEFAULT.tag(req);
+            Object result = route.handle(req, res);
+            if (result instanceof String) return result;
+            res.type("application/json");
+            Writer writer = new OutputStreamWriter(res.raw().getOutputStream(), StandardCharsets.UTF_8);
+            RESPONSE_GSON.toJson(result, writer);
+            writer.flush();
+            return "";
+        };
+    }
+
+    // Returns null when persistence is switched off (-Dwarehouse.persistence=false); mutations still bump entity versions
+    static DomainJournal attachPersistence(EntityVersions versions, ProcurementManager_BP8 procM, InventorySystem invS, StorageManager storM, StockMonitor stockM,
+                                           OrderRepository orderRepo, PickingManager pickM, PackingManager packM, LabelManager labelM, DispatchManager dispatchM,
+                                           ReturnService returnS, AuditService auditS, ReceivingPipeline receivingP) {
+        List<Journaled> managers = List.of(procM, invS, storM, stockM, orderRepo, pickM, packM, labelM, dispatchM, returnS, auditS, receivingP);
+        if (!Boolean.parseBoolean(System.getProperty("warehouse.persistence", "true"))) {
+            managers.forEach(manager -> manager.setJournal(versions.over(MutationLog.NONE)));
+            return null;
+        }
+        String dataDir = System.getProperty("warehouse.dataDir", Objects.requireNonNullElse(System.getenv("WAREHOUSE_DATA_DIR"), "data"));
+        DomainJournal journal = new DomainJournal(Paths.get(dataDir),
+                Integer.getInteger("warehouse.journal.maxBatch", 4096),
+                Long.getLong("warehouse.journal.snapshotEvery", 200_000),
+                Long.getLong("warehouse.journal.snapshotIntervalSeconds", 300) * 1000);
+
+        // Registration order is snapshot order: entities must come before anything that links to them
+        journal.register("supplier", Supplier_BP8.class, (id, s) -> procM.restoreSupplier(s));
+        journal.register("requisition", PurchaseRequisition.class, (id, r) -> procM.restoreRequisition(r));
+        journal.register("purchaseOrder", PurchaseOrder.class, (id, po) -> procM.restorePurchaseOrder(po));
+        journal.register("inventoryRecord", InventoryRecord.class, (id, r) -> stockM.addInventoryRecord(r), stockM::removeInventoryRecord);
+        journal.register("storageLocation", StorageLocation.class, storM::restoreStorageLocation);
+        journal.register("movement", StockMovement.class, (id, m) -> invS.restoreMovement(m));
+        journal.register("receipt", Receipt.class, (id, r) -> receivingP.restoreReceipt(r));
+        journal.register("order", Order.class, (id, o) -> orderRepo.put(o));
+        journal.register("pickList", PickList.class, (id, pl) -> pickM.restorePickList(pl));
+        journal.register("wave", Wave.class, (id, w) -> pickM.restoreWave(w));
+        journal.register("package", Package.class, (id, p) -> { packM.restorePackage(p); dispatchM.relinkPackage(p); });
+        journal.register("dispatchPackage", Package.class, (id, p) -> dispatchM.addPackage(packM.getPackages().getOrDefault(id, p)),
+                dispatchM::forgetPackage);
+        journal.register("label", ShippingLabel.class, (id, l) -> labelM.restoreLabel(l));
+        journal.register("manifest", DispatchManifest.class, (id, m) -> dispatchM.restoreManifest(m));
+        journal.register("return", ReturnRequest.class, (id, r) -> returnS.restoreReturn(r));
+        journal.register("auditRequest", AuditRequest.class, (id, r) -> auditS.addRequest(r));
+        journal.register("auditData", InventoryData.class, auditS::addInventoryData);
+
+        journal.recover();
+        MutationLog log = versions.over(journal);
+        managers.forEach(manager -> manager.setJournal(log));
+        journal.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "journal-shutdown"));
+        return journal;
     }
 
     private static void setupInitialData(ProcurementManager_BP8 procM, StorageManager storM, StockMonitor stockM,
-                                         PickingManager pickM, PackingManager packM, LabelManager labelM, DispatchManager dispatchM) {
+                                         PickingManager pickM, LabelManager labelM, DispatchManager dispatchM) {
 
         // Items
-        Item item1 = new Item("ITEM-001", "Laptop", "Electronics", "1111", 5.5, 20, 50);
-        Item item2 = new Item("ITEM-002", "Mouse", "Accessories", "2222", 0.5, 10, 100);
+        Item item1 = new Item("ITEM-001", "Laptop", "Electronics", "1111", 5.5, 20, 50, new BigDecimal("850.00"));
+        Item item2 = new Item("ITEM-002", "Mouse", "Accessories", "2222", 0.5, 10, 100, new BigDecimal("12.50"));
         procM.addItem(item1);
         procM.addItem(item2);
         storM.addItem(item1);
@@ -424,7 +994,11 @@ public class WarehouseApiServer {
 
         // Suppliers
         Supplier_BP8 sup1 = new Supplier_BP8("SUP-01", "TechDistro", "John Smith", "john@tech.com", "555-1111", "1 Tech Way");
-        procM.addSupplier(sup1);
+        procM.addSupplier(sup1); // no quotes: supplies the catalogue at standard cost
+        Supplier_BP8 sup2 = new Supplier_BP8("SUP-02", "GadgetSource", "Mary Jones", "mary@gadgets.com", "555-2222", "2 Gadget Rd");
+        sup2.setTerms(4.0, 12, new BigDecimal("500"), true);
+        sup2.setQuote("ITEM-002", new BigDecimal("11.00"));
+        procM.addSupplier(sup2);
 
         // Warehouse & Inventory
         Warehouse wh1 = new Warehouse("WH-1", "Main Warehouse", "123 Supply Chain St", 10000);
@@ -453,8 +1027,6 @@ public class WarehouseApiServer {
         pickM.addPicker("PICKER-01");
         pickM.addPicker("PICKER-02");
 
-        packM.addOrder(ord1);
-
         // Shipping
         labelM.addCustomer(cust1);
         Carrier carrier1 = new Carrier("CR-UPS", "UPS", "UPS");
@@ -467,613 +1039,4440 @@ public class WarehouseApiServer {
 
 /*
  * =================================================================================
- * COMPLETE & CONSOLIDATED DOMAIN MODEL CLASSES
+ * SHARED INFRASTRUCTURE (CONCURRENCY, IDS, LOGGING, HTTP, METRICS, CACHING, PERSISTENCE, JSON)
  * =================================================================================
  */
 
-// From Business Process 1 & 2: Create/Approve Purchase Order
-class Product {
-    private String name;
-    private int quantity;
-    private double unitPrice;
+// Snowflake-style IDs: 41 bits of milliseconds since EPOCH_MILLIS, 10 bits of node id, 12 bits of sequence.
+// Rendered as PREFIX-<13 Crockford base32 chars>, so IDs sort by creation time both numerically and as strings.
+final class IdGenerator {
+    static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10, SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1, SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
 
-    public Product(String name, int quantity, double unitPrice) {
-        this.name = name;
-        this.quantity = quantity;
-        this.unitPrice = unitPrice;
+    static final IdGenerator DEFAULT = new IdGenerator(configuredNodeId());
+
+    private final long node;
+    // Packed (millis << SEQUENCE_BITS | sequence) of the last issued id, advanced with CAS only
+    private final AtomicLong lastState = new AtomicLong();
+
+    IdGenerator(long node) {
+        if (node < 0 || node > MAX_NODE) throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE);
+        this.node = node;
     }
 
-    public String getName() { return name; }
-    public int getQuantity() { return quantity; }
-    public double getUnitPrice() { return unitPrice; }
-    public double getTotalCost() { return quantity * unitPrice; }
-}
+    static String next(String prefix) { return DEFAULT.nextId(prefix); }
 
-// From BP 1 & 8
-class Supplier {
-    private String name;
-    private String contactEmail;
+    String nextId(String prefix) {
+        long value = nextValue();
+        char[] chars = new char[prefix.length() + 1 + ENCODED_LENGTH];
+        prefix.getChars(0, prefix.length(), chars, 0);
+        chars[prefix.length()] = '-';
+        for (int i = chars.length - 1; i > prefix.length(); i--) {
+            chars[i] = ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return new String(chars);
+    }
 
-    public Supplier(String name, String contactEmail) {
-        this.name = name;
-        this.contactEmail = contactEmail;
+    long nextValue() {
+        while (true) {
+            long last = lastState.get();
+            long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+            // Never step backwards: a clock going back or a full sequence just continues from the last state
+            long next = now > last ? now : last + 1;
+            if (lastState.compareAndSet(last, next)) {
+                return (next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS) | node << SEQUENCE_BITS | (next & SEQUENCE_MASK);
+            }
+        }
     }
 
-    public String getName() { return name; }
-    public String getContactEmail() { return contactEmail; }
-    public String getDetails() { return "Supplier: " + name + ", Email: " + contactEmail; }
+    // Creation time encoded in an id produced by nextId, e.g. for range scans over sorted id keys
+    static long timestampMillis(String id) {
+        long value = 0;
+        for (int i = id.length() - ENCODED_LENGTH; i < id.length(); i++) {
+            value = value << 5 | decode(id.charAt(i));
+        }
+        return (value >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    // Smallest id that any generator could produce at the given time, usable as an inclusive range bound
+    static String lowerBound(String prefix, long epochMillis) {
+        long value = Math.max(0, epochMillis - EPOCH_MILLIS) << (NODE_BITS + SEQUENCE_BITS);
+        char[] chars = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return prefix + "-" + new String(chars);
+    }
+
+    private static int decode(char c) {
+        for (int i = 0; i < ALPHABET.length; i++) if (ALPHABET[i] == c) return i;
+        throw new IllegalArgumentException("Not a generated id character: " + c);
+    }
+
+    private static long configuredNodeId() {
+        String value = System.getProperty("warehouse.nodeId", System.getenv("WAREHOUSE_NODE_ID"));
+        return value == null ? 0 : Long.parseLong(value.trim());
+    }
 }
 
-class PurchaseOrder {
-    private String purchaseOrderId;
-    private String requisitionId;
-    private String supplierId;
-    private String supplierName;
-    private List<PurchaseOrderItem> orderItems;
-    private BigDecimal totalAmount;
-    private LocalDateTime orderDate;
-    private String status;
+// Fixed pool of locks picked by key hash: work on one order/picklist/warehouse is serialized,
+// while work on different keys proceeds in parallel without one global lock.
+final class StripedLocks {
+    private final ReentrantLock[] locks;
 
-    public PurchaseOrder(String requisitionId, String supplierId, String supplierName, String deliveryAddress) {
-        this.purchaseOrderId = "PO-" + System.currentTimeMillis();
-        this.requisitionId = requisitionId;
-        this.supplierId = supplierId;
-        this.supplierName = supplierName;
-        this.orderItems = new ArrayList<>();
-        this.orderDate = LocalDateTime.now();
-        this.status = "CREATED";
-        this.totalAmount = BigDecimal.ZERO;
+    StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(2, stripes) - 1) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) locks[i] = new ReentrantLock();
     }
 
-    public void addOrderItem(String itemId, String itemName, int quantity, BigDecimal unitPrice) {
-        PurchaseOrderItem item = new PurchaseOrderItem(itemId, itemName, quantity, unitPrice);
-        this.orderItems.add(item);
-        calculateTotalAmount();
+    ReentrantLock lockFor(Object key) {
+        int h = key.hashCode();
+        return locks[(h ^ (h >>> 16)) & (locks.length - 1)];
     }
 
-    private void calculateTotalAmount() {
-        totalAmount = orderItems.stream()
-                .map(PurchaseOrderItem::getLineTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    <T> T withLock(Object key, java.util.function.Supplier<T> action) {
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try { return action.get(); } finally { lock.unlock(); }
     }
 
-    public String getPurchaseOrderId() { return purchaseOrderId; }
-    public String getStatus() { return status; }
+    // Takes every stripe in index order, so the action runs with no keyed work in progress; keyed callers hold one
+    // stripe and never wait for another while holding it
+    <T> T withAllLocks(java.util.function.Supplier<T> action) {
+        int locked = 0;
+        try {
+            for (; locked < locks.length; locked++) locks[locked].lock();
+            return action.get();
+        } finally {
+            while (locked > 0) locks[--locked].unlock();
+        }
+    }
 }
 
-class PurchaseOrderItem {
-    private String itemId;
-    private String itemName;
-    private int quantity;
-    private BigDecimal unitPrice;
-    private BigDecimal lineTotal;
+// Structured logging off the request path. Callers claim a slot of a preallocated ring, fill it in and publish it:
+//     EventLog.info("pick.recorded").with("itemId", itemId).with("qty", qty).publish();
+// One daemon thread renders published slots as JSON lines ({"ts", "level", "thread", "event", fields..., "error"}) and
+// writes them out in batches. The calling side never formats, never allocates per event and never waits: an event
+// below the level (-Dwarehouse.log.level, default INFO) or one that finds the ring full is discarded and counted,
+// and the writer reports the count as a log.dropped event. A slot still unpublished ABANDON_NANOS after the writer
+// reached it (its caller threw between claim and publish(), say while computing a with() value) is given up: the writer
+// swaps a fresh Event into the ring and counts the event as dropped, so the late caller can only touch the orphan.
+final class EventLog implements AutoCloseable {
+    enum Level { DEBUG, INFO, WARN, ERROR }
+
+    static final EventLog DEFAULT = createDefault();
+
+    // A ring slot, handed to one caller between claim and publish(). The writer reads it once `published` names its
+    // sequence and clears it, or replaces it when abandoned, before the slot can be claimed again. with() beyond
+    // MAX_FIELDS fields is ignored.
+    static final class Event {
+        private static final int MAX_FIELDS = 8;
+        private static final Object NUMBER = new Object(); // marks a field held in numbers[]
+        private final boolean discard;
+        private final String[] keys = new String[MAX_FIELDS];
+        private final Object[] values = new Object[MAX_FIELDS];
+        private final long[] numbers = new long[MAX_FIELDS];
+        private volatile long published = -1;
+        private long sequence, at;
+        private int fields;
+        private Level level;
+        private String name, thread;
+        private Throwable error;
+
+        private Event(boolean discard) { this.discard = discard; }
+
+        Event with(String key, Object value) {
+            if (!discard && fields < MAX_FIELDS) { keys[fields] = key; values[fields++] = value; }
+            return this;
+        }
+        Event with(String key, long value) {
+            if (!discard && fields < MAX_FIELDS) { keys[fields] = key; values[fields] = NUMBER; numbers[fields++] = value; }
+            return this;
+        }
+        Event error(Throwable e) {
+            if (!discard) error = e;
+            return this;
+        }
+        void publish() { if (!discard) published = sequence; }
+    }
 
-    public PurchaseOrderItem(String itemId, String itemName, int quantity, BigDecimal unitPrice) {
-        this.itemId = itemId;
-        this.itemName = itemName;
-        this.quantity = quantity;
-        this.unitPrice = unitPrice;
-        this.lineTotal = unitPrice.multiply(BigDecimal.valueOf(quantity));
+    private static final Event DISCARD = new Event(true);
+    private static final long ABANDON_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Event[] ring;
+    private final int mask;
+    private final Level minLevel;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    private final LongAdder dropped = new LongAdder();
+    private final Writer out;
+    private final Thread writer;
+    private volatile boolean closing;
+
+    EventLog(Writer out, int capacity, Level minLevel) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.ring = new Event[size];
+        for (int i = 0; i < size; i++) ring[i] = new Event(false);
+        this.mask = size - 1;
+        this.minLevel = minLevel;
+        this.out = out;
+        this.writer = new Thread(this::drain, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
     }
 
-    public BigDecimal getLineTotal() { return lineTotal; }
-}
+    // Through System.out rather than the raw descriptor, so a redirected System.out (a test runner's, say) gets the lines
+    private static EventLog createDefault() {
+        Writer stdout = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        EventLog log = new EventLog(new BufferedWriter(stdout, 1 << 16), Integer.getInteger("warehouse.log.bufferSize", 8192),
+                Level.valueOf(System.getProperty("warehouse.log.level", "INFO").toUpperCase(Locale.ROOT)));
+        Runtime.getRuntime().addShutdownHook(new Thread(log::close, "event-log-shutdown"));
+        return log;
+    }
 
+    static Event debug(String name) { return DEFAULT.event(Level.DEBUG, name); }
+    static Event info(String name) { return DEFAULT.event(Level.INFO, name); }
+    static Event warn(String name) { return DEFAULT.event(Level.WARN, name); }
+    static Event error(String name) { return DEFAULT.event(Level.ERROR, name); }
+
+    Event event(Level level, String name) {
+        if (level.compareTo(minLevel) < 0 || closing) return DISCARD;
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed >= ring.length) {
+                dropped.increment();
+                return DISCARD;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+        Event e = ring[(int) seq & mask];
+        e.sequence = seq; e.level = level; e.name = name; e.fields = 0;
+        e.thread = Thread.currentThread().getName(); e.at = System.currentTimeMillis();
+        return e;
+    }
 
-class Person {
-    protected String name;
-    protected int employeeId;
+    long getDropped() { return dropped.sum(); }
+
+    private void drain() {
+        long next = 0, reportedDrops = 0, waitingSince = 0;
+        boolean dirty = false;
+        while (true) {
+            Event e = ring[(int) next & mask];
+            if (e.published == next) {
+                try {
+                    render(e);
+                    dirty = true;
+                } catch (IOException | RuntimeException ex) {
+                    ex.printStackTrace(); // the log itself failed; stderr is all that is left
+                }
+                Arrays.fill(e.values, null);
+                e.error = null;
+                consumed = ++next;
+                waitingSince = 0;
+                continue;
+            }
+            if (next < claimed.get()) { // claimed but not yet published: the caller is between claim and publish()
+                long now = System.nanoTime();
+                if (waitingSince == 0) waitingSince = now;
+                if (now - waitingSince < ABANDON_NANOS) {
+                    if (now - waitingSince < 50_000) Thread.yield(); else java.util.concurrent.locks.LockSupport.parkNanos(50_000);
+                    continue;
+                }
+                // Published only into the orphan from here on; claimers see the new slot through `consumed`
+                ring[(int) next & mask] = new Event(false);
+                dropped.increment();
+                consumed = ++next;
+                waitingSince = 0;
+                continue;
+            }
+            long drops = dropped.sum();
+            try {
+                if (drops != reportedDrops) {
+                    writeDropped(drops - reportedDrops);
+                    reportedDrops = drops;
+                    dirty = true;
+                }
+                if (dirty) out.flush();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+            dirty = false;
+            if (closing) return;
+            java.util.concurrent.locks.LockSupport.parkNanos(1_000_000);
+        }
+    }
 
-    public Person(String name, int employeeId) {
-        this.name = name;
-        this.employeeId = employeeId;
+    // Writer thread only: reused line buffers, and the timestamp text is reused while the millisecond stays the same
+    private final StringBuilder line = new StringBuilder(256);
+    private char[] chars = new char[256];
+    private long renderedAt = Long.MIN_VALUE;
+    private String renderedTs;
+
+    private void render(Event e) throws IOException {
+        if (e.at != renderedAt) { renderedAt = e.at; renderedTs = java.time.Instant.ofEpochMilli(e.at).toString(); }
+        StringBuilder b = startLine(renderedTs, e.level, e.thread, e.name);
+        for (int i = 0; i < e.fields; i++) {
+            b.append(',');
+            quote(b, e.keys[i]).append(':');
+            Object value = e.values[i];
+            if (value == Event.NUMBER) b.append(e.numbers[i]);
+            else if (value == null) b.append("null");
+            else if (value instanceof Number || value instanceof Boolean) b.append(value);
+            else quote(b, value.toString());
+        }
+        if (e.error != null) {
+            java.io.StringWriter trace = new java.io.StringWriter();
+            e.error.printStackTrace(new java.io.PrintWriter(trace));
+            quote(b.append(",\"error\":"), e.error.toString());
+            quote(b.append(",\"stackTrace\":"), trace.toString());
+        }
+        emit(b.append("}\n"));
     }
 
-    public String getName() { return name; }
-}
+    private void writeDropped(long count) throws IOException {
+        emit(startLine(java.time.Instant.now().toString(), Level.WARN, writer.getName(), "log.dropped").append(",\"count\":").append(count).append("}\n"));
+    }
 
-class ProcurementOfficer extends Person {
-    public ProcurementOfficer(String name, int employeeId) { super(name, employeeId); }
-    public PurchaseOrder_BP1 createPurchaseOrder(int id, Supplier supplier) {
-        return new PurchaseOrder_BP1(id, supplier);
+    private void emit(StringBuilder b) throws IOException {
+        if (b.length() > chars.length) chars = new char[Math.max(b.length(), chars.length * 2)];
+        b.getChars(0, b.length(), chars, 0);
+        out.write(chars, 0, b.length());
     }
-}
 
-// Renamed to avoid conflict
-class PurchaseOrder_BP1 {
-    private int id;
-    private Supplier supplier;
+    private StringBuilder startLine(String ts, Level level, String thread, String name) {
+        line.setLength(0);
+        line.append("{\"ts\":\"").append(ts).append("\",\"level\":\"").append(level.name()).append("\",\"thread\":");
+        quote(line, thread).append(",\"event\":");
+        return quote(line, name);
+    }
+
+    private static StringBuilder quote(StringBuilder b, String s) {
+        b.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': b.append("\\\""); break;
+                case '\\': b.append("\\\\"); break;
+                case '\n': b.append("\\n"); break;
+                case '\r': b.append("\\r"); break;
+                case '\t': b.append("\\t"); break;
+                default:
+                    if (c < 0x20) b.append(String.format("\\u%04x", (int) c)); else b.append(c);
+            }
+        }
+        return b.append('"');
+    }
+
+    // Stops taking events, writes out what was published and flushes
+    @Override
+    public void close() {
+        closing = true;
+        java.util.concurrent.locks.LockSupport.unpark(writer);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
+
+// Builds the embedded Jetty server in place of Spark's default one, configured by -Dwarehouse.http.* properties.
+// mode=platform serves requests from a QueuedThreadPool of minThreads..maxThreads (idle ones retire after threadIdleMillis);
+// mode=virtual starts a virtual thread per task instead, so a request parked on a lock or on I/O holds no pool slot.
+// Virtual threads need a JDK 21+ runtime; elsewhere the platform pool is kept and http.mode.unavailable is logged.
+// acceptors and selectors of -1 let Jetty size them from the core count, an acceptQueue of 0 keeps the JDK's backlog.
+final class HttpServerFactory implements JettyServerFactory {
+    enum Mode { PLATFORM, VIRTUAL }
+
+    private static final Method VIRTUAL_EXECUTOR = virtualExecutorFactory();
+
+    final Mode mode;
+    final int port, maxThreads, minThreads, threadIdleMillis, acceptors, selectors, acceptQueue;
+    final long connectionIdleMillis;
+
+    HttpServerFactory(Mode mode, int port, int maxThreads, int minThreads, int threadIdleMillis,
+                      int acceptors, int selectors, int acceptQueue, long connectionIdleMillis) {
+        if (mode == Mode.VIRTUAL && VIRTUAL_EXECUTOR == null) {
+            EventLog.warn("http.mode.unavailable").with("requested", mode.name()).with("java", Runtime.version().toString()).publish();
+            mode = Mode.PLATFORM;
+        }
+        this.mode = mode;
+        this.port = port;
+        this.maxThreads = maxThreads;
+        this.minThreads = Math.min(minThreads, maxThreads);
+        this.threadIdleMillis = threadIdleMillis;
+        this.acceptors = acceptors;
+        this.selectors = selectors;
+        this.acceptQueue = acceptQueue;
+        this.connectionIdleMillis = connectionIdleMillis;
+    }
+
+    static HttpServerFactory fromProperties() {
+        return new HttpServerFactory(
+                Mode.valueOf(System.getProperty("warehouse.http.mode", "platform").toUpperCase(Locale.ROOT)),
+                Integer.getInteger("warehouse.http.port", 4567),
+                Integer.getInteger("warehouse.http.maxThreads", 200),
+                Integer.getInteger("warehouse.http.minThreads", 8),
+                Integer.getInteger("warehouse.http.threadIdleMillis", 60_000),
+                Integer.getInteger("warehouse.http.acceptors", -1),
+                Integer.getInteger("warehouse.http.selectors", -1),
+                Integer.getInteger("warehouse.http.acceptQueue", 0),
+                Long.getLong("warehouse.http.connectionIdleMillis", TimeUnit.HOURS.toMillis(1)));
+    }
+
+    private static Method virtualExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    // Spark's threadPool(max, min, idle) settings are not used, the pool comes from the properties above
+    @Override
+    public Server create(int maxThreads, int minThreads, int threadTimeoutMillis) {
+        return create(createThreadPool());
+    }
+
+    // The connector is set up the way Spark's own is (forwarded headers trusted), plus acceptors/selectors/backlog;
+    // Spark keeps connectors a factory has already added
+    @Override
+    public Server create(ThreadPool threadPool) {
+        Server server = new Server(threadPool);
+        HttpConfiguration config = new HttpConfiguration();
+        config.setSecureScheme("https");
+        config.addCustomizer(new ForwardedRequestCustomizer());
+        ServerConnector connector = new ServerConnector(server, acceptors, selectors, new HttpConnectionFactory(config));
+        connector.setPort(port);
+        connector.setAcceptQueueSize(acceptQueue);
+        connector.setIdleTimeout(connectionIdleMillis);
+        server.setConnectors(new Connector[]{connector});
+        return server;
+    }
+
+    ThreadPool createThreadPool() {
+        if (mode == Mode.VIRTUAL) {
+            try {
+                return new VirtualThreadPool((ExecutorService) VIRTUAL_EXECUTOR.invoke(null));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create virtual thread executor", e);
+            }
+        }
+        QueuedThreadPool pool = new QueuedThreadPool(maxThreads, minThreads, threadIdleMillis);
+        pool.setName("http");
+        return pool;
+    }
+
+    // One virtual thread per task. Jetty runs its acceptors and selectors as tasks too; an acceptor parks like any
+    // other blocking call, a selector in select() pins its carrier and the JDK adds a carrier to make up for it.
+    static final class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+        private final ExecutorService executor;
+        private final AtomicInteger running = new AtomicInteger();
+
+        VirtualThreadPool(ExecutorService executor) { this.executor = executor; }
+
+        @Override
+        public void execute(Runnable task) {
+            executor.execute(() -> {
+                running.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+        }
+
+        @Override
+        public void join() throws InterruptedException { executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS); }
+        @Override
+        public int getThreads() { return running.get(); }
+        @Override
+        public int getIdleThreads() { return 0; }
+        @Override
+        public boolean isLowOnThreads() { return false; }
+        @Override
+        protected void doStop() { executor.shutdown(); }
+    }
+}
+
+// Request and domain instrumentation, rendered by GET /metrics in the Prometheus text format. A request is timed from the
+// first before-filter to afterAfter and filed under the route pattern that served it (json() and the streaming routes
+// tag it), so /orders/1 and /orders/2 share one series; requests no route claimed go under route="unmatched". The timing
+// rides on the request as an attribute, one small object per request, so it holds under a virtual thread per request
+// as well as on a pooled thread.
+// Latency lands in a log-linear histogram: two buckets per power of two of nanoseconds from 16 us to 17 s.
+final class Metrics {
+    static final Metrics DEFAULT = new Metrics();
+
+    private static final int MIN_OCTAVE = 14, MAX_OCTAVE = 34, BUCKETS = 2 * (MAX_OCTAVE - MIN_OCTAVE) + 2;
+    private static final String[] BUCKET_BOUNDS = new String[BUCKETS];
+    private static final Set<String> METHODS = Set.of("GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH");
+    static {
+        BUCKET_BOUNDS[0] = Double.toString((1L << MIN_OCTAVE) / 1e9);
+        for (int octave = MIN_OCTAVE; octave < MAX_OCTAVE; octave++) {
+            int i = 1 + 2 * (octave - MIN_OCTAVE);
+            BUCKET_BOUNDS[i] = Double.toString(1.5 * (1L << octave) / 1e9);
+            BUCKET_BOUNDS[i + 1] = Double.toString((1L << (octave + 1)) / 1e9);
+        }
+        BUCKET_BOUNDS[BUCKETS - 1] = "+Inf";
+    }
+
+    static final class RouteStats {
+        final String method, route;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder[] byStatusClass = new LongAdder[5];
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder totalNanos = new LongAdder();
+
+        RouteStats(String method, String route) {
+            this.method = method;
+            this.route = route;
+            for (int i = 0; i < byStatusClass.length; i++) byStatusClass[i] = new LongAdder();
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        void record(int status, long nanos) {
+            byStatusClass[Math.min(Math.max(status / 100, 1), 5) - 1].increment();
+            buckets[bucket(nanos)].increment();
+            totalNanos.add(nanos);
+        }
+    }
+
+    static final class Timing {
+        final long started;
+        RouteStats route;
+        Timing(long started) { this.started = started; }
+    }
+
+    private static final class Named {
+        final String name, help, type;
+        final LongAdder counter; // null for a gauge
+        final LongSupplier value;
+        Named(String name, String help, String type, LongAdder counter, LongSupplier value) {
+            this.name = name; this.help = help; this.type = type; this.counter = counter; this.value = value;
+        }
+    }
+
+    private final ConcurrentMap<String, ConcurrentMap<String, RouteStats>> routes = new ConcurrentHashMap<>();
+    private static final String TIMING = Metrics.class.getName() + ".timing"; // request attribute
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final List<Named> named = new CopyOnWriteArrayList<>();
+
+    static int bucket(long nanos) {
+        if (nanos < 1L << MIN_OCTAVE) return 0;
+        int octave = 63 - Long.numberOfLeadingZeros(nanos);
+        if (octave >= MAX_OCTAVE) return BUCKETS - 1;
+        return 1 + 2 * (octave - MIN_OCTAVE) + (int) ((nanos >>> (octave - 1)) & 1);
+    }
+
+    RouteStats route(String method, String route) {
+        return routes.computeIfAbsent(method, m -> new ConcurrentHashMap<>()).computeIfAbsent(route, r -> new RouteStats(method, r));
+    }
+
+    void begin(Request req) { req.attribute(TIMING, begin()); }
+
+    Timing begin() {
+        inFlight.incrementAndGet();
+        return new Timing(System.nanoTime());
+    }
+
+    // Called by the route itself, where Spark's matchedPath() is the pattern rather than the filter's wildcard
+    void tag(Request req) {
+        Timing t = req.attribute(TIMING);
+        if (t != null) tag(t, req.requestMethod(), req.matchedPath());
+    }
+
+    void tag(Timing t, String method, String pattern) {
+        if (t.route != null) return;
+        t.route = route(method, pattern);
+        t.route.inFlight.incrementAndGet();
+    }
+
+    void end(Request req, int status) {
+        Timing t = req.attribute(TIMING);
+        if (t != null) end(t, req.requestMethod(), status);
+    }
+
+    void end(Timing t, String method, int status) {
+        long elapsed = System.nanoTime() - t.started;
+        RouteStats r = t.route;
+        if (r != null) r.inFlight.decrementAndGet();
+        else r = route(METHODS.contains(method) ? method : "other", "unmatched");
+        inFlight.decrementAndGet();
+        r.record(status, elapsed);
+    }
+
+    // Counters are registered once per name; a second registration hands back the first counter
+    synchronized LongAdder counter(String name, String help) {
+        for (Named n : named) if (n.name.equals(name) && n.counter != null) return n.counter;
+        LongAdder counter = new LongAdder();
+        named.add(new Named(name, help, "counter", counter, counter::sum));
+        return counter;
+    }
+
+    synchronized void gauge(String name, String help, LongSupplier value) {
+        named.removeIf(n -> n.name.equals(name));
+        named.add(new Named(name, help, "gauge", null, value));
+    }
+
+    String render() {
+        StringBuilder out = new StringBuilder(16_384);
+        List<RouteStats> stats = new ArrayList<>();
+        routes.values().forEach(m -> stats.addAll(m.values()));
+        stats.sort(Comparator.comparing((RouteStats r) -> r.route).thenComparing(r -> r.method));
+
+        header(out, "warehouse_http_requests_total", "Requests served, by route pattern and status class", "counter");
+        for (RouteStats r : stats) {
+            for (int i = 0; i < r.byStatusClass.length; i++) {
+                long n = r.byStatusClass[i].sum();
+                if (n > 0) labels(out, "warehouse_http_requests_total", r).append(",code=\"").append(i + 1).append("xx\"} ").append(n).append('\n');
+            }
+        }
+        header(out, "warehouse_http_request_duration_seconds", "Time from the first filter to the end of the response", "histogram");
+        for (RouteStats r : stats) {
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += r.buckets[i].sum();
+                labels(out, "warehouse_http_request_duration_seconds_bucket", r).append(",le=\"").append(BUCKET_BOUNDS[i]).append("\"} ").append(cumulative).append('\n');
+            }
+            labels(out, "warehouse_http_request_duration_seconds_sum", r).append("} ").append(r.totalNanos.sum() / 1e9).append('\n');
+            labels(out, "warehouse_http_request_duration_seconds_count", r).append("} ").append(cumulative).append('\n');
+        }
+        header(out, "warehouse_http_route_in_flight", "Requests being handled by a route right now", "gauge");
+        for (RouteStats r : stats) labels(out, "warehouse_http_route_in_flight", r).append("} ").append(r.inFlight.get()).append('\n');
+        sample(out, "warehouse_http_requests_in_flight", "Requests between the first filter and the end of the response", "gauge", inFlight.get());
+
+        for (Named n : named) sample(out, n.name, n.help, n.type, n.value.getAsLong());
+        renderJvm(out);
+        return out.toString();
+    }
+
+    private static void renderJvm(StringBuilder out) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        MemoryUsage heap = memory.getHeapMemoryUsage(), nonHeap = memory.getNonHeapMemoryUsage();
+        header(out, "jvm_memory_bytes_used", "Used memory by area", "gauge");
+        out.append("jvm_memory_bytes_used{area=\"heap\"} ").append(heap.getUsed()).append('\n');
+        out.append("jvm_memory_bytes_used{area=\"nonheap\"} ").append(nonHeap.getUsed()).append('\n');
+        header(out, "jvm_memory_bytes_committed", "Committed memory by area", "gauge");
+        out.append("jvm_memory_bytes_committed{area=\"heap\"} ").append(heap.getCommitted()).append('\n');
+        out.append("jvm_memory_bytes_committed{area=\"nonheap\"} ").append(nonHeap.getCommitted()).append('\n');
+        sample(out, "jvm_memory_heap_bytes_max", "Maximum heap size", "gauge", heap.getMax());
+
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        header(out, "jvm_gc_collections_total", "Collections run, by collector", "counter");
+        for (GarbageCollectorMXBean gc : collectors) {
+            out.append("jvm_gc_collections_total{gc=\"").append(escape(gc.getName())).append("\"} ").append(Math.max(0, gc.getCollectionCount())).append('\n');
+        }
+        header(out, "jvm_gc_collection_seconds_total", "Time spent in collections, by collector", "counter");
+        for (GarbageCollectorMXBean gc : collectors) {
+            out.append("jvm_gc_collection_seconds_total{gc=\"").append(escape(gc.getName())).append("\"} ").append(Math.max(0, gc.getCollectionTime()) / 1e3).append('\n');
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        sample(out, "jvm_threads_current", "Live platform threads", "gauge", threads.getThreadCount());
+        sample(out, "jvm_threads_daemon", "Live daemon threads", "gauge", threads.getDaemonThreadCount());
+        sample(out, "jvm_uptime_seconds", "Time since the JVM started", "gauge", ManagementFactory.getRuntimeMXBean().getUptime() / 1000);
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String help, String type, long value) {
+        header(out, name, help, type);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static StringBuilder labels(StringBuilder out, String name, RouteStats r) {
+        return out.append(name).append("{method=\"").append(escape(r.method)).append("\",route=\"").append(escape(r.route)).append('"');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
+
+// Version of every journaled entity, bumped through MutationLog.record (every manager calls it after changing an entity)
+// and sent as a weak ETag plus Last-Modified. Versions come from one counter and the ETag carries a per-boot tag, so a tag
+// is never reused for other content, not even across restarts. Views over several entities (an item's stock levels, a
+// warehouse's capacity) get a derived key that is bumped alongside. An entity untouched since startup is version 0.
+final class EntityVersions {
+    static final class Stamp {
+        final long version, modifiedMillis;
+        Stamp(long version, long modifiedMillis) { this.version = version; this.modifiedMillis = modifiedMillis; }
+    }
+
+    private static final java.time.format.DateTimeFormatter HTTP_DATE =
+            java.time.format.DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(java.time.ZoneOffset.UTC);
+
+    private final ConcurrentMap<String, Stamp> stamps = new ConcurrentHashMap<>();
+    private final Map<String, BiFunction<String, Object, String>> derived = new ConcurrentHashMap<>();
+    private final AtomicLong counter = new AtomicLong();
+    private final Stamp initial = new Stamp(0, System.currentTimeMillis());
+    private final String boot = Long.toString(initial.modifiedMillis, 36);
+
+    // Also bump derivedKind/key(id, entity) whenever an entity of `kind` changes
+    void derive(String kind, String derivedKind, BiFunction<String, Object, String> key) {
+        derived.put(kind, (id, entity) -> derivedKind + '/' + key.apply(id, entity));
+    }
+
+    MutationLog over(MutationLog next) {
+        return new MutationLog() {
+            @Override
+            public void record(String kind, String id, Object entity) {
+                bump(kind, id, entity);
+                next.record(kind, id, entity);
+            }
+            @Override
+            public void removed(String kind, String id, Object last) {
+                bump(kind, id, last);
+                next.removed(kind, id, last);
+            }
+        };
+    }
+
+    // Keeps the highest version when two bumps of a derived key land out of order
+    private void bump(String kind, String id, Object entity) {
+        Stamp stamp = new Stamp(counter.incrementAndGet(), System.currentTimeMillis());
+        stamps.merge(kind + '/' + id, stamp, (a, b) -> a.version >= b.version ? a : b);
+        BiFunction<String, Object, String> key = derived.get(kind);
+        if (key != null) stamps.merge(key.apply(id, entity), stamp, (a, b) -> a.version >= b.version ? a : b);
+    }
+
+    Stamp stamp(String key) { return stamps.getOrDefault(key, initial); }
+
+    String etag(Stamp stamp) { return "W/\"" + boot + "-" + stamp.version + "\""; }
+
+    static String lastModified(Stamp stamp) {
+        return HTTP_DATE.format(java.time.Instant.ofEpochMilli(stamp.modifiedMillis));
+    }
+
+    // If-None-Match wins when present (weak comparison); If-Modified-Since only has second precision
+    boolean notModified(Stamp stamp, String ifNoneMatch, String ifModifiedSince) {
+        if (ifNoneMatch != null) {
+            String tag = etag(stamp).substring(2);
+            for (String candidate : ifNoneMatch.split(",")) {
+                String c = candidate.trim();
+                if (c.equals("*") || c.equals(tag) || (c.startsWith("W/") && c.substring(2).equals(tag))) return true;
+            }
+            return false;
+        }
+        if (ifModifiedSince == null) return false;
+        try {
+            return stamp.modifiedMillis / 1000 <= java.time.ZonedDateTime.parse(ifModifiedSince, HTTP_DATE).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
+
+// Rendered JSON of the polled single-entity lookups, keyed like EntityVersions and good while the version it was
+// rendered at is current. The version is read before rendering, so a change racing with a render only costs a miss.
+// Bounded by -Dwarehouse.cache.maxEntries (default 10000, 0 turns it off) over 16 access-ordered LRU segments with a
+// lock each, so concurrent hits rarely meet on one lock.
+final class ResponseCache {
+    private static final int SEGMENTS = 16;
+    private static final LongAdder HITS = Metrics.DEFAULT.counter("warehouse_response_cache_hits_total", "Lookups answered from cached JSON");
+    private static final LongAdder MISSES = Metrics.DEFAULT.counter("warehouse_response_cache_misses_total", "Lookups rendered because no current JSON was cached");
+    private static final LongAdder NOT_MODIFIED = Metrics.DEFAULT.counter("warehouse_response_not_modified_total", "Conditional lookups answered with 304");
+    private static final LongAdder EVICTIONS = Metrics.DEFAULT.counter("warehouse_response_cache_evictions_total", "Cached responses evicted as least recently used");
+
+    private static final class Entry {
+        final long version;
+        final byte[] body;
+        Entry(long version, byte[] body) { this.version = version; this.body = body; }
+    }
+
+    final EntityVersions versions;
+    private final boolean enabled;
+    private final List<Map<String, Entry>> segments = new ArrayList<>(SEGMENTS);
+
+    ResponseCache(EntityVersions versions, int maxEntries) {
+        this.versions = versions;
+        this.enabled = maxEntries > 0;
+        int perSegment = (maxEntries + SEGMENTS - 1) / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments.add(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() <= perSegment) return false;
+                    EVICTIONS.increment();
+                    return true;
+                }
+            });
+        }
+        Metrics.DEFAULT.gauge("warehouse_response_cache_entries", "Responses held in the response cache", this::size);
+    }
+
+    private Map<String, Entry> segment(String key) { return segments.get((key.hashCode() & 0x7fffffff) % SEGMENTS); }
+
+    void countNotModified() { NOT_MODIFIED.increment(); }
+
+    // The cached body if it was rendered at `version`, otherwise render() once and keep that
+    byte[] get(String key, long version, java.util.function.Supplier<byte[]> render) {
+        if (!enabled) return render.get();
+        Map<String, Entry> segment = segment(key);
+        Entry entry;
+        synchronized (segment) { entry = segment.get(key); }
+        if (entry != null && entry.version == version) {
+            HITS.increment();
+            return entry.body;
+        }
+        MISSES.increment();
+        byte[] body = render.get();
+        synchronized (segment) {
+            Entry current = segment.get(key);
+            if (current == null || current.version <= version) segment.put(key, new Entry(version, body));
+        }
+        return body;
+    }
+
+    long size() {
+        long n = 0;
+        for (Map<String, Entry> segment : segments) synchronized (segment) { n += segment.size(); }
+        return n;
+    }
+}
+
+// Receives every domain mutation; managers call it after changing an entity, inside the entity's lock, so what it reads
+// of the entity there is consistent
+interface MutationLog {
+    MutationLog NONE = (kind, id, entity) -> {};
+    void record(String kind, String id, Object entity);
+    // The entity is gone; `last` is its final state, for listeners keyed off it. Also called inside the entity's lock.
+    default void removed(String kind, String id, Object last) {}
+}
+
+// Implemented by every stateful manager so persistence can be attached after recovery
+interface Journaled {
+    void setJournal(MutationLog journal);
+}
+
+// Append-only journal of entity upserts and removals, compacted into snapshots in the background and replayed at startup.
+// Callers serialize the entity themselves, inside the lock they changed it under, so every line is a consistent copy and
+// an entity's lines are queued in mutation order; one writer thread writes and fsyncs whole batches (group commit).
+// Replay (last write wins per kind/id, a null value removes) rebuilds the managers exactly.
+// Callers never wait for the writer: while the queue is full, records go to an overflow map holding the latest line per
+// entity, which the writer flushes after everything queued before it. Snapshots never read live state either: the
+// writer rolls to a new segment and a compactor thread folds the previous snapshot and the closed segments together.
+// Once close() starts, records are refused and counted; everything admitted before that is written before the last fsync.
+final class DomainJournal implements MutationLog, AutoCloseable {
+    private static final class Entry {
+        final String kind, id, json; // json is null for a removal
+        Entry(String kind, String id, String json) { this.kind = kind; this.id = id; this.json = json; }
+    }
+    private static final class Registration {
+        final Class<?> type; final BiConsumer<String, Object> restore; final Consumer<String> remove;
+        Registration(Class<?> type, BiConsumer<String, Object> restore, Consumer<String> remove) {
+            this.type = type; this.restore = restore; this.remove = remove;
+        }
+    }
+    private static final LongAdder OVERFLOWED = Metrics.DEFAULT.counter("warehouse_journal_overflow_records_total",
+            "Journal records that found the queue full and went to the overflow map");
+    private static final LongAdder REFUSED = Metrics.DEFAULT.counter("warehouse_journal_refused_records_total",
+            "Journal records that arrived after the journal began closing and were not written");
+
+    private final Path directory;
+    private final int maxBatch;
+    private final long snapshotEveryRecords, snapshotIntervalMillis;
+    private final Gson gson = createGson();
+    private final Map<String, Registration> registrations = new LinkedHashMap<>();
+    private final StripedLocks entityLocks = new StripedLocks(256);
+    private final BlockingQueue<Entry> queue;
+    private final Object overflowLock = new Object();
+    private Map<String, Entry> overflow = new LinkedHashMap<>(); // guarded by overflowLock, as are changes to overflowing
+    private volatile boolean overflowing;
+    private final Thread writer = new Thread(this::runWriter, "journal-writer");
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "journal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean running, closing, snapshotRequested;
+
+    // Owned by the writer thread
+    private long generation;
+    private FileChannel channel;
+    private Writer out;
+    private long recordsSinceSnapshot, lastSnapshotAt;
+    private Future<?> compaction;
+
+    private final AtomicLong recordsWritten = new AtomicLong(), batchesWritten = new AtomicLong(), snapshotsWritten = new AtomicLong();
+    private volatile long recoveredRecords, recoveryMillis, lastSnapshotMillis;
+
+    DomainJournal(Path directory, int maxBatch, long snapshotEveryRecords, long snapshotIntervalMillis) {
+        this(directory, maxBatch, snapshotEveryRecords, snapshotIntervalMillis, 1 << 16);
+    }
+
+    DomainJournal(Path directory, int maxBatch, long snapshotEveryRecords, long snapshotIntervalMillis, int queueCapacity) {
+        this.directory = directory; this.maxBatch = maxBatch;
+        this.snapshotEveryRecords = snapshotEveryRecords; this.snapshotIntervalMillis = snapshotIntervalMillis;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    // Reflective on purpose: snapshots need every field, not just the response view
+    static Gson createGson() { return JsonSupport.builder().create(); }
+
+    // Registration order is snapshot order. `remove` replays removals; kinds that are never removed leave it out.
+    <T> void register(String kind, Class<T> type, BiConsumer<String, T> restore) { register(kind, type, restore, null); }
+
+    @SuppressWarnings("unchecked")
+    <T> void register(String kind, Class<T> type, BiConsumer<String, T> restore, Consumer<String> remove) {
+        registrations.put(kind, new Registration(type, (id, entity) -> restore.accept(id, (T) entity), remove));
+    }
+
+    // Serializing and queueing under the entity's stripe keeps its lines in order even for entities changed by a bare
+    // status CAS: whichever record comes last reads the state after every change it follows
+    @Override
+    public void record(String kind, String id, Object entity) {
+        entityLocks.withLock(kind + '/' + id, () -> closing ? refuse(kind, id) : enqueue(new Entry(kind, id, gson.toJson(entity))));
+    }
+
+    @Override
+    public void removed(String kind, String id, Object last) {
+        entityLocks.withLock(kind + '/' + id, () -> closing ? refuse(kind, id) : enqueue(new Entry(kind, id, null)));
+    }
+
+    private Void refuse(String kind, String id) {
+        REFUSED.increment();
+        EventLog.warn("journal.closed.record").with("kind", kind).with("id", id).publish();
+        return null;
+    }
+
+    private Void enqueue(Entry entry) {
+        if (!overflowing && queue.offer(entry)) return null;
+        synchronized (overflowLock) {
+            if (!overflowing) {
+                if (queue.offer(entry)) return null;
+                overflowing = true;
+                EventLog.warn("journal.overflow").with("queued", queue.size()).publish();
+            }
+            String key = entry.kind + '/' + entry.id;
+            overflow.remove(key); // re-inserted, so the map keeps the order of each entity's latest change
+            overflow.put(key, entry);
+        }
+        OVERFLOWED.increment();
+        return null;
+    }
+
+    void requestSnapshot() { snapshotRequested = true; }
+
+    // Loads the newest snapshot and replays every journal segment written after it
+    void recover() {
+        long start = System.nanoTime();
+        long applied = 0;
+        try {
+            Files.createDirectories(directory);
+            long snapshotGeneration = latestGeneration("snapshot-", ".json");
+            if (snapshotGeneration >= 0) applied += replay(file("snapshot-", snapshotGeneration, ".json"));
+            for (long g : generations("journal-", ".log")) {
+                if (g >= snapshotGeneration) applied += replay(file("journal-", g, ".log"));
+                generation = Math.max(generation, g);
+            }
+            generation = Math.max(generation, snapshotGeneration);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not recover journal from " + directory, e);
+        }
+        recoveredRecords = applied;
+        recoveryMillis = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private long replay(Path path) throws IOException {
+        long applied = 0, lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                JsonObject json;
+                try {
+                    json = JsonParser.parseString(line).getAsJsonObject();
+                } catch (RuntimeException e) {
+                    tornTail(path, lineNumber, reader, e);
+                    break;
+                }
+                Registration registration = json.has("k") ? registrations.get(json.get("k").getAsString()) : null;
+                if (registration == null) continue;
+                String id = json.get("id").getAsString();
+                if (!json.has("v") || json.get("v").isJsonNull()) {
+                    if (registration.remove != null) registration.remove.accept(id);
+                } else {
+                    registration.restore.accept(id, gson.fromJson(json.get("v"), registration.type));
+                }
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    void start() {
+        try {
+            openSegment(generation + 1);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open journal segment in " + directory, e);
+        }
+        lastSnapshotAt = System.currentTimeMillis();
+        running = true;
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void runWriter() {
+        List<Entry> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty() || overflowing) {
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatch - 1);
+                }
+                if (overflowing) drainOverflow(batch);
+                if (!batch.isEmpty()) writeBatch(batch);
+                batch.clear();
+                boolean due = snapshotRequested || recordsSinceSnapshot >= snapshotEveryRecords
+                        || (recordsSinceSnapshot > 0 && System.currentTimeMillis() - lastSnapshotAt >= snapshotIntervalMillis);
+                if (due && (compaction == null || compaction.isDone())) startCompaction();
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException e) {
+                EventLog.error("journal.write.failed").with("generation", generation).error(e).publish();
+            }
+        }
+    }
+
+    // Everything queued before the overflow began goes first, then the latest line of each overflowed entity
+    private void drainOverflow(List<Entry> batch) {
+        Collection<Entry> overflowed;
+        synchronized (overflowLock) {
+            queue.drainTo(batch);
+            overflowed = overflow.values();
+            overflow = new LinkedHashMap<>();
+            overflowing = false;
+        }
+        batch.addAll(overflowed);
+    }
+
+    private void writeBatch(List<Entry> batch) throws IOException {
+        for (Entry entry : batch) writeLine(out, entry);
+        out.flush();
+        channel.force(false);
+        recordsWritten.addAndGet(batch.size());
+        batchesWritten.incrementAndGet();
+        recordsSinceSnapshot += batch.size();
+    }
+
+    private void writeLine(Writer writer, Entry entry) throws IOException {
+        writer.write("{\"k\":\"");
+        writer.write(entry.kind);
+        writer.write("\",\"id\":");
+        gson.toJson(entry.id, writer);
+        writer.write(",\"v\":");
+        writer.write(entry.json == null ? "null" : entry.json);
+        writer.write("}\n");
+    }
+
+    // Rolls to a new segment and hands everything before it to the compactor
+    private void startCompaction() throws IOException {
+        openSegment(generation + 1);
+        long upTo = generation;
+        snapshotRequested = false;
+        recordsSinceSnapshot = 0;
+        lastSnapshotAt = System.currentTimeMillis();
+        compaction = compactor.submit(() -> {
+            try {
+                compact(upTo);
+            } catch (IOException | RuntimeException e) {
+                EventLog.error("journal.compaction.failed").with("generation", upTo).error(e).publish();
+            }
+        });
+    }
+
+    // snapshot-<upTo>: the newest earlier snapshot plus every segment before upTo, one line per live entity in registration
+    // order, then everything older is dropped
+    private void compact(long upTo) throws IOException {
+        long start = System.nanoTime();
+        long base = -1;
+        for (long g : generations("snapshot-", ".json")) if (g < upTo) base = g;
+        Map<String, Map<String, String>> live = new LinkedHashMap<>();
+        registrations.keySet().forEach(kind -> live.put(kind, new LinkedHashMap<>()));
+        if (base >= 0) fold(file("snapshot-", base, ".json"), live);
+        for (long g : generations("journal-", ".log")) if (g >= base && g < upTo) fold(file("journal-", g, ".log"), live);
+
+        Path tmp = file("snapshot-", upTo, ".tmp");
+        try (FileChannel snapshotChannel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Writer snapshotOut = new BufferedWriter(Channels.newWriter(snapshotChannel, StandardCharsets.UTF_8), 1 << 16)) {
+            for (Map<String, String> lines : live.values()) {
+                for (String line : lines.values()) {
+                    snapshotOut.write(line);
+                    snapshotOut.write('\n');
+                }
+            }
+            snapshotOut.flush();
+            snapshotChannel.force(true);
+        }
+        Files.move(tmp, file("snapshot-", upTo, ".json"), StandardCopyOption.ATOMIC_MOVE);
+        for (long g : generations("journal-", ".log")) if (g < upTo) Files.deleteIfExists(file("journal-", g, ".log"));
+        for (long g : generations("snapshot-", ".json")) if (g < upTo) Files.deleteIfExists(file("snapshot-", g, ".json"));
+        lastSnapshotMillis = (System.nanoTime() - start) / 1_000_000;
+        snapshotsWritten.incrementAndGet();
+    }
+
+    // Last line per kind/id wins and removals drop the entity; only the header is decoded, the value is just checked whole
+    private static void fold(Path path, Map<String, Map<String, String>> live) throws IOException {
+        long lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String kind = null, id = null;
+                boolean removal = false;
+                try (JsonReader in = new JsonReader(new java.io.StringReader(line))) {
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        String name = in.nextName();
+                        if (name.equals("k")) kind = in.nextString();
+                        else if (name.equals("id")) id = in.nextString();
+                        else if (name.equals("v") && in.peek() == JsonToken.NULL) { in.nextNull(); removal = true; }
+                        else in.skipValue();
+                    }
+                    in.endObject();
+                } catch (IOException | RuntimeException e) {
+                    tornTail(path, lineNumber, reader, e);
+                    break;
+                }
+                Map<String, String> lines = kind == null || id == null ? null : live.get(kind);
+                if (lines == null) continue;
+                if (removal) lines.remove(id); else lines.put(id, line);
+            }
+        }
+    }
+
+    // A line that does not parse is the torn tail of a batch that was never fsynced only when nothing follows it. Anywhere
+    // else the file is corrupt, and stopping there would silently drop every record after it, so this throws instead.
+    private static void tornTail(Path path, long lineNumber, BufferedReader reader, Exception e) throws IOException {
+        if (reader.readLine() != null) throw new IllegalStateException("Corrupt journal line " + lineNumber + " in " + path, e);
+    }
+
+    private void openSegment(long newGeneration) throws IOException {
+        if (out != null) {
+            out.flush();
+            channel.force(false);
+            out.close();
+        }
+        generation = newGeneration;
+        channel = FileChannel.open(file("journal-", generation, ".log"), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private Path file(String prefix, long g, String suffix) { return directory.resolve(String.format("%s%06d%s", prefix, g, suffix)); }
+
+    private List<Long> generations(String prefix, String suffix) throws IOException {
+        List<Long> result = new ArrayList<>();
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            files.map(f -> f.getFileName().toString())
+                    .filter(n -> n.startsWith(prefix) && n.endsWith(suffix))
+                    .forEach(n -> result.add(Long.parseLong(n.substring(prefix.length(), n.length() - suffix.length()))));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private long latestGeneration(String prefix, String suffix) throws IOException {
+        List<Long> all = generations(prefix, suffix);
+        return all.isEmpty() ? -1 : all.get(all.size() - 1);
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", true);
+        stats.put("directory", directory.toAbsolutePath().toString());
+        stats.put("generation", generation);
+        stats.put("queuedRecords", queue.size());
+        stats.put("overflowing", overflowing);
+        stats.put("recordsWritten", recordsWritten.get());
+        stats.put("batchesWritten", batchesWritten.get());
+        stats.put("snapshotsWritten", snapshotsWritten.get());
+        stats.put("lastSnapshotMillis", lastSnapshotMillis);
+        stats.put("recoveredRecords", recoveredRecords);
+        stats.put("recoveryMillis", recoveryMillis);
+        return stats;
+    }
+
+    // Drains pending records and compacts everything into a fresh snapshot so the next start replays almost nothing
+    @Override
+    public void close() {
+        if (!running) return;
+        // With every entity stripe held, no record is half way into the queue: whatever got in is drained below, the rest is refused
+        entityLocks.withAllLocks(() -> closing = true);
+        running = false;
+        try {
+            writer.join();
+            if (compaction != null) compaction.get();
+            openSegment(generation + 1);
+            compact(generation);
+            out.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | java.util.concurrent.ExecutionException e) {
+            EventLog.error("journal.close.failed").with("generation", generation).error(e).publish();
+        } finally {
+            compactor.shutdown();
+        }
+    }
+}
+
+// java.time adapters shared by the response and journal Gson instances; values are ISO-8601 strings
+final class JsonSupport {
+    static final TypeAdapter<LocalDate> LOCAL_DATE = new TypeAdapter<LocalDate>() {
+        @Override public void write(JsonWriter out, LocalDate value) throws IOException { out.value(value.toString()); }
+        @Override public LocalDate read(JsonReader in) throws IOException { return LocalDate.parse(in.nextString()); }
+    }.nullSafe();
+    static final TypeAdapter<LocalDateTime> LOCAL_DATE_TIME = new TypeAdapter<LocalDateTime>() {
+        @Override public void write(JsonWriter out, LocalDateTime value) throws IOException { out.value(value.toString()); }
+        @Override public LocalDateTime read(JsonReader in) throws IOException { return LocalDateTime.parse(in.nextString()); }
+    }.nullSafe();
+
+    private JsonSupport() {}
+
+    static GsonBuilder builder() {
+        return new GsonBuilder()
+                .registerTypeAdapter(LocalDate.class, LOCAL_DATE)
+                .registerTypeAdapter(LocalDateTime.class, LOCAL_DATE_TIME);
+    }
+
+    static String iso(LocalDateTime value) { return value == null ? null : value.toString(); }
+}
+
+// Secondary index of entities by lifecycle status, so "everything in state S" costs O(result) instead of a scan.
+// Each status maps IDs (time-sortable, so oldest first, and pageable with Page.of) to entities. update() re-files an
+// entity under whatever status it holds now; it synchronizes on the entity, so two transitions racing on one entity
+// cannot leave it filed under a status it already left.
+final class StatusIndex<S extends Enum<S>, T> {
+    private final Function<T, S> statusOf;
+    private final Map<S, NavigableMap<String, T>> byStatus;
+    private final Map<String, S> filedAs = new ConcurrentHashMap<>();
+
+    StatusIndex(Class<S> type, Function<T, S> statusOf) {
+        this.statusOf = statusOf;
+        this.byStatus = new EnumMap<>(type);
+        for (S status : type.getEnumConstants()) byStatus.put(status, new ConcurrentSkipListMap<>());
+    }
+
+    void update(String id, T entity) {
+        synchronized (entity) {
+            S now = statusOf.apply(entity);
+            S before = now == null ? filedAs.remove(id) : filedAs.put(id, now);
+            if (before != null && before != now) byStatus.get(before).remove(id);
+            if (now != null) byStatus.get(now).put(id, entity); // also swaps in a replayed instance
+        }
+    }
+
+    NavigableMap<String, T> get(S status) { return Collections.unmodifiableNavigableMap(byStatus.get(status)); }
+}
+
+// One page of a key-ordered collection. The cursor is the last key of the page, base64url-encoded so clients treat it as
+// opaque. Keys are time-sortable IDs, so a cursor stays valid while entries are added or removed around it and each page
+// costs O(log n + limit) on the skip-list views the managers expose.
+final class Page<T> {
+    static final int DEFAULT_LIMIT = 100, MAX_LIMIT = 1000;
+    private final List<T> items; private final String nextCursor;
+
+    private Page(List<T> items, String nextCursor) { this.items = items; this.nextCursor = nextCursor; }
+
+    static <T> Page<T> of(NavigableMap<String, T> source, String cursor, int limit) {
+        NavigableMap<String, T> view = cursor == null ? source : source.tailMap(decode(cursor), false);
+        Iterator<Map.Entry<String, T>> it = view.entrySet().iterator();
+        List<T> items = new ArrayList<>(Math.min(limit, 64)); String last = null;
+        while (items.size() < limit && it.hasNext()) { Map.Entry<String, T> e = it.next(); items.add(e.getValue()); last = e.getKey(); }
+        return new Page<>(items, it.hasNext() ? encode(last) : null);
+    }
+
+    static Page<String> of(NavigableSet<String> source, String cursor, int limit) {
+        Iterator<String> it = (cursor == null ? source : source.tailSet(decode(cursor), false)).iterator();
+        List<String> items = new ArrayList<>(Math.min(limit, 64));
+        while (items.size() < limit && it.hasNext()) items.add(it.next());
+        return new Page<>(items, it.hasNext() ? encode(items.get(items.size() - 1)) : null);
+    }
+
+    public List<T> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+
+    private static String encode(String key) { return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8)); }
+    // Throws IllegalArgumentException for anything that is not one of our cursors
+    private static String decode(String cursor) { return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8); }
+}
+
+// Response types that write themselves field by field instead of going through Gson's reflective adapter.
+// Field names and order match the reflective output, and null fields are skipped the same way.
+interface JsonWritable {
+    void writeJson(JsonWriter out) throws IOException;
+}
+
+// Uses writeJson for JsonWritable types; reading still goes through the reflective adapter
+final class JsonWritableAdapterFactory implements TypeAdapterFactory {
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (!JsonWritable.class.isAssignableFrom(type.getRawType())) return null;
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+        return new TypeAdapter<T>() {
+            @Override public void write(JsonWriter out, T value) throws IOException {
+                if (value == null) out.nullValue(); else ((JsonWritable) value).writeJson(out);
+            }
+            @Override public T read(JsonReader in) throws IOException { return delegate.read(in); }
+        };
+    }
+}
+
+/*
+ * =================================================================================
+ * COMPLETE & CONSOLIDATED DOMAIN MODEL CLASSES
+ * =================================================================================
+ */
+
+// From Business Process 1 & 2: Create/Approve Purchase Order
+class Product {
+    private String name;
+    private int quantity;
+    private double unitPrice;
+
+    public Product(String name, int quantity, double unitPrice) {
+        this.name = name;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+    }
+
+    public String getName() { return name; }
+    public int getQuantity() { return quantity; }
+    public double getUnitPrice() { return unitPrice; }
+    public double getTotalCost() { return quantity * unitPrice; }
+}
+
+// From BP 1 & 8
+class Supplier {
+    private String name;
+    private String contactEmail;
+
+    public Supplier(String name, String contactEmail) {
+        this.name = name;
+        this.contactEmail = contactEmail;
+    }
+
+    public String getName() { return name; }
+    public String getContactEmail() { return contactEmail; }
+    public String getDetails() { return "Supplier: " + name + ", Email: " + contactEmail; }
+}
+
+class PurchaseOrder implements JsonWritable {
+    private String purchaseOrderId;
+    private String requisitionId;
+    private List<String> requisitionIds; // consolidated orders, which cover several requisitions, list them here instead
+    private String supplierId;
+    private String supplierName;
+    private String deliveryAddress;
+    private List<PurchaseOrderItem> orderItems;
+    private BigDecimal totalAmount;
+    private LocalDateTime orderDate;
+    private volatile String status;
+
+    public PurchaseOrder(String requisitionId, String supplierId, String supplierName, String deliveryAddress) {
+        this.purchaseOrderId = IdGenerator.next("PO");
+        this.requisitionId = requisitionId;
+        this.supplierId = supplierId;
+        this.supplierName = supplierName;
+        this.deliveryAddress = deliveryAddress;
+        this.orderItems = new ArrayList<>();
+        this.orderDate = LocalDateTime.now();
+        this.status = "CREATED";
+        this.totalAmount = BigDecimal.ZERO;
+    }
+
+    // Consolidated order: the total is summed once, over all lines
+    PurchaseOrder(List<String> requisitionIds, String supplierId, String supplierName, String deliveryAddress, Collection<PurchaseOrderItem> lines) {
+        this(null, supplierId, supplierName, deliveryAddress);
+        this.requisitionIds = requisitionIds;
+        this.orderItems.addAll(lines);
+        calculateTotalAmount();
+    }
+
+    public void addOrderItem(String itemId, String itemName, int quantity, BigDecimal unitPrice) {
+        PurchaseOrderItem item = new PurchaseOrderItem(itemId, itemName, quantity, unitPrice);
+        this.orderItems.add(item);
+        totalAmount = totalAmount.add(item.getLineTotal());
+    }
+
+    private void calculateTotalAmount() {
+        totalAmount = orderItems.stream()
+                .map(PurchaseOrderItem::getLineTotal)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    public String getPurchaseOrderId() { return purchaseOrderId; }
+    public List<String> getRequisitionIds() { return requisitionIds == null ? List.of(requisitionId) : Collections.unmodifiableList(requisitionIds); }
+    public String getSupplierId() { return supplierId; }
+    public List<PurchaseOrderItem> getOrderItems() { return Collections.unmodifiableList(orderItems); }
+    public BigDecimal getTotalAmount() { return totalAmount; }
+    public String getStatus() { return status; }
+
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("purchaseOrderId").value(purchaseOrderId);
+        out.name("requisitionId").value(requisitionId);
+        if (requisitionIds != null) {
+            out.name("requisitionIds").beginArray();
+            for (String id : requisitionIds) out.value(id);
+            out.endArray();
+        }
+        out.name("supplierId").value(supplierId);
+        out.name("supplierName").value(supplierName);
+        out.name("deliveryAddress").value(deliveryAddress);
+        if (orderItems != null) {
+            out.name("orderItems").beginArray();
+            for (PurchaseOrderItem item : orderItems) item.writeJson(out);
+            out.endArray();
+        }
+        out.name("totalAmount").value(totalAmount);
+        out.name("orderDate").value(JsonSupport.iso(orderDate));
+        out.name("status").value(status);
+        out.endObject();
+    }
+}
+
+class PurchaseOrderItem implements JsonWritable {
+    private String itemId;
+    private String itemName;
+    private int quantity;
+    private BigDecimal unitPrice;
+    private BigDecimal lineTotal;
+
+    public PurchaseOrderItem(String itemId, String itemName, int quantity, BigDecimal unitPrice) {
+        this.itemId = itemId;
+        this.itemName = itemName;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+        this.lineTotal = unitPrice.multiply(BigDecimal.valueOf(quantity));
+    }
+
+    public BigDecimal getLineTotal() { return lineTotal; }
+    public int getQuantity() { return quantity; }
+    PurchaseOrderItem plus(int more) { return new PurchaseOrderItem(itemId, itemName, quantity + more, unitPrice); }
+
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("itemId").value(itemId).name("itemName").value(itemName).name("quantity").value(quantity);
+        out.name("unitPrice").value(unitPrice).name("lineTotal").value(lineTotal);
+        out.endObject();
+    }
+}
+
+
+class Person {
+    protected String name;
+    protected int employeeId;
+
+    public Person(String name, int employeeId) {
+        this.name = name;
+        this.employeeId = employeeId;
+    }
+
+    public String getName() { return name; }
+}
+
+class ProcurementOfficer extends Person {
+    public ProcurementOfficer(String name, int employeeId) { super(name, employeeId); }
+    public PurchaseOrder_BP1 createPurchaseOrder(int id, Supplier supplier) {
+        return new PurchaseOrder_BP1(id, supplier);
+    }
+}
+
+// Renamed to avoid conflict
+class PurchaseOrder_BP1 {
+    private int id;
+    private Supplier supplier;
     private List<Product> products = new ArrayList<>();
     private String status;
 
-    public PurchaseOrder_BP1(int id, Supplier supplier) { this.id = id; this.supplier = supplier; this.status = "Draft"; }
-    public void addProduct(Product p) { products.add(p); }
-    public int getId() { return id; }
-    public void approve() { status = "Approved"; }
-    public void reject() { status = "Rejected"; }
-}
+    public PurchaseOrder_BP1(int id, Supplier supplier) { this.id = id; this.supplier = supplier; this.status = "Draft"; }
+    public void addProduct(Product p) { products.add(p); }
+    public int getId() { return id; }
+    public void approve() { status = "Approved"; }
+    public void reject() { status = "Rejected"; }
+}
+
+class ProcurementManager extends Person {
+    public ProcurementManager(String name, int employeeId) { super(name, employeeId); }
+    public void reviewPurchaseOrder(PurchaseOrder_BP1 po, boolean approve) {
+        if (approve) po.approve();
+        else po.reject();
+    }
+}
+
+// From Business Process 3: Receive Supplier Shipment
+class ShipmentNotification {
+    private int shipmentId;
+    private String supplierName;
+    private Date shipmentDate;
+
+    public ShipmentNotification(int id, String sName, Date sDate) {
+        this.shipmentId = id;
+        this.supplierName = sName;
+        this.shipmentDate = sDate;
+    }
+
+    public int getShipmentId() { return shipmentId; }
+    public String getSupplierName() { return supplierName; }
+}
+
+class Goods {
+    private String productName;
+    private int quantity;
+    private boolean received;
+    private String sku;
+    private String description;
+
+    public Goods(String productName, int quantity) { this.productName = productName; this.quantity = quantity; this.received = false; }
+    public Goods(String sku, String description) { this.sku = sku; this.description = description; }
+
+    public String getProductName() { return productName; }
+    public int getQuantity() { return quantity; }
+    public void setReceived(boolean received) { this.received = received; }
+    public String getSku() { return sku; }
+}
+
+class Delivery {
+    private ShipmentNotification shipment;
+    private Goods goods;
+
+    public Delivery(ShipmentNotification shipment, Goods goods) { this.shipment = shipment; this.goods = goods; }
+    public Goods getGoods() { return goods; }
+}
+
+class ReceivingClerk {
+    private String name;
+
+    public ReceivingClerk(String name) { this.name = name; }
+
+    public boolean performCheck(Delivery delivery) {
+        EventLog.info("receiving.checked").with("clerk", name).with("product", delivery.getGoods().getProductName()).publish();
+        delivery.getGoods().setReceived(true);
+        return true;
+    }
+}
+
+// From Business Process 4: Inspect Incoming Goods
+enum InspectionOutcome { PASS, FAIL }
+
+final class GoodsBatch {
+    final String sku; final String batchId; final int quantity;
+    GoodsBatch(String sku, String batchId, int quantity) {
+        this.sku = sku; this.batchId = batchId; this.quantity = quantity;
+    }
+}
+
+final class QCResult {
+    final InspectionOutcome outcome; final List<String> defects; final String notes;
+    QCResult(InspectionOutcome o, List<String> d, String n) {
+        this.outcome = o; this.defects = d; this.notes = n;
+    }
+}
+final class GoodsReceivedNote {
+    final String grnId; final GoodsBatch batch; final java.time.LocalDate date;
+    GoodsReceivedNote(String grnId, GoodsBatch batch) {
+        this.grnId = grnId; this.batch = batch; this.date = java.time.LocalDate.now();
+    }
+}
+class WarehouseReceiving {
+    GoodsBatch receiveDelivery(String sku, String batchId, int qty) { return new GoodsBatch(sku, batchId, qty); }
+    void unpackAndVisualInspect(GoodsBatch batch) { }
+    void moveToQC(GoodsBatch batch) { }
+}
+class QualityControl {
+    private final long inspectionNanos; // time one station spends on a batch (gauges, sampling); zero when not modelled
+    QualityControl() { this(Duration.ZERO); }
+    QualityControl(Duration inspectionTime) { this.inspectionNanos = inspectionTime.toNanos(); }
+    QCResult performQualityChecks(GoodsBatch batch) {
+        if (inspectionNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(inspectionNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return new QCResult(InspectionOutcome.PASS, List.of(), "AQL passed");
+    }
+    void recordFindings(QCResult result) { }
+}
+class InventoryManager_BP4 {
+    void quarantine(GoodsBatch batch) { }
+    GoodsReceivedNote createGRN(GoodsBatch batch) { return new GoodsReceivedNote(IdGenerator.next("GRN"), batch); }
+    void putawayAndLabel(GoodsBatch batch, String bin) { }
+}
+class InspectIncomingGoodsProcess {
+    private final WarehouseReceiving receiving; private final QualityControl qc; private final InventoryManager_BP4 inv;
+    InspectIncomingGoodsProcess(WarehouseReceiving r, QualityControl qc, InventoryManager_BP4 inv) {
+        this.receiving = r; this.qc = qc; this.inv = inv;
+    }
+    GoodsReceivedNote execute(String sku, String batchId, int qty) {
+        GoodsBatch batch = receiving.receiveDelivery(sku, batchId, qty);
+        receiving.unpackAndVisualInspect(batch);
+        receiving.moveToQC(batch);
+        QCResult result = qc.performQualityChecks(batch);
+        qc.recordFindings(result);
+        if (result.outcome == InspectionOutcome.FAIL) {
+            inv.quarantine(batch);
+            return null;
+        } else {
+            GoodsReceivedNote grn = inv.createGRN(batch);
+            inv.putawayAndLabel(batch, "A1-01");
+            return grn;
+        }
+    }
+}
+
+// QUEUED at the dock -> INSPECTING once unpacked and handed to QC -> ACCEPTED (GRN issued, put away) or QUARANTINED
+enum ReceiptStatus {
+    QUEUED, INSPECTING, ACCEPTED, QUARANTINED;
+    boolean isFinal() { return this == ACCEPTED || this == QUARANTINED; }
+}
+
+// One batch's way through the receiving pipeline. Each stage owns the receipt while it works on it; status is written
+// last, so a reader that sees a final status also sees the GRN and findings.
+final class Receipt implements JsonWritable {
+    private String receiptId;
+    private GoodsBatch batch;
+    private volatile ReceiptStatus status;
+    private List<String> defects;
+    private String notes;
+    private GoodsReceivedNote grn;
+    private String binLocation;
+    private LocalDateTime submittedAt, completedAt;
+    private transient QCResult inspection;
+    private transient boolean requeued;
+
+    Receipt(GoodsBatch batch) {
+        this.receiptId = IdGenerator.next("RCV");
+        this.batch = batch;
+        this.submittedAt = LocalDateTime.now();
+        this.status = ReceiptStatus.QUEUED;
+    }
+
+    public String getReceiptId() { return receiptId; }
+    public GoodsBatch getBatch() { return batch; }
+    public ReceiptStatus getStatus() { return status; }
+    public GoodsReceivedNote getGrn() { return grn; }
+    QCResult getInspection() { return inspection; }
+
+    boolean wasRequeued() { return requeued; }
+    void requeue() { requeued = true; status = ReceiptStatus.QUEUED; }
+    void startInspection() { status = ReceiptStatus.INSPECTING; }
+    void inspected(QCResult result) {
+        this.inspection = result; this.defects = result.defects; this.notes = result.notes;
+    }
+    void accept(GoodsReceivedNote grn, String bin) {
+        this.grn = grn; this.binLocation = bin; this.completedAt = LocalDateTime.now();
+        status = ReceiptStatus.ACCEPTED;
+    }
+    void quarantine(String reason) {
+        if (reason != null) this.notes = reason;
+        this.completedAt = LocalDateTime.now();
+        status = ReceiptStatus.QUARANTINED;
+    }
+
+    // Reads one {"sku", "batchId", "quantity"} object ("qty" also accepted) or a non-empty array of them; batchId is
+    // optional. An empty body gives an empty list.
+    static List<GoodsBatch> readBatches(JsonReader in, int maxBatches) throws IOException {
+        List<GoodsBatch> batches = new ArrayList<>();
+        JsonToken first;
+        try {
+            first = in.peek();
+        } catch (java.io.EOFException e) {
+            return batches;
+        }
+        boolean array = first == JsonToken.BEGIN_ARRAY;
+        if (array) in.beginArray();
+        while (array ? in.hasNext() : batches.isEmpty()) {
+            if (batches.size() == maxBatches) throw new IllegalArgumentException("Submission exceeds " + maxBatches + " batches");
+            String sku = null, batchId = null; int qty = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "sku": sku = in.nextString(); break;
+                    case "batchId": batchId = in.nextString(); break;
+                    case "qty": case "quantity": qty = in.nextInt(); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            int index = batches.size();
+            if (sku == null || sku.isBlank()) throw new IllegalArgumentException("Batch " + index + ": sku is required");
+            if (qty <= 0) throw new IllegalArgumentException("Batch " + index + ": quantity must be positive");
+            batches.add(new GoodsBatch(sku, batchId != null ? batchId : IdGenerator.next("BATCH"), qty));
+        }
+        if (array) in.endArray();
+        if (batches.isEmpty()) throw new IllegalArgumentException("No batches submitted");
+        return batches;
+    }
+
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        ReceiptStatus status = this.status;
+        out.beginObject().name("receiptId").value(receiptId);
+        out.name("batch");
+        writeBatch(out, batch);
+        out.name("status").value(status.name());
+        if (defects != null) {
+            out.name("defects").beginArray();
+            for (String defect : defects) out.value(defect);
+            out.endArray();
+        }
+        out.name("notes").value(notes);
+        if (grn != null) {
+            out.name("grn").beginObject().name("grnId").value(grn.grnId).name("batch");
+            writeBatch(out, grn.batch);
+            out.name("date").value(grn.date.toString()).endObject();
+        }
+        out.name("binLocation").value(binLocation);
+        out.name("submittedAt").value(JsonSupport.iso(submittedAt)).name("completedAt").value(JsonSupport.iso(completedAt));
+        out.endObject();
+    }
+
+    private static void writeBatch(JsonWriter out, GoodsBatch batch) throws IOException {
+        out.beginObject().name("sku").value(batch.sku).name("batchId").value(batch.batchId).name("quantity").value(batch.quantity).endObject();
+    }
+}
+
+// Receiving as three stages joined by bounded queues: the dock (unpack, visual check, hand to QC), inspection on
+// qcWorkers threads, and disposition (GRN and put-away posted to the stock ledger, or quarantine) on one thread that
+// also journals the outcome.
+// submit() only files the receipts, so the caller is acknowledged at once. A stage that gets ahead blocks on the next
+// stage's queue, and admission stops at `capacity` receipts in flight, so a backlog is pushed back to the dock as a
+// refusal instead of growing without bound. Receipts are journaled when submitted and when finished; any still in
+// flight at a restart go through the pipeline again. A receipt's GRN id is derived from the receipt id, so a receipt
+// that was already posted before the restart is found in the ledger and not posted twice.
+final class ReceivingPipeline implements Journaled {
+    static final String PUTAWAY_BIN = "A1-01";
+
+    private final WarehouseReceiving receiving = new WarehouseReceiving();
+    private final QualityControl qc;
+    private final InventoryManager_BP4 inv = new InventoryManager_BP4();
+    private final InventorySystem inventory;
+    private final int qcWorkers, capacity;
+    private final BlockingQueue<Receipt> dock = new LinkedBlockingQueue<>(); // bounded by admission
+    private final BlockingQueue<Receipt> inspection, disposition;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final NavigableMap<String, Receipt> receipts = new ConcurrentSkipListMap<>();
+    private final StatusIndex<ReceiptStatus, Receipt> byStatus = new StatusIndex<>(ReceiptStatus.class, Receipt::getStatus);
+    private final List<Consumer<Receipt>> subscribers = new CopyOnWriteArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private MutationLog journal = MutationLog.NONE;
+
+    ReceivingPipeline(InventorySystem inventory, QualityControl qc, int qcWorkers, int stageQueue, int capacity) {
+        if (qcWorkers < 1 || stageQueue < 1 || capacity < 1) throw new IllegalArgumentException("Pipeline sizes must be positive");
+        this.inventory = inventory; this.qc = qc; this.qcWorkers = qcWorkers; this.capacity = capacity;
+        this.inspection = new ArrayBlockingQueue<>(stageQueue);
+        this.disposition = new ArrayBlockingQueue<>(stageQueue);
+    }
+
+    public void setJournal(MutationLog journal) { this.journal = journal; }
+    public NavigableMap<String, Receipt> getReceipts() { return Collections.unmodifiableNavigableMap(receipts); }
+    public Receipt getReceipt(String receiptId) { return receipts.get(receiptId); }
+    public NavigableMap<String, Receipt> getByStatus(ReceiptStatus status) { return byStatus.get(status); }
+    public int getCapacity() { return capacity; }
+
+    void restoreReceipt(Receipt receipt) {
+        receipts.put(receipt.getReceiptId(), receipt);
+        byStatus.update(receipt.getReceiptId(), receipt);
+    }
+
+    // Requeues what a restart left in flight, then starts the stage threads; call once, after recovery
+    synchronized void start() {
+        if (!workers.isEmpty()) throw new IllegalStateException("Receiving pipeline already started");
+        List<Receipt> pending = new ArrayList<>(byStatus.get(ReceiptStatus.QUEUED).values());
+        pending.addAll(byStatus.get(ReceiptStatus.INSPECTING).values());
+        for (Receipt receipt : pending) {
+            receipt.requeue();
+            byStatus.update(receipt.getReceiptId(), receipt);
+        }
+        inFlight.addAndGet(pending.size());
+        dock.addAll(pending);
+        workers.add(stage("receiving-dock", dock, this::unload));
+        for (int i = 0; i < qcWorkers; i++) workers.add(stage("receiving-qc-" + i, inspection, this::inspect));
+        workers.add(stage("receiving-disposition", disposition, this::dispose));
+        workers.forEach(Thread::start);
+    }
+
+    synchronized void stop() { workers.forEach(Thread::interrupt); }
+
+    // Files the batches as QUEUED receipts, or takes none of them and returns null when that would exceed capacity
+    public List<Receipt> submit(List<GoodsBatch> batches) {
+        int n = batches.size();
+        for (;;) {
+            int now = inFlight.get();
+            if (now + n > capacity) return null;
+            if (inFlight.compareAndSet(now, now + n)) break;
+        }
+        List<Receipt> accepted = new ArrayList<>(n);
+        for (GoodsBatch batch : batches) {
+            Receipt receipt = new Receipt(batch);
+            receipts.put(receipt.getReceiptId(), receipt);
+            byStatus.update(receipt.getReceiptId(), receipt);
+            journal.record("receipt", receipt.getReceiptId(), receipt);
+            accepted.add(receipt);
+        }
+        dock.addAll(accepted);
+        return accepted;
+    }
+
+    // Subscribers are called on the disposition thread as each receipt finishes, so they must not block
+    public Runnable subscribe(Consumer<Receipt> subscriber) {
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("qcWorkers", qcWorkers);
+        stats.put("capacity", capacity);
+        stats.put("inFlight", inFlight.get());
+        stats.put("dockQueue", dock.size());
+        stats.put("inspectionQueue", inspection.size());
+        stats.put("dispositionQueue", disposition.size());
+        Map<String, Integer> byState = new LinkedHashMap<>();
+        for (ReceiptStatus status : ReceiptStatus.values()) byState.put(status.name(), byStatus.get(status).size());
+        stats.put("receipts", byState);
+        return stats;
+    }
+
+    private void unload(Receipt receipt) throws InterruptedException {
+        receiving.unpackAndVisualInspect(receipt.getBatch());
+        receiving.moveToQC(receipt.getBatch());
+        receipt.startInspection();
+        byStatus.update(receipt.getReceiptId(), receipt);
+        inspection.put(receipt);
+    }
+
+    private void inspect(Receipt receipt) throws InterruptedException {
+        QCResult result = qc.performQualityChecks(receipt.getBatch());
+        qc.recordFindings(result);
+        receipt.inspected(result);
+        disposition.put(receipt);
+    }
+
+    private void dispose(Receipt receipt) {
+        GoodsBatch batch = receipt.getBatch();
+        if (receipt.getInspection().outcome == InspectionOutcome.FAIL) {
+            inv.quarantine(batch);
+            receipt.quarantine(null);
+        } else {
+            // Dock receipt and put-away land in the ledger as one batch, under GRN-<receipt id suffix>
+            String receiptId = receipt.getReceiptId();
+            GoodsReceivedNote grn = new GoodsReceivedNote("GRN" + receiptId.substring(receiptId.indexOf('-')), batch);
+            if (!receipt.wasRequeued() || !inventory.hasMovement(batch.sku, grn.grnId)) {
+                inventory.postReceipt(grn, new PurchaseOrderLine(batch.sku, batch.quantity), PUTAWAY_BIN);
+            }
+            inv.putawayAndLabel(batch, PUTAWAY_BIN);
+            receipt.accept(grn, PUTAWAY_BIN);
+        }
+        finish(receipt);
+    }
+
+    private void finish(Receipt receipt) {
+        byStatus.update(receipt.getReceiptId(), receipt);
+        journal.record("receipt", receipt.getReceiptId(), receipt);
+        inFlight.decrementAndGet();
+        subscribers.forEach(s -> s.accept(receipt));
+    }
+
+    private interface Step { void process(Receipt receipt) throws InterruptedException; }
+
+    // A receipt that makes a step throw is quarantined, so it never holds its place in the pipeline for good
+    private Thread stage(String name, BlockingQueue<Receipt> in, Step step) {
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    Receipt receipt = in.take();
+                    try {
+                        step.process(receipt);
+                    } catch (RuntimeException e) {
+                        EventLog.error("receiving.step.failed").with("stage", name).with("receiptId", receipt.getReceiptId()).error(e).publish();
+                        receipt.quarantine("Pipeline error: " + e);
+                        finish(receipt);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
+
+// From Business Process 5: Update Inventory Records
+final class PurchaseOrderLine {
+    final String sku; final int expectedQty;
+    PurchaseOrderLine(String sku, int expectedQty) { this.sku = sku; this.expectedQty = expectedQty; }
+}
+final class StockAdjustment {
+    final String sku; final int delta; final String reason;
+    StockAdjustment(String sku, int delta, String reason) { this.sku = sku; this.delta = delta; this.reason = reason; }
+
+    // Reads one {"sku", "bin", "delta", "reason"} object ("quantity" also accepted for delta) into the ledger line it
+    // posts; reason defaults to "Manual adjustment"
+    static StockMovement read(JsonReader in) throws IOException {
+        String sku = null, bin = null, reason = "Manual adjustment"; int delta = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "sku": sku = in.nextString(); break;
+                case "bin": bin = in.nextString(); break;
+                case "delta": case "quantity": delta = in.nextInt(); break;
+                case "reason": reason = in.nextString(); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        if (sku == null || sku.isBlank()) throw new IllegalArgumentException("sku is required");
+        if (bin == null || bin.isBlank()) throw new IllegalArgumentException("bin is required");
+        if (delta == 0) throw new IllegalArgumentException("delta must be non-zero");
+        return StockMovement.of(sku, bin, MovementType.ADJUSTMENT, delta, reason);
+    }
+}
+
+// Ledger movement kinds. ADJUSTMENT carries its own sign; every other kind posts a positive quantity in or out.
+enum MovementType {
+    RECEIPT(1), ADJUSTMENT(0), TRANSFER_IN(1), TRANSFER_OUT(-1), RESTOCK(1), DISPOSAL(-1);
+    final int sign;
+    MovementType(int sign) { this.sign = sign; }
+}
+
+// One line of the stock ledger. Built unposted by of(); post() fills in the sequence, the bin's balance after it and
+// the posting time, after which it is never changed.
+final class StockMovement implements JsonWritable {
+    private long sequence = -1;
+    private String sku, bin;
+    private MovementType type;
+    private int quantity; // signed: what the movement did to the bin
+    private long balance;
+    private String reference;
+    private LocalDateTime postedAt;
+
+    private StockMovement(String sku, String bin, MovementType type, int quantity, String reference) {
+        this.sku = sku; this.bin = bin; this.type = type; this.quantity = quantity; this.reference = reference;
+    }
+
+    // quantity is the amount moved, or the signed change for ADJUSTMENT
+    static StockMovement of(String sku, String bin, MovementType type, int quantity, String reference) {
+        if (sku == null || sku.isBlank() || bin == null || bin.isBlank()) throw new IllegalArgumentException("sku and bin are required");
+        if (type == null) throw new IllegalArgumentException("type is required");
+        if (type.sign == 0 ? quantity == 0 : quantity <= 0) {
+            throw new IllegalArgumentException(type == MovementType.ADJUSTMENT ? "An adjustment must be non-zero" : "quantity must be positive");
+        }
+        return new StockMovement(sku, bin, type, type.sign == 0 ? quantity : type.sign * quantity, reference);
+    }
+
+    static StockMovement posted(long sequence, String sku, String bin, MovementType type, int quantity, long balance, String reference, long postedAtMillis) {
+        StockMovement m = new StockMovement(sku, bin, type, quantity, reference);
+        m.posted(sequence, balance, postedAtMillis);
+        return m;
+    }
+
+    void posted(long sequence, long balance, long postedAtMillis) {
+        this.sequence = sequence; this.balance = balance;
+        this.postedAt = LocalDateTime.ofInstant(java.time.Instant.ofEpochMilli(postedAtMillis), java.time.ZoneId.systemDefault());
+    }
+
+    public long getSequence() { return sequence; }
+    public String getSku() { return sku; }
+    public String getBin() { return bin; }
+    public MovementType getType() { return type; }
+    public int getQuantity() { return quantity; }
+    public long getBalance() { return balance; }
+    public String getReference() { return reference; }
+    public LocalDateTime getPostedAt() { return postedAt; }
+    long postedAtMillis() { return postedAt.atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli(); }
+
+    // Reads a JSON array of {"sku", "bin", "type", "quantity", "reference"} lines
+    static List<StockMovement> readAll(JsonReader in, int maxLines) throws IOException {
+        List<StockMovement> lines = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (lines.size() == maxLines) throw new IllegalArgumentException("Batch exceeds " + maxLines + " lines");
+            String sku = null, bin = null, type = null, reference = null; int quantity = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "sku": sku = in.nextString(); break;
+                    case "bin": bin = in.nextString(); break;
+                    case "type": type = in.nextString(); break;
+                    case "quantity": case "qty": quantity = in.nextInt(); break;
+                    case "reference": reference = in.nextString(); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            MovementType movementType = null;
+            if (type != null) {
+                try {
+                    movementType = MovementType.valueOf(type.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Line " + lines.size() + ": type must be one of " + Arrays.toString(MovementType.values()));
+                }
+            }
+            try {
+                lines.add(of(sku, bin, movementType, quantity, reference));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lines.size() + ": " + e.getMessage());
+            }
+        }
+        in.endArray();
+        if (lines.isEmpty()) throw new IllegalArgumentException("No movements submitted");
+        return lines;
+    }
+
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject().name("sequence").value(sequence).name("sku").value(sku).name("bin").value(bin).name("type").value(type.name());
+        out.name("quantity").value(quantity).name("balance").value(balance).name("reference").value(reference);
+        out.name("postedAt").value(JsonSupport.iso(postedAt)).endObject();
+    }
+}
+
+// Consolidated Inventory System used by BP3, BP5, BP14, kept as a stock ledger: on-hand quantity per SKU and bin, and
+// the append-only movement log behind it. A position (one SKU in one bin) is an int index into primitive columns,
+// found through its SKU's short list of positions. post() takes the write lock once for a whole batch, checks that no
+// bin goes below zero, applies every line and appends it to the log, so a receipt with its reconciliation and put-away
+// lands all together or not at all. The log is chunked columns (time, position, change, balance after); each position
+// also keeps the sequences of its own movements, so stock at a past instant is a binary search per bin, not a replay.
+class InventorySystem implements Journaled {
+    static final String RECEIVING_BIN = "DOCK-IN", RETURNS_BIN = "RETURNS";
+    private static final int CHUNK_BITS = 14, CHUNK = 1 << CHUNK_BITS;
+    private static final MovementType[] TYPES = MovementType.values();
+
+    private static final class LogChunk {
+        final long[] at = new long[CHUNK], balance = new long[CHUNK];
+        final int[] position = new int[CHUNK], change = new int[CHUNK];
+        final byte[] type = new byte[CHUNK];
+        final String[] reference = new String[CHUNK];
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private String[] skuKeys = new String[128]; // open-addressed SKU index, at most half full; skuIds holds each key's id
+    private int[] skuIds = new int[128];
+    private int skus;
+    private int[][] skuPositions = new int[64][];
+    private String[] positionSku = new String[64], positionBin = new String[64];
+    private long[] onHand = new long[64];
+    private long[][] history = new long[64][];
+    private int[] historySize = new int[64];
+    private int positions;
+    private final List<LogChunk> log = new ArrayList<>();
+    private long movements, lastPostedAt;
+    private MutationLog journal = MutationLog.NONE;
+    private Consumer<StockMovement> movementListener = m -> {};
+
+    public void setJournal(MutationLog journal) { this.journal = journal; }
+    // Called with every posted movement, in log order and under the write lock, so it must not block or call back in
+    public void setMovementListener(Consumer<StockMovement> listener) { this.movementListener = listener; }
+
+    // Posts the lines as one batch and returns them posted. When a line would take its bin below zero nothing is posted
+    // and the IllegalArgumentException names that line.
+    public List<StockMovement> post(List<StockMovement> lines) {
+        lock.writeLock().lock();
+        try {
+            int[] at = new int[lines.size()];
+            long[] after = new long[lines.size()];
+            for (int i = 0; i < lines.size(); i++) {
+                StockMovement line = lines.get(i);
+                at[i] = position(line.getSku(), line.getBin());
+                long before = onHand[at[i]];
+                for (int j = i - 1; j >= 0; j--) if (at[j] == at[i]) { before = after[j]; break; }
+                after[i] = before + line.getQuantity();
+                if (after[i] < 0) {
+                    throw new IllegalArgumentException("Line " + i + ": " + line.getSku() + " in " + line.getBin() + " has " + before
+                            + ", cannot take " + -line.getQuantity());
+                }
+            }
+            long now = lastPostedAt = Math.max(lastPostedAt, System.currentTimeMillis());
+            for (int i = 0; i < lines.size(); i++) {
+                StockMovement line = lines.get(i);
+                line.posted(append(at[i], line.getType(), line.getQuantity(), line.getReference(), now), after[i], now);
+                journal.record("movement", "MV-" + line.getSequence(), line); // under the lock, so the journal keeps log order
+                movementListener.accept(line);
+            }
+            return lines;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Replays one journaled movement at the time it was posted; the snapshot and the segment after it can both hold a
+    // movement, so repeats are skipped. Anything else out of sequence, or a balance the replay does not reproduce, means
+    // the journal lost or reordered movements, and recovery fails rather than rebuild a ledger with a hole in it.
+    void restoreMovement(StockMovement m) {
+        lock.writeLock().lock();
+        try {
+            if (m.getSequence() < movements) return;
+            if (m.getSequence() > movements) {
+                throw new IllegalStateException("Movement log gap: expected MV-" + movements + ", found MV-" + m.getSequence());
+            }
+            long postedAt = m.postedAtMillis();
+            lastPostedAt = Math.max(lastPostedAt, postedAt);
+            long seq = append(position(m.getSku(), m.getBin()), m.getType(), m.getQuantity(), m.getReference(), postedAt);
+            long balance = chunk(seq).balance[slot(seq)];
+            if (balance != m.getBalance()) {
+                throw new IllegalStateException("MV-" + seq + " leaves " + m.getSku() + " in " + m.getBin() + " at " + balance
+                        + ", journaled " + m.getBalance());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public StockMovement receive(String sku, String bin, int quantity, String reference) {
+        return post(List.of(StockMovement.of(sku, bin, MovementType.RECEIPT, quantity, reference))).get(0);
+    }
+
+    // The PO quantity into the receiving dock, any difference to the GRN as a reconciliation adjustment, then the GRN
+    // quantity moved to its bin, all as one batch
+    List<StockMovement> postReceipt(GoodsReceivedNote grn, PurchaseOrderLine po, String bin) {
+        List<StockMovement> lines = new ArrayList<>(4);
+        lines.add(StockMovement.of(po.sku, RECEIVING_BIN, MovementType.RECEIPT, po.expectedQty, grn.grnId));
+        int diff = grn.batch.quantity - po.expectedQty;
+        if (diff != 0) lines.add(adjustment(new StockAdjustment(po.sku, diff, "Receipt reconciliation " + grn.grnId), RECEIVING_BIN));
+        lines.add(StockMovement.of(po.sku, RECEIVING_BIN, MovementType.TRANSFER_OUT, grn.batch.quantity, grn.grnId));
+        lines.add(StockMovement.of(po.sku, bin, MovementType.TRANSFER_IN, grn.batch.quantity, grn.grnId));
+        return post(lines);
+    }
+
+    StockMovement applyAdjustment(StockAdjustment adj, String bin) { return post(List.of(adjustment(adj, bin))).get(0); }
+
+    private static StockMovement adjustment(StockAdjustment adj, String bin) {
+        return StockMovement.of(adj.sku, bin, MovementType.ADJUSTMENT, adj.delta, adj.reason);
+    }
+
+    public List<StockMovement> transfer(String sku, String fromBin, String toBin, int quantity, String reference) {
+        return post(List.of(StockMovement.of(sku, fromBin, MovementType.TRANSFER_OUT, quantity, reference),
+                StockMovement.of(sku, toBin, MovementType.TRANSFER_IN, quantity, reference)));
+    }
+
+    // BP14 hooks
+    public StockMovement restock(String sku, int quantity, String reference) {
+        return post(List.of(StockMovement.of(sku, RETURNS_BIN, MovementType.RESTOCK, quantity, reference))).get(0);
+    }
+    public StockMovement dispose(String sku, String bin, int quantity, String reference) {
+        return post(List.of(StockMovement.of(sku, bin, MovementType.DISPOSAL, quantity, reference))).get(0);
+    }
+
+    public long getOnHand(String sku) {
+        long total = 0;
+        for (long quantity : getOnHandByBin(sku).values()) total += quantity;
+        return total;
+    }
+
+    // Bins that have ever held the SKU, with what they hold now
+    public Map<String, Long> getOnHandByBin(String sku) {
+        lock.readLock().lock();
+        try {
+            Map<String, Long> bins = new TreeMap<>();
+            for (int p : positionsOf(sku)) if (historySize[p] > 0) bins.put(positionBin[p], onHand[p]);
+            return bins;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // What each bin held at the end of the given instant: one search for the last movement posted by then, and one per bin
+    public Map<String, Long> getOnHandByBin(String sku, LocalDateTime asOf) {
+        long millis = asOf.atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
+        lock.readLock().lock();
+        try {
+            long lo = 0, hi = movements; // first sequence posted after `millis`
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                if (chunk(mid).at[slot(mid)] <= millis) lo = mid + 1; else hi = mid;
+            }
+            long last = lo - 1;
+            Map<String, Long> bins = new TreeMap<>();
+            for (int p : positionsOf(sku)) {
+                int i = lastAtOrBefore(history[p], historySize[p], last);
+                if (i >= 0) bins.put(positionBin[p], chunk(history[p][i]).balance[slot(history[p][i])]);
+            }
+            return bins;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The SKU's latest `limit` movements, oldest first
+    public List<StockMovement> getMovements(String sku, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] recent = new long[0];
+            for (int p : positionsOf(sku)) {
+                int from = Math.max(0, historySize[p] - limit), n = historySize[p] - from;
+                recent = Arrays.copyOf(recent, recent.length + n);
+                System.arraycopy(history[p], from, recent, recent.length - n, n);
+            }
+            Arrays.sort(recent);
+            List<StockMovement> result = new ArrayList<>(Math.min(limit, recent.length));
+            for (int i = Math.max(0, recent.length - limit); i < recent.length; i++) result.add(movement(recent[i]));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getMovementCount() {
+        lock.readLock().lock();
+        try {
+            return movements;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Whether any of the SKU's movements carries the reference; a scan of its history, newest first
+    public boolean hasMovement(String sku, String reference) {
+        lock.readLock().lock();
+        try {
+            for (int p : positionsOf(sku)) {
+                for (int i = historySize[p] - 1; i >= 0; i--) {
+                    long seq = history[p][i];
+                    if (reference.equals(chunk(seq).reference[slot(seq)])) return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Snapshot view of the whole log by "MV-<sequence>", read under the read lock a chunk at a time
+    public Map<String, StockMovement> getMovementLog() {
+        return new AbstractMap<String, StockMovement>() {
+            @Override public Set<Map.Entry<String, StockMovement>> entrySet() {
+                return new AbstractSet<Map.Entry<String, StockMovement>>() {
+                    @Override public int size() { return (int) Math.min(Integer.MAX_VALUE, getMovementCount()); }
+                    @Override public Iterator<Map.Entry<String, StockMovement>> iterator() {
+                        long end = getMovementCount();
+                        return new Iterator<Map.Entry<String, StockMovement>>() {
+                            long next; List<StockMovement> buffer = List.of(); int i;
+                            @Override public boolean hasNext() { return next < end; }
+                            @Override public Map.Entry<String, StockMovement> next() {
+                                if (!hasNext()) throw new NoSuchElementException();
+                                if (i == buffer.size()) { buffer = movements(next, Math.min(end, next + CHUNK)); i = 0; }
+                                next++;
+                                StockMovement m = buffer.get(i++);
+                                return Map.entry("MV-" + m.getSequence(), m);
+                            }
+                        };
+                    }
+                };
+            }
+        };
+    }
+
+    private List<StockMovement> movements(long from, long to) {
+        lock.readLock().lock();
+        try {
+            List<StockMovement> result = new ArrayList<>((int) (to - from));
+            for (long seq = from; seq < to; seq++) result.add(movement(seq));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Caller holds a lock
+    private StockMovement movement(long seq) {
+        LogChunk c = chunk(seq); int s = slot(seq), p = c.position[s];
+        return StockMovement.posted(seq, positionSku[p], positionBin[p], TYPES[c.type[s]], c.change[s], c.balance[s], c.reference[s], c.at[s]);
+    }
+
+    private int[] positionsOf(String sku) {
+        int slot = skuSlot(sku);
+        return skuKeys[slot] == null ? new int[0] : skuPositions[skuIds[slot]];
+    }
+
+    // Caller holds a lock; the SKU's slot in the index, or the empty slot where it would go
+    private int skuSlot(String sku) {
+        int h = sku.hashCode() * 0x9E3779B9, mask = skuKeys.length - 1, slot = (h ^ h >>> 16) & mask;
+        while (skuKeys[slot] != null && !skuKeys[slot].equals(sku)) slot = slot + 1 & mask;
+        return slot;
+    }
+
+    // Caller holds the write lock; doubles the index and reinserts every key
+    private void growSkuIndex() {
+        String[] keys = skuKeys; int[] ids = skuIds;
+        skuKeys = new String[keys.length * 2]; skuIds = new int[keys.length * 2];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) continue;
+            int slot = skuSlot(keys[i]);
+            skuKeys[slot] = keys[i]; skuIds[slot] = ids[i];
+        }
+    }
+
+    // Caller holds the write lock; creates the position on first use
+    private int position(String sku, String bin) {
+        int slot = skuSlot(sku);
+        if (skuKeys[slot] == null) {
+            if (2 * (skus + 1) > skuKeys.length) { growSkuIndex(); slot = skuSlot(sku); }
+            int id = skus++;
+            skuKeys[slot] = sku; skuIds[slot] = id;
+            if (id == skuPositions.length) skuPositions = Arrays.copyOf(skuPositions, id * 2);
+            skuPositions[id] = new int[0];
+        }
+        int id = skuIds[slot];
+        for (int p : skuPositions[id]) if (positionBin[p].equals(bin)) return p;
+        int p = positions++;
+        if (p == onHand.length) {
+            int size = p * 2;
+            positionSku = Arrays.copyOf(positionSku, size); positionBin = Arrays.copyOf(positionBin, size);
+            onHand = Arrays.copyOf(onHand, size); history = Arrays.copyOf(history, size); historySize = Arrays.copyOf(historySize, size);
+        }
+        positionSku[p] = sku; positionBin[p] = bin; history[p] = new long[4];
+        int[] list = skuPositions[id];
+        list = Arrays.copyOf(list, list.length + 1);
+        list[list.length - 1] = p;
+        skuPositions[id] = list;
+        return p;
+    }
+
+    // Caller holds the write lock; returns the new movement's sequence
+    private long append(int p, MovementType type, int change, String reference, long at) {
+        long seq = movements++;
+        if (slot(seq) == 0) log.add(new LogChunk());
+        LogChunk c = chunk(seq); int s = slot(seq);
+        onHand[p] += change;
+        c.at[s] = at; c.position[s] = p; c.change[s] = change; c.type[s] = (byte) type.ordinal(); c.balance[s] = onHand[p]; c.reference[s] = reference;
+        if (historySize[p] == history[p].length) history[p] = Arrays.copyOf(history[p], historySize[p] * 2);
+        history[p][historySize[p]++] = seq;
+        return seq;
+    }
+
+    private LogChunk chunk(long seq) { return log.get((int) (seq >>> CHUNK_BITS)); }
+    private static int slot(long seq) { return (int) (seq & (CHUNK - 1)); }
+
+    // Index of the last entry <= key in the first n of sorted, or -1
+    private static int lastAtOrBefore(long[] sorted, int n, long key) {
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] <= key) lo = mid + 1; else hi = mid;
+        }
+        return lo - 1;
+    }
+}
+
+class UpdateInventoryRecordsProcess {
+    private final InventorySystem inv;
+    UpdateInventoryRecordsProcess(InventorySystem inv) { this.inv = inv; }
+    List<StockMovement> execute(GoodsReceivedNote grn, PurchaseOrderLine po, boolean updateCost, double landedCost) {
+        if (!grn.batch.sku.equals(po.sku)) throw new IllegalArgumentException("SKU mismatch");
+        return inv.postReceipt(grn, po, ReceivingPipeline.PUTAWAY_BIN);
+    }
+}
+
+// From Business Process 6 & 7: Store Items & Monitor Stock
+class Item {
+    private String itemId, name, category, barcode; private double weight; private int reorderPoint, reorderQuantity;
+    private BigDecimal unitCost = BigDecimal.ZERO; // standard cost, what suppliers without a quote charge
+    public Item(String id, String n, String cat, String bc, double w, int rp, int rq) {
+        itemId = id; name = n; category = cat; barcode = bc; weight = w; reorderPoint = rp; reorderQuantity = rq;
+    }
+    public Item(String id, String n, String cat, String bc, double w, int rp, int rq, BigDecimal unitCost) {
+        this(id, n, cat, bc, w, rp, rq);
+        this.unitCost = unitCost;
+    }
+    public String getItemId() { return itemId; }
+    public String getName() { return name; }
+    public int getReorderPoint() { return reorderPoint; }
+    public int getReorderQuantity() { return reorderQuantity; }
+    public BigDecimal getUnitCost() { return unitCost; }
+    public String getPreferredSupplierId() { return "SUP-01"; }
+}
+
+class StorageLocation implements JsonWritable {
+    // storedItemIds holds each item once, in the order first stored; guarded by the location's monitor
+    private String locationId; private int capacity, usedSpace; private LinkedHashSet<String> storedItemIds = new LinkedHashSet<>();
+    public StorageLocation(String id, int cap) { locationId = id; capacity = cap; }
+    public synchronized boolean hasAvailableSpace(int required) { return (usedSpace + required) <= capacity; }
+    public synchronized boolean addItem(String itemId, int quantity) {
+        if (hasAvailableSpace(quantity)) {
+            storedItemIds.add(itemId);
+            usedSpace += quantity;
+            return true;
+        }
+        return false;
+    }
+    public String getLocationId() { return locationId; }
+    public int getCapacity() { return capacity; }
+    public synchronized int getUsedSpace() { return usedSpace; }
+    public synchronized int getRemainingSpace() { return capacity - usedSpace; }
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        String[] itemIds; int used;
+        synchronized (this) { // copied out, so no put-away waits on the writer
+            itemIds = storedItemIds.toArray(new String[0]);
+            used = usedSpace;
+        }
+        out.beginObject().name("locationId").value(locationId).name("capacity").value(capacity).name("usedSpace").value(used);
+        out.name("storedItemIds").beginArray();
+        for (String itemId : itemIds) out.value(itemId);
+        out.endArray().endObject();
+    }
+}
+
+// Free space per bin of one warehouse, so slotting is O(log bins) instead of a scan. Not thread-safe; Warehouse guards it.
+// BEST_FIT picks the bin with the least remaining space that still fits (ordered set of remaining<<32 | slot).
+// FIRST_FIT picks the earliest-added bin that fits (max segment tree over remaining space, descended leftmost).
+final class FreeSpaceIndex {
+    enum Policy { BEST_FIT, FIRST_FIT }
+
+    private final List<StorageLocation> slots = new ArrayList<>();
+    private final Map<String, Integer> slotOf = new HashMap<>();
+    private final TreeSet<Long> byRemaining = new TreeSet<>();
+    private int[] remaining = new int[16];
+    private int[] tree = emptyTree(16); // leaves at [leaves, 2 * leaves), unused leaves hold -1
+    private int leaves = 16;
+
+    // Adds the bin, or replaces the bin with the same location ID, at its current remaining space
+    void put(StorageLocation loc) {
+        Integer slot = slotOf.get(loc.getLocationId());
+        if (slot == null) {
+            slot = slots.size();
+            if (slot == leaves) grow();
+            slots.add(loc);
+            slotOf.put(loc.getLocationId(), slot);
+            remaining[slot] = -1;
+        } else {
+            slots.set(slot, loc);
+        }
+        update(slot, loc.getRemainingSpace());
+    }
+
+    void update(StorageLocation loc) { update(slotOf.get(loc.getLocationId()), loc.getRemainingSpace()); }
+
+    StorageLocation find(int required, Policy policy) {
+        int need = Math.max(required, 0);
+        if (policy == Policy.BEST_FIT) {
+            Long key = byRemaining.ceiling((long) need << 32);
+            return key == null ? null : slots.get((int) (key & 0xFFFFFFFFL));
+        }
+        if (tree[1] < need) return null;
+        int node = 1;
+        while (node < leaves) node = tree[2 * node] >= need ? 2 * node : 2 * node + 1;
+        return slots.get(node - leaves);
+    }
+
+    private void update(int slot, int space) {
+        if (remaining[slot] >= 0) byRemaining.remove(key(remaining[slot], slot));
+        remaining[slot] = space;
+        byRemaining.add(key(space, slot));
+        int node = leaves + slot;
+        tree[node] = space;
+        for (node >>= 1; node > 0; node >>= 1) tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+    }
+
+    private void grow() {
+        leaves *= 2;
+        remaining = Arrays.copyOf(remaining, leaves);
+        tree = emptyTree(leaves);
+        for (int i = 0; i < slots.size(); i++) tree[leaves + i] = remaining[i];
+        for (int node = leaves - 1; node > 0; node--) tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+    }
+
+    private static int[] emptyTree(int leaves) { int[] t = new int[2 * leaves]; Arrays.fill(t, -1); return t; }
+    private static long key(int space, int slot) { return (long) space << 32 | slot; }
+}
+
+class Warehouse implements JsonWritable {
+    private static final FreeSpaceIndex.Policy DEFAULT_POLICY =
+            FreeSpaceIndex.Policy.valueOf(System.getProperty("warehouse.slotting", "BEST_FIT").toUpperCase(Locale.ROOT));
+    private String warehouseId, name, address; private int totalCapacity; private volatile int usedCapacity; private Map<String, StorageLocation> storageLocations = new ConcurrentHashMap<>();
+    // Bins are filled through allocate() once added, so the index and usedCapacity stay in step with them
+    private final transient FreeSpaceIndex freeSpace = new FreeSpaceIndex();
+    private transient volatile FreeSpaceIndex.Policy slottingPolicy = DEFAULT_POLICY;
+    public Warehouse(String id, String name, String addr, int cap) {
+        this.warehouseId = id; this.name = name; this.address = addr; this.totalCapacity = cap; this.usedCapacity = 0;
+    }
+    public String getWarehouseId() { return warehouseId; }
+    public int getUsedCapacity() { return usedCapacity; }
+    public int getTotalCapacity() { return totalCapacity; }
+    public FreeSpaceIndex.Policy getSlottingPolicy() { return slottingPolicy; }
+    public void setSlottingPolicy(FreeSpaceIndex.Policy policy) { this.slottingPolicy = policy; }
+    public synchronized void addStorageLocation(StorageLocation loc) {
+        StorageLocation previous = storageLocations.put(loc.getLocationId(), loc);
+        usedCapacity += loc.getUsedSpace() - (previous == null ? 0 : previous.getUsedSpace());
+        freeSpace.put(loc);
+    }
+    public Map<String, StorageLocation> getStorageLocations() { return Collections.unmodifiableMap(storageLocations); }
+    public boolean hasAvailableSpace(int required) { return (usedCapacity + required) <= totalCapacity; }
+    public synchronized StorageLocation findAvailableLocation(int required) { return freeSpace.find(required, slottingPolicy); }
+    // Slots the quantity into a bin chosen by the slotting policy; null when the warehouse or every bin is too full
+    public synchronized StorageLocation allocate(String itemId, int quantity) {
+        if (!hasAvailableSpace(quantity)) return null;
+        StorageLocation loc = freeSpace.find(quantity, slottingPolicy);
+        if (loc == null || !loc.addItem(itemId, quantity)) return null;
+        usedCapacity += quantity;
+        freeSpace.update(loc);
+        return loc;
+    }
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject().name("warehouseId").value(warehouseId).name("name").value(name).name("address").value(address);
+        out.name("totalCapacity").value(totalCapacity).name("usedCapacity").value(usedCapacity);
+        out.name("storageLocations").beginObject();
+        for (Map.Entry<String, StorageLocation> e : storageLocations.entrySet()) { out.name(e.getKey()); e.getValue().writeJson(out); }
+        out.endObject().endObject();
+    }
+}
+
+class InventoryRecord implements JsonWritable {
+    private String recordId, itemId, warehouseId, locationId; private int quantityOnHand; private LocalDateTime lastUpdated;
+    public InventoryRecord(String rid, String iid, String wid, String lid, int qty) {
+        recordId = rid; itemId = iid; warehouseId = wid; locationId = lid; quantityOnHand = qty; lastUpdated = LocalDateTime.now();
+    }
+    public String getRecordId() { return recordId; }
+    public String getItemId() { return itemId; }
+    public String getWarehouseId() { return warehouseId; }
+    public String getLocationId() { return locationId; }
+    public int getQuantityOnHand() { return quantityOnHand; }
+    // Only through StockMonitor.updateQuantity, which re-evaluates the reorder point and journals the record under its lock
+    void setQuantityOnHand(int qty) { this.quantityOnHand = qty; this.lastUpdated = LocalDateTime.now(); }
+    public boolean needsReorder(int reorderPoint) { return quantityOnHand <= reorderPoint; }
+    public void markAsLowStock() { EventLog.info("stock.low").with("itemId", itemId).with("recordId", recordId).publish(); }
+    public void updateMonitorTimestamp() { this.lastUpdated = LocalDateTime.now(); }
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject().name("recordId").value(recordId).name("itemId").value(itemId).name("warehouseId").value(warehouseId);
+        out.name("locationId").value(locationId).name("quantityOnHand").value(quantityOnHand).name("lastUpdated").value(JsonSupport.iso(lastUpdated));
+        out.endObject();
+    }
+}
+
+class StorageManager implements Journaled {
+    private Map<String, Warehouse> warehouses = new ConcurrentHashMap<>();
+    private Map<String, Item> itemCatalog = new ConcurrentHashMap<>();
+    public Map<String, Warehouse> getWarehouses() { return warehouses; }
+    public void addWarehouse(Warehouse wh) { warehouses.put(wh.getWarehouseId(), wh); }
+    private final StripedLocks warehouseLocks = new StripedLocks(64);
+    private MutationLog journal = MutationLog.NONE;
+    public void setJournal(MutationLog journal) { this.journal = journal; }
+    public void addItem(Item item) { itemCatalog.put(item.getItemId(), item); }
+
+    // Journal key for a location is "<warehouseId>/<locationId>"
+    public Map<String, StorageLocation> getStorageLocationsByKey() {
+        Map<String, StorageLocation> byKey = new LinkedHashMap<>();
+        warehouses.values().forEach(wh -> wh.getStorageLocations().values()
+                .forEach(loc -> byKey.put(wh.getWarehouseId() + "/" + loc.getLocationId(), loc)));
+        return byKey;
+    }
+    void restoreStorageLocation(String key, StorageLocation loc) {
+        Warehouse wh = warehouses.get(key.substring(0, key.indexOf('/')));
+        if (wh != null) wh.addStorageLocation(loc);
+    }
+    public boolean processItemStorage(String itemId, String whId, int qty, String userId) {
+        Warehouse wh = warehouses.get(whId);
+        if (wh == null) return false;
+        // Allocate-or-open-overflow must be atomic per warehouse, and journal lines for a bin must stay in order
+        return warehouseLocks.withLock(whId, () -> {
+            StorageLocation loc = putAway(wh, itemId, qty);
+            if (loc == null) return false;
+            journal.record("storageLocation", whId + "/" + loc.getLocationId(), loc);
+            return true;
+        });
+    }
+
+    // Batch put-away in one pass: lines are grouped per warehouse and each warehouse is locked once. Every line is
+    // either stored whole in a single bin or rejected without reserving anything; touched bins are journaled once.
+    public List<PutAwayLine> processItemStorageBatch(List<PutAwayLine> lines, String userId) {
+        Map<String, List<PutAwayLine>> byWarehouse = new LinkedHashMap<>();
+        for (PutAwayLine line : lines) {
+            if (line.getItemId() == null || line.getWarehouseId() == null || line.getQuantity() <= 0) line.reject("Invalid line");
+            else if (!warehouses.containsKey(line.getWarehouseId())) line.reject("Unknown warehouse");
+            else byWarehouse.computeIfAbsent(line.getWarehouseId(), k -> new ArrayList<>()).add(line);
+        }
+        byWarehouse.forEach((whId, whLines) -> warehouseLocks.withLock(whId, () -> {
+            Warehouse wh = warehouses.get(whId);
+            Map<String, StorageLocation> touched = new LinkedHashMap<>();
+            for (PutAwayLine line : whLines) {
+                StorageLocation loc = putAway(wh, line.getItemId(), line.getQuantity());
+                if (loc == null) { line.reject("Insufficient space"); continue; }
+                line.store(loc.getLocationId());
+                touched.put(loc.getLocationId(), loc);
+            }
+            touched.forEach((locId, loc) -> journal.record("storageLocation", whId + "/" + locId, loc));
+            return null;
+        }));
+        return lines;
+    }
 
-class ProcurementManager extends Person {
-    public ProcurementManager(String name, int employeeId) { super(name, employeeId); }
-    public void reviewPurchaseOrder(PurchaseOrder_BP1 po, boolean approve) {
-        if (approve) po.approve();
-        else po.reject();
+    // Caller holds the warehouse lock
+    private StorageLocation putAway(Warehouse wh, String itemId, int qty) {
+        StorageLocation loc = wh.allocate(itemId, qty);
+        if (loc != null || !wh.hasAvailableSpace(qty)) return loc;
+        // No bin fits: open an overflow bin under a collision-free ID
+        wh.addStorageLocation(new StorageLocation(IdGenerator.next("LOC"), qty + 50));
+        return wh.allocate(itemId, qty);
     }
 }
 
-// From Business Process 3: Receive Supplier Shipment
-class ShipmentNotification {
-    private int shipmentId;
-    private String supplierName;
-    private Date shipmentDate;
+// One line of a batch put-away: the request (itemId, warehouseId, qty) and, once processed, its outcome
+class PutAwayLine implements JsonWritable {
+    private final int line; private final String itemId, warehouseId; private final int quantity;
+    private String status = "PENDING", locationId, reason;
+    public PutAwayLine(int line, String itemId, String warehouseId, int quantity) {
+        this.line = line; this.itemId = itemId; this.warehouseId = warehouseId; this.quantity = quantity;
+    }
+    public String getItemId() { return itemId; }
+    public String getWarehouseId() { return warehouseId; }
+    public int getQuantity() { return quantity; }
+    public String getStatus() { return status; }
+    void store(String locationId) { this.status = "STORED"; this.locationId = locationId; }
+    void reject(String reason) { this.status = "REJECTED"; this.reason = reason; }
+
+    // Reads a JSON array of {"itemId", "warehouseId", "qty"} objects ("quantity" also accepted) without buffering the body
+    static List<PutAwayLine> readAll(JsonReader in, int maxLines) throws IOException {
+        List<PutAwayLine> lines = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (lines.size() == maxLines) throw new IllegalArgumentException("Batch exceeds " + maxLines + " lines");
+            String itemId = null, warehouseId = null; int qty = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "itemId": itemId = in.nextString(); break;
+                    case "warehouseId": warehouseId = in.nextString(); break;
+                    case "qty": case "quantity": qty = in.nextInt(); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            lines.add(new PutAwayLine(lines.size(), itemId, warehouseId, qty));
+        }
+        in.endArray();
+        return lines;
+    }
 
-    public ShipmentNotification(int id, String sName, Date sDate) {
-        this.shipmentId = id;
-        this.supplierName = sName;
-        this.shipmentDate = sDate;
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject().name("line").value(line).name("itemId").value(itemId).name("warehouseId").value(warehouseId);
+        out.name("quantity").value(quantity).name("status").value(status).name("locationId").value(locationId).name("reason").value(reason);
+        out.endObject();
     }
+}
 
-    public int getShipmentId() { return shipmentId; }
-    public String getSupplierName() { return supplierName; }
+class StockAlert implements JsonWritable {
+    private String alertId; private String itemId; private String recordId, warehouseId; private volatile int currentQuantity; private int reorderPoint;
+    private LocalDateTime raisedAt;
+    public StockAlert(String itemId, int currentQuantity) {
+        this.alertId = IdGenerator.next("ALERT"); this.itemId = itemId; this.currentQuantity = currentQuantity; this.raisedAt = LocalDateTime.now();
+    }
+    public StockAlert(InventoryRecord record, int reorderPoint) {
+        this(record.getItemId(), record.getQuantityOnHand());
+        this.recordId = record.getRecordId(); this.warehouseId = record.getWarehouseId(); this.reorderPoint = reorderPoint;
+    }
+    public String getAlertId() { return alertId; }
+    public String getItemId() { return itemId; }
+    public String getRecordId() { return recordId; }
+    public int getCurrentQuantity() { return currentQuantity; }
+    void updateQuantity(int qty) { this.currentQuantity = qty; }
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject().name("alertId").value(alertId).name("itemId").value(itemId).name("recordId").value(recordId);
+        out.name("warehouseId").value(warehouseId).name("currentQuantity").value(currentQuantity).name("reorderPoint").value(reorderPoint);
+        out.name("raisedAt").value(JsonSupport.iso(raisedAt)).endObject();
+    }
 }
 
-class Goods {
-    private String productName;
-    private int quantity;
-    private boolean received;
-    private String sku;
-    private String description;
+class StockMonitor implements Journaled {
+    private static final LongAdder ALERTS_RAISED = Metrics.DEFAULT.counter("warehouse_stock_alerts_raised_total", "Low-stock alerts raised");
+    private Map<String, InventoryRecord> inventoryRecords = new ConcurrentHashMap<>();
+    private Map<String, Item> items = new ConcurrentHashMap<>();
+    // Secondary indexes so lookups by item/warehouse/location don't scan every record
+    private final Map<String, Set<InventoryRecord>> recordsByItem = new ConcurrentHashMap<>();
+    private final Map<String, Set<InventoryRecord>> recordsByWarehouse = new ConcurrentHashMap<>();
+    private final Map<String, InventoryRecord> recordsByLocation = new ConcurrentHashMap<>();
+    // Live low-stock set (recordId -> open alert), kept current on every quantity change instead of by a full sweep
+    private final NavigableMap<String, StockAlert> lowStockAlerts = new ConcurrentSkipListMap<>(); // by recordId
+    private final List<Consumer<StockAlert>> alertSubscribers = new CopyOnWriteArrayList<>();
+    private final StripedLocks recordLocks = new StripedLocks(256);
+    private MutationLog journal = MutationLog.NONE;
+
+    public void setJournal(MutationLog journal) { this.journal = journal; }
+
+    public Map<String, InventoryRecord> getInventoryRecords() { return Collections.unmodifiableMap(inventoryRecords); }
+    public void addInventoryRecord(InventoryRecord record) {
+        recordLocks.withLock(record.getRecordId(), () -> {
+            InventoryRecord previous = inventoryRecords.put(record.getRecordId(), record);
+            if (previous != null) unindex(previous);
+            recordsByItem.computeIfAbsent(record.getItemId(), k -> ConcurrentHashMap.newKeySet()).add(record);
+            recordsByWarehouse.computeIfAbsent(record.getWarehouseId(), k -> ConcurrentHashMap.newKeySet()).add(record);
+            recordsByLocation.put(record.getLocationId(), record);
+            evaluateReorder(record);
+            journal.record("inventoryRecord", record.getRecordId(), record);
+            return null;
+        });
+    }
+    public InventoryRecord removeInventoryRecord(String recordId) {
+        return recordLocks.withLock(recordId, () -> {
+            InventoryRecord record = inventoryRecords.remove(recordId);
+            if (record != null) {
+                unindex(record);
+                lowStockAlerts.remove(recordId);
+                journal.removed("inventoryRecord", recordId, record);
+            }
+            return record;
+        });
+    }
+    private void unindex(InventoryRecord record) {
+        Set<InventoryRecord> byItem = recordsByItem.get(record.getItemId());
+        if (byItem != null) byItem.remove(record);
+        Set<InventoryRecord> byWarehouse = recordsByWarehouse.get(record.getWarehouseId());
+        if (byWarehouse != null) byWarehouse.remove(record);
+        recordsByLocation.remove(record.getLocationId(), record);
+    }
+    // The stock ledger owns quantities: each posted movement arrives here with its bin's balance after it, and the item's
+    // record in that bin follows. A catalogued item posted to a bin it has no record in gets one, filed under the given
+    // warehouse; SKUs that are not catalogued items have no reorder point and are not monitored. Called under the
+    // ledger's write lock, so records follow the log in order.
+    void ledgerBalanceChanged(String warehouseId, StockMovement m) {
+        int quantity = (int) Math.min(m.getBalance(), Integer.MAX_VALUE);
+        InventoryRecord record = recordsByLocation.get(m.getBin());
+        if (record != null) {
+            if (record.getItemId().equals(m.getSku())) updateQuantity(record.getRecordId(), quantity);
+        } else if (items.containsKey(m.getSku())) {
+            addInventoryRecord(new InventoryRecord("IR-" + m.getSku() + "@" + m.getBin(), m.getSku(), warehouseId, m.getBin(), quantity));
+        }
+    }
 
-    public Goods(String productName, int quantity) { this.productName = productName; this.quantity = quantity; this.received = false; }
-    public Goods(String sku, String description) { this.sku = sku; this.description = description; }
+    // Run once after recovery: a record the ledger has never seen (seed data, or records journaled before the ledger
+    // fed them) posts its quantity as an opening balance, and any other record takes the ledger's balance
+    void reconcile(InventorySystem ledger) {
+        for (InventoryRecord record : new ArrayList<>(inventoryRecords.values())) {
+            Long balance = ledger.getOnHandByBin(record.getItemId()).get(record.getLocationId());
+            if (balance == null) {
+                if (record.getQuantityOnHand() > 0) {
+                    ledger.receive(record.getItemId(), record.getLocationId(), record.getQuantityOnHand(), "Opening balance " + record.getRecordId());
+                }
+            } else if (balance != record.getQuantityOnHand()) {
+                updateQuantity(record.getRecordId(), (int) Math.min(balance, Integer.MAX_VALUE));
+            }
+        }
+    }
 
-    public String getProductName() { return productName; }
+    public boolean updateQuantity(String recordId, int newQuantity) {
+        return recordLocks.withLock(recordId, () -> {
+            InventoryRecord record = inventoryRecords.get(recordId);
+            if (record == null) return false;
+            record.setQuantityOnHand(newQuantity);
+            evaluateReorder(record);
+            journal.record("inventoryRecord", recordId, record);
+            return true;
+        });
+    }
+    public Collection<InventoryRecord> getRecordsForItem(String itemId) { return readOnly(recordsByItem.get(itemId)); }
+    public Collection<InventoryRecord> getRecordsForWarehouse(String warehouseId) { return readOnly(recordsByWarehouse.get(warehouseId)); }
+    public InventoryRecord getRecordAtLocation(String locationId) { return recordsByLocation.get(locationId); }
+    private static Collection<InventoryRecord> readOnly(Set<InventoryRecord> records) {
+        return records == null ? Collections.emptySet() : Collections.unmodifiableSet(records);
+    }
+    public void addItem(Item item) {
+        items.put(item.getItemId(), item);
+        // The reorder point may have changed, so re-check this item's records only
+        getRecordsForItem(item.getItemId()).forEach(r -> recordLocks.withLock(r.getRecordId(), () -> { evaluateReorder(r); return null; }));
+    }
+
+    // Only the record whose quantity changed is checked against its reorder point
+    private void evaluateReorder(InventoryRecord record) {
+        Item item = items.get(record.getItemId());
+        if (item == null || !record.needsReorder(item.getReorderPoint())) {
+            lowStockAlerts.remove(record.getRecordId());
+            return;
+        }
+        StockAlert alert = new StockAlert(record, item.getReorderPoint());
+        StockAlert existing = lowStockAlerts.putIfAbsent(record.getRecordId(), alert);
+        if (existing != null) {
+            existing.updateQuantity(record.getQuantityOnHand());
+            return;
+        }
+        record.markAsLowStock();
+        ALERTS_RAISED.increment();
+        alertSubscribers.forEach(s -> s.accept(alert));
+    }
+
+    // Subscribers are called on the thread that changed the stock, so they must not block
+    public Runnable subscribe(Consumer<StockAlert> subscriber) {
+        alertSubscribers.add(subscriber);
+        return () -> alertSubscribers.remove(subscriber);
+    }
+    public Collection<StockAlert> getLowStockAlerts() { return Collections.unmodifiableCollection(lowStockAlerts.values()); }
+    public Page<StockAlert> getLowStockAlerts(String cursor, int limit) { return Page.of(lowStockAlerts, cursor, limit); }
+
+    // Kept for API 10: returns the live low-stock set, O(alerts) rather than a sweep over all records
+    public List<StockAlert> performStockMonitoring() { return new ArrayList<>(lowStockAlerts.values()); }
+}
+
+
+// From Business Process 8: Reorder Stock
+// PENDING -> APPROVED -> ORDERED once its purchase order exists; PENDING -> REJECTED
+enum RequisitionStatus {
+    PENDING, APPROVED, REJECTED, ORDERED;
+    boolean canBecome(RequisitionStatus next) {
+        return this == PENDING ? next == APPROVED || next == REJECTED : this == APPROVED && next == ORDERED;
+    }
+}
+class PurchaseRequisition implements JsonWritable {
+    private static final AtomicReferenceFieldUpdater<PurchaseRequisition, RequisitionStatus> STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(PurchaseRequisition.class, RequisitionStatus.class, "status");
+    private String requisitionId, itemId, itemName, createdBy, justification; private volatile RequisitionStatus status;
+    private int quantity; private String supplierId; private BigDecimal unitCost; // supplier and price chosen at approval
+    private String deliveryAddress; private LocalDateTime approvedAt;
+    public PurchaseRequisition(String itemId, String itemName, int qty, String createdBy, String justification) {
+        this.requisitionId = IdGenerator.next("PR");
+        this.itemId = itemId; this.itemName = itemName; this.quantity = qty;
+        this.createdBy = createdBy; this.justification = justification; this.status = RequisitionStatus.PENDING;
+    }
+    PurchaseRequisition(String itemId, String itemName, int qty, String createdBy, String justification, String deliveryAddress) {
+        this(itemId, itemName, qty, createdBy, justification);
+        this.deliveryAddress = deliveryAddress;
+    }
+    public String getRequisitionId() { return requisitionId; }
+    public String getItemId() { return itemId; }
+    public String getItemName() { return itemName; }
+    public String getDeliveryAddress() { return deliveryAddress; }
+    public LocalDateTime getApprovedAt() { return approvedAt; }
     public int getQuantity() { return quantity; }
-    public void setReceived(boolean received) { this.received = received; }
-    public String getSku() { return sku; }
+    public String getSupplierId() { return supplierId; }
+    public BigDecimal getUnitCost() { return unitCost; }
+    public RequisitionStatus getStatus() { return status; }
+    // Synchronized with reject so the supplier is only ever recorded on the requisition that actually gets approved;
+    // the status write publishes it to whoever later sees APPROVED
+    public synchronized boolean approve(String approverName, String supplierId, BigDecimal unitCost) {
+        if (status != RequisitionStatus.PENDING) return false;
+        this.supplierId = supplierId; this.unitCost = unitCost; this.approvedAt = LocalDateTime.now();
+        return compareAndSetStatus(RequisitionStatus.PENDING, RequisitionStatus.APPROVED);
+    }
+    public synchronized boolean reject(String reason) { return compareAndSetStatus(RequisitionStatus.PENDING, RequisitionStatus.REJECTED); }
+    // Illegal transitions fail like a lost race: the status is left as it was
+    public boolean compareAndSetStatus(RequisitionStatus expected, RequisitionStatus next) {
+        return expected.canBecome(next) && STATUS.compareAndSet(this, expected, next);
+    }
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject().name("requisitionId").value(requisitionId).name("itemId").value(itemId).name("itemName").value(itemName);
+        out.name("createdBy").value(createdBy).name("justification").value(justification).name("status").value(status.name());
+        out.name("quantity").value(quantity).name("supplierId").value(supplierId).name("unitCost").value(unitCost);
+        out.name("deliveryAddress").value(deliveryAddress).name("approvedAt").value(JsonSupport.iso(approvedAt)).endObject();
+    }
 }
 
-class Delivery {
-    private ShipmentNotification shipment;
-    private Goods goods;
+// Terms and quotes change through ProcurementManager_BP8 only, which re-ranks the affected items in its SourcingEngine
+class Supplier_BP8 {
+    private String supplierId, companyName, contactPerson, email, phone, address;
+    private volatile double performanceRating = 4.5; private volatile int deliveryLeadTime = 7; private volatile boolean active = true;
+    private volatile BigDecimal minimumOrderValue = BigDecimal.ZERO;
+    // itemId -> quoted unit cost; items without a quote are supplied at the item's standard cost
+    private ConcurrentMap<String, BigDecimal> quotes = new ConcurrentHashMap<>();
+    public Supplier_BP8(String id, String name, String contact, String email, String phone, String addr) {
+        this.supplierId = id; this.companyName = name; this.contactPerson = contact; this.email = email; this.phone = phone; this.address = addr;
+    }
+    public String getSupplierId() { return supplierId; }
+    public String getCompanyName() { return companyName; }
+    public double getPerformanceRating() { return performanceRating; }
+    public boolean isActive() { return active; }
+    public boolean meetsMinimumOrder(BigDecimal val) { return val.compareTo(minimumOrderValue) >= 0; }
+    public BigDecimal getMinimumOrderValue() { return minimumOrderValue; }
+    public int getDeliveryLeadTime() { return deliveryLeadTime; }
+    public String getPaymentTerms() { return "Net 30"; }
+    public Map<String, BigDecimal> getQuotes() { return Collections.unmodifiableMap(quotes); }
+    void setTerms(double rating, int leadTimeDays, BigDecimal minimumOrderValue, boolean active) {
+        this.performanceRating = rating; this.deliveryLeadTime = leadTimeDays; this.minimumOrderValue = minimumOrderValue; this.active = active;
+    }
+    // A null cost withdraws the quote
+    void setQuote(String itemId, BigDecimal unitCost) { if (unitCost == null) quotes.remove(itemId); else quotes.put(itemId, unitCost); }
+}
 
-    public Delivery(ShipmentNotification shipment, Goods goods) { this.shipment = shipment; this.goods = goods; }
-    public Goods getGoods() { return goods; }
+// Ranked supplier candidates per item, so approving a requisition picks its supplier without looking at every supplier.
+// Any active supplier can supply any item, at its quote or else at the item's standard cost. Candidates are ordered by
+// effective cost: the unit cost, plus 1% per day of lead time and 10% per rating point below 5. Each item keeps a sorted
+// array of the suppliers quoting it; the catalogue array holds every supplier ordered by markup alone, which ranks them
+// the same way for any standard cost. A supplier change (rare) re-ranks only the items it quotes, before and after the
+// change, and moves its one catalogue entry; approvals read the published arrays without locking and take the first
+// candidate, merging the two by score, that meets its minimum order value.
+final class SourcingEngine {
+    static final class Candidate implements JsonWritable {
+        final String supplierId, supplierName; final BigDecimal unitCost, minimumOrderValue; final double markup, rating; final int leadTimeDays;
+        final Set<String> quoted; // catalogue entries: the items this supplier prices through its per-item entry instead
+        Candidate(Supplier_BP8 s, BigDecimal unitCost) {
+            this.supplierId = s.getSupplierId(); this.supplierName = s.getCompanyName(); this.unitCost = unitCost;
+            this.quoted = unitCost == null ? Set.copyOf(s.getQuotes().keySet()) : Set.of();
+            this.minimumOrderValue = s.getMinimumOrderValue(); this.rating = s.getPerformanceRating(); this.leadTimeDays = s.getDeliveryLeadTime();
+            this.markup = (1 + 0.01 * leadTimeDays) * (1 + 0.1 * Math.max(0, 5 - rating));
+        }
+        private Candidate(Candidate c, BigDecimal unitCost) {
+            this.supplierId = c.supplierId; this.supplierName = c.supplierName; this.unitCost = unitCost; this.minimumOrderValue = c.minimumOrderValue;
+            this.rating = c.rating; this.leadTimeDays = c.leadTimeDays; this.markup = c.markup; this.quoted = Set.of();
+        }
+        double score(BigDecimal standardCost) { return (unitCost == null ? standardCost : unitCost).doubleValue() * markup; }
+        Candidate pricedAt(BigDecimal standardCost) { return unitCost != null ? this : new Candidate(this, standardCost); }
+        boolean accepts(BigDecimal unitCost, int quantity) { return unitCost.multiply(BigDecimal.valueOf(quantity)).compareTo(minimumOrderValue) >= 0; }
+        public String getSupplierId() { return supplierId; }
+        public BigDecimal getUnitCost() { return unitCost; }
+        @Override
+        public void writeJson(JsonWriter out) throws IOException {
+            out.beginObject().name("supplierId").value(supplierId).name("supplierName").value(supplierName).name("unitCost").value(unitCost);
+            out.name("minimumOrderValue").value(minimumOrderValue).name("markup").value(Math.round(markup * 10_000) / 10_000.0).name("rating").value(rating);
+            out.name("leadTimeDays").value(leadTimeDays).endObject();
+        }
+    }
+    private static final Candidate[] NONE = {};
+    private static final Comparator<Candidate> BY_MARKUP = Comparator.<Candidate>comparingDouble(c -> c.markup).thenComparing(c -> c.supplierId);
+
+    private final Map<String, Supplier_BP8> suppliers = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> quotedBy = new HashMap<>(); // itemId -> supplierIds quoting it; guarded by this
+    private final Map<String, Map<String, BigDecimal>> indexedQuotes = new HashMap<>(); // supplierId -> quotes as last ranked; guarded by this
+    private final Map<String, List<Object>> indexedTerms = new HashMap<>(); // supplierId -> terms as last ranked; guarded by this
+    private final Map<String, Candidate[]> ranked = new ConcurrentHashMap<>(); // itemId -> quoting suppliers, best first
+    private volatile Candidate[] catalogue = NONE; // every active supplier at standard cost, lowest markup first
+
+    Supplier_BP8 getSupplier(String supplierId) { return suppliers.get(supplierId); }
+    Map<String, Supplier_BP8> getSuppliers() { return Collections.unmodifiableMap(suppliers); }
+
+    // Adds a supplier, or re-ranks after its terms or quotes changed
+    synchronized void supplierChanged(Supplier_BP8 s) {
+        String id = s.getSupplierId();
+        suppliers.put(id, s);
+        List<Object> terms = List.of(s.isActive(), s.getPerformanceRating(), s.getDeliveryLeadTime(), s.getMinimumOrderValue(), s.getCompanyName());
+        boolean termsChanged = !terms.equals(indexedTerms.put(id, terms));
+        Map<String, BigDecimal> before = indexedQuotes.getOrDefault(id, Map.of()), now = Map.copyOf(s.getQuotes());
+        indexedQuotes.put(id, now);
+        // New terms move the supplier in every item it quotes; otherwise only re-quoted items need ranking again
+        Set<String> affected = new HashSet<>();
+        for (String itemId : before.keySet()) if (!now.containsKey(itemId)) { quotedBy.get(itemId).remove(id); affected.add(itemId); }
+        for (Map.Entry<String, BigDecimal> quote : now.entrySet()) {
+            if (termsChanged || !quote.getValue().equals(before.get(quote.getKey()))) affected.add(quote.getKey());
+            quotedBy.computeIfAbsent(quote.getKey(), i -> new HashSet<>()).add(id);
+        }
+        affected.forEach(this::rank);
+        if (!termsChanged && before.keySet().equals(now.keySet())) return;
+
+        List<Candidate> updated = new ArrayList<>(catalogue.length + 1);
+        for (Candidate c : catalogue) if (!c.supplierId.equals(id)) updated.add(c);
+        if (s.isActive()) {
+            Candidate entry = new Candidate(s, null);
+            int at = Collections.binarySearch(updated, entry, BY_MARKUP);
+            updated.add(at < 0 ? -at - 1 : at, entry);
+        }
+        catalogue = updated.toArray(NONE);
+    }
+
+    private void rank(String itemId) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (String supplierId : quotedBy.getOrDefault(itemId, Set.of())) {
+            Supplier_BP8 s = suppliers.get(supplierId);
+            BigDecimal cost = indexedQuotes.get(supplierId).get(itemId);
+            if (s.isActive() && cost != null) candidates.add(new Candidate(s, cost));
+        }
+        if (candidates.isEmpty()) { ranked.remove(itemId); return; }
+        candidates.sort(Comparator.<Candidate>comparingDouble(c -> c.score(null)).thenComparing(c -> c.supplierId));
+        ranked.put(itemId, candidates.toArray(NONE));
+    }
+
+    // The best supplier whose minimum order value the quantity meets, or null. Merges the item's quoted candidates with
+    // the catalogue suppliers by score and stops at the first that qualifies, which is almost always the first one.
+    Candidate choose(Item item, int quantity) {
+        String itemId = item.getItemId();
+        Candidate[] quoted = ranked.getOrDefault(itemId, NONE), general = catalogue;
+        BigDecimal standard = item.getUnitCost();
+        for (int q = 0, g = 0; q < quoted.length || g < general.length; ) {
+            Candidate c = g == general.length || q < quoted.length && quoted[q].score(null) <= general[g].score(standard) ? quoted[q++] : general[g++];
+            if (c.quoted.contains(itemId)) continue;
+            BigDecimal cost = c.unitCost == null ? standard : c.unitCost;
+            if (c.accepts(cost, quantity)) return c.pricedAt(standard);
+        }
+        return null;
+    }
+
+    // Every candidate for the item, best first, priced
+    List<Candidate> candidates(Item item) {
+        List<Candidate> all = new ArrayList<>();
+        for (Candidate c : ranked.getOrDefault(item.getItemId(), NONE)) all.add(c);
+        for (Candidate c : catalogue) if (!c.quoted.contains(item.getItemId())) all.add(c.pricedAt(item.getUnitCost()));
+        all.sort(Comparator.<Candidate>comparingDouble(c -> c.score(null)).thenComparing(c -> c.supplierId));
+        return all;
+    }
 }
 
-class ReceivingClerk {
-    private String name;
+class ProcurementManager_BP8 implements Journaled {
+    private static final LongAdder REQUISITIONS_CREATED = Metrics.DEFAULT.counter("warehouse_requisitions_created_total", "Purchase requisitions created");
+    private Map<String, Item> items = new ConcurrentHashMap<>();
+    private final SourcingEngine sourcing = new SourcingEngine();
+    private Map<String, PurchaseRequisition> purchaseRequisitions = new ConcurrentHashMap<>();
+    private Map<String, PurchaseOrder> purchaseOrders = new ConcurrentHashMap<>();
+    private final StatusIndex<RequisitionStatus, PurchaseRequisition> requisitionsByStatus =
+            new StatusIndex<>(RequisitionStatus.class, PurchaseRequisition::getStatus);
+    private BigDecimal approvalLimit;
+    private final ReentrantLock consolidationLock = new ReentrantLock();
+    private MutationLog journal = MutationLog.NONE;
+    static final String DEFAULT_DELIVERY_ADDRESS = "123 Main St, Anytown, USA";
 
-    public ReceivingClerk(String name) { this.name = name; }
+    public ProcurementManager_BP8(String id, BigDecimal limit) { this.approvalLimit = limit; }
+    public void setJournal(MutationLog journal) { this.journal = journal; }
+    void restoreRequisition(PurchaseRequisition req) {
+        purchaseRequisitions.put(req.getRequisitionId(), req);
+        requisitionsByStatus.update(req.getRequisitionId(), req);
+    }
+    void restorePurchaseOrder(PurchaseOrder po) { purchaseOrders.put(po.getPurchaseOrderId(), po); }
+    public Map<String, PurchaseRequisition> getPurchaseRequisitions() { return purchaseRequisitions; }
+    public Map<String, PurchaseOrder> getPurchaseOrders() { return purchaseOrders; }
+    public void addItem(Item item) { items.put(item.getItemId(), item); }
+    public void addSupplier(Supplier_BP8 supplier) { sourcing.supplierChanged(supplier); }
+    void restoreSupplier(Supplier_BP8 supplier) { sourcing.supplierChanged(supplier); }
+    public Map<String, Supplier_BP8> getSuppliers() { return sourcing.getSuppliers(); }
+    public List<SourcingEngine.Candidate> getSourcingCandidates(String itemId) {
+        Item item = items.get(itemId);
+        return item == null ? null : sourcing.candidates(item);
+    }
 
-    public boolean performCheck(Delivery delivery) {
-        System.out.println(name + " is performing receiving check on goods: " + delivery.getGoods().getProductName());
-        delivery.getGoods().setReceived(true);
+    // Supplier changes are applied one at a time under the engine's lock; each re-ranks only the items the supplier quotes
+    public Supplier_BP8 updateSupplierTerms(String supplierId, double rating, int leadTimeDays, BigDecimal minimumOrderValue, boolean active) {
+        Supplier_BP8 s = sourcing.getSupplier(supplierId);
+        if (s == null) return null;
+        synchronized (sourcing) {
+            s.setTerms(rating, leadTimeDays, minimumOrderValue, active);
+            sourcing.supplierChanged(s);
+            journal.record("supplier", supplierId, s);
+        }
+        return s;
+    }
+
+    public Supplier_BP8 setSupplierQuote(String supplierId, String itemId, BigDecimal unitCost) {
+        Supplier_BP8 s = sourcing.getSupplier(supplierId);
+        if (s == null) return null;
+        synchronized (sourcing) {
+            s.setQuote(itemId, unitCost);
+            sourcing.supplierChanged(s);
+            journal.record("supplier", supplierId, s);
+        }
+        return s;
+    }
+
+    public PurchaseRequisition createPurchaseRequisition(String itemId, int currentStock, String createdBy) {
+        return createPurchaseRequisition(itemId, currentStock, createdBy, DEFAULT_DELIVERY_ADDRESS);
+    }
+
+    public PurchaseRequisition createPurchaseRequisition(String itemId, int currentStock, String createdBy, String deliveryAddress) {
+        Item item = items.get(itemId);
+        if (item == null || currentStock > item.getReorderPoint()) return null;
+        String justification = "Stock level (" + currentStock + ") is below reorder point (" + item.getReorderPoint() + ")";
+        PurchaseRequisition req = new PurchaseRequisition(item.getItemId(), item.getName(), item.getReorderQuantity(), createdBy, justification, deliveryAddress);
+        purchaseRequisitions.put(req.getRequisitionId(), req);
+        requisitionsByStatus.update(req.getRequisitionId(), req);
+        journal.record("requisition", req.getRequisitionId(), req);
+        REQUISITIONS_CREATED.increment();
+        return req;
+    }
+
+    public boolean approveRequisition(String reqId, String approverName) {
+        PurchaseRequisition req = purchaseRequisitions.get(reqId);
+        if (req == null) return false;
+        Item item = items.get(req.getItemId());
+        SourcingEngine.Candidate supplier = item == null ? null : sourcing.choose(item, quantityOf(req, item));
+        if (supplier == null || !req.approve(approverName, supplier.getSupplierId(), supplier.getUnitCost())) return false;
+        requisitionsByStatus.update(reqId, req);
+        journal.record("requisition", reqId, req);
         return true;
     }
-}
 
-// From Business Process 4: Inspect Incoming Goods
-enum InspectionOutcome { PASS, FAIL }
+    public boolean rejectRequisition(String reqId, String reason) {
+        PurchaseRequisition req = purchaseRequisitions.get(reqId);
+        if (req == null || !req.reject(reason)) return false;
+        requisitionsByStatus.update(reqId, req);
+        journal.record("requisition", reqId, req);
+        return true;
+    }
 
-final class GoodsBatch {
-    final String sku; final String batchId; final int quantity;
-    GoodsBatch(String sku, String batchId, int quantity) {
-        this.sku = sku; this.batchId = batchId; this.quantity = quantity;
+    public NavigableMap<String, PurchaseRequisition> getRequisitionsByStatus(RequisitionStatus status) { return requisitionsByStatus.get(status); }
+    public Collection<PurchaseRequisition> getPendingRequisitions() { return requisitionsByStatus.get(RequisitionStatus.PENDING).values(); }
+    public Page<PurchaseRequisition> getPendingRequisitions(String cursor, int limit) {
+        return Page.of(requisitionsByStatus.get(RequisitionStatus.PENDING), cursor, limit);
     }
-}
 
-final class QCResult {
-    final InspectionOutcome outcome; final List<String> defects; final String notes;
-    QCResult(InspectionOutcome o, List<String> d, String n) {
-        this.outcome = o; this.defects = d; this.notes = n;
+    public PurchaseOrder generatePurchaseOrder(String reqId, String deliveryAddress) {
+        PurchaseRequisition req = purchaseRequisitions.get(reqId);
+        if (req == null) return null;
+        // Item and supplier are resolved before the claim, so a requisition that cannot be ordered stays APPROVED for a retry
+        Item item = items.get(req.getItemId());
+        Supplier_BP8 supplier = item == null ? null : sourcing.getSupplier(supplierIdOf(req, item));
+        if (supplier == null) return null;
+        // One purchase order per requisition: claiming APPROVED -> ORDERED makes a repeated call fail
+        if (!req.compareAndSetStatus(RequisitionStatus.APPROVED, RequisitionStatus.ORDERED)) return null;
+        BigDecimal unitCost = req.getUnitCost() != null ? req.getUnitCost() : item.getUnitCost();
+
+        PurchaseOrder po = new PurchaseOrder(reqId, supplier.getSupplierId(), supplier.getCompanyName(), deliveryAddress);
+        po.addOrderItem(item.getItemId(), item.getName(), quantityOf(req, item), unitCost);
+        purchaseOrders.put(po.getPurchaseOrderId(), po);
+        requisitionsByStatus.update(reqId, req);
+        journal.record("requisition", reqId, req);
+        journal.record("purchaseOrder", po.getPurchaseOrderId(), po);
+        return po;
     }
-}
-final class GoodsReceivedNote {
-    final String grnId; final GoodsBatch batch; final java.time.LocalDate date;
-    GoodsReceivedNote(String grnId, GoodsBatch batch) {
-        this.grnId = grnId; this.batch = batch; this.date = java.time.LocalDate.now();
+
+    // Turns APPROVED requisitions into one purchase order per supplier and delivery address. A group is released once its
+    // oldest approval is `window` old, which gives later requisitions for the same supplier time to join; everything
+    // approved for it by then goes on the order, one line per item and price. Each requisition is claimed
+    // (APPROVED -> ORDERED) first, so requisitions ordered through API 1 meanwhile, or by a concurrent run, are skipped.
+    // Both passes walk the APPROVED index in ID order: groups interleave across it, and touching requisitions and
+    // re-filing them in index order is several times faster than going group by group.
+    public List<PurchaseOrder> consolidateApproved(Duration window) {
+        LocalDateTime dueBefore = LocalDateTime.now().minus(window);
+        consolidationLock.lock();
+        try {
+            List<PurchaseRequisition> approved = new ArrayList<>();
+            List<Item> approvedItems = new ArrayList<>();
+            List<String> keys = new ArrayList<>();
+            Set<String> due = new HashSet<>();
+            for (PurchaseRequisition req : requisitionsByStatus.get(RequisitionStatus.APPROVED).values()) {
+                // Requisitions whose item or supplier is gone are left APPROVED rather than ordered without them
+                Item item = items.get(req.getItemId());
+                if (item == null || sourcing.getSupplier(supplierIdOf(req, item)) == null) continue;
+                String key = supplierIdOf(req, item) + '\n' + Objects.requireNonNullElse(req.getDeliveryAddress(), DEFAULT_DELIVERY_ADDRESS);
+                approved.add(req);
+                approvedItems.add(item);
+                keys.add(key);
+                if (req.getApprovedAt() == null || !req.getApprovedAt().isAfter(dueBefore)) due.add(key);
+            }
+
+            Map<String, Consolidation> groups = new LinkedHashMap<>();
+            List<PurchaseRequisition> ordered = new ArrayList<>();
+            for (int i = 0; i < approved.size(); i++) {
+                PurchaseRequisition req = approved.get(i);
+                Item item = approvedItems.get(i);
+                if (!due.contains(keys.get(i)) || !req.compareAndSetStatus(RequisitionStatus.APPROVED, RequisitionStatus.ORDERED)) continue;
+                groups.computeIfAbsent(keys.get(i), k -> new Consolidation(supplierIdOf(req, item), req.getDeliveryAddress())).add(req, item);
+                ordered.add(req);
+            }
+
+            List<PurchaseOrder> created = new ArrayList<>(groups.size());
+            for (Consolidation group : groups.values()) {
+                Supplier_BP8 supplier = sourcing.getSupplier(group.supplierId);
+                PurchaseOrder po = new PurchaseOrder(group.requisitionIds, group.supplierId, supplier == null ? null : supplier.getCompanyName(),
+                        Objects.requireNonNullElse(group.deliveryAddress, DEFAULT_DELIVERY_ADDRESS), group.lines.values());
+                purchaseOrders.put(po.getPurchaseOrderId(), po);
+                created.add(po);
+            }
+            for (PurchaseRequisition req : ordered) {
+                requisitionsByStatus.update(req.getRequisitionId(), req);
+                journal.record("requisition", req.getRequisitionId(), req);
+            }
+            created.forEach(po -> journal.record("purchaseOrder", po.getPurchaseOrderId(), po));
+            return created;
+        } finally {
+            consolidationLock.unlock();
+        }
     }
+
+    // One purchase order being assembled: its requisitions and its lines, merged per item and unit cost
+    private static final class Consolidation {
+        final String supplierId, deliveryAddress;
+        final List<String> requisitionIds = new ArrayList<>();
+        final Map<String, PurchaseOrderItem> lines = new LinkedHashMap<>();
+        Consolidation(String supplierId, String deliveryAddress) { this.supplierId = supplierId; this.deliveryAddress = deliveryAddress; }
+
+        void add(PurchaseRequisition req, Item item) {
+            requisitionIds.add(req.getRequisitionId());
+            BigDecimal unitCost = req.getUnitCost() != null ? req.getUnitCost() : item.getUnitCost();
+            int quantity = quantityOf(req, item);
+            String key = item.getItemId() + '\n' + unitCost;
+            PurchaseOrderItem line = lines.get(key);
+            lines.put(key, line == null ? new PurchaseOrderItem(item.getItemId(), item.getName(), quantity, unitCost) : line.plus(quantity));
+        }
+    }
+
+    // Consolidates every `interval` on a daemon thread, releasing groups after `window`
+    public void scheduleConsolidation(Duration interval, Duration window) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "po-consolidation");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                List<PurchaseOrder> created = consolidateApproved(window);
+                if (!created.isEmpty()) EventLog.info("procurement.consolidated").with("purchaseOrders", created.size()).publish();
+            } catch (RuntimeException e) {
+                EventLog.error("procurement.consolidation.failed").error(e).publish(); // keep the schedule alive
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // Requisitions approved before sourcing recorded a supplier fall back to the item's preferred one
+    private static String supplierIdOf(PurchaseRequisition req, Item item) {
+        return req.getSupplierId() != null ? req.getSupplierId() : item.getPreferredSupplierId();
+    }
+
+    // Requisitions journaled before they carried a quantity order the item's reorder quantity
+    private static int quantityOf(PurchaseRequisition req, Item item) { return req.getQuantity() > 0 ? req.getQuantity() : item.getReorderQuantity(); }
 }
-class WarehouseReceiving {
-    GoodsBatch receiveDelivery(String sku, String batchId, int qty) { return new GoodsBatch(sku, batchId, qty); }
-    void unpackAndVisualInspect(GoodsBatch batch) { System.out.println("Unpacking " + batch.batchId); }
-    void moveToQC(GoodsBatch batch) { System.out.println("Moving " + batch.batchId + " to QC"); }
-}
-class QualityControl {
-    QCResult performQualityChecks(GoodsBatch batch) { return new QCResult(InspectionOutcome.PASS, List.of(), "AQL passed"); }
-    void recordFindings(QCResult result) { System.out.println("Recording QC findings: " + result.notes); }
-}
-class InventoryManager_BP4 {
-    void quarantine(GoodsBatch batch) { System.out.println("Quarantining batch " + batch.batchId); }
-    GoodsReceivedNote createGRN(GoodsBatch batch) { return new GoodsReceivedNote("GRN-" + System.currentTimeMillis(), batch); }
-    void putawayAndLabel(GoodsBatch batch, String bin) { System.out.println("Labeling " + batch.batchId + " and putting in " + bin); }
+
+
+// From BP9-12 (Picking, Packing, Labeling, Dispatch) – simplified implementation
+// PENDING -> ASSIGNED -> COMPLETED
+enum PickListStatus {
+    PENDING, ASSIGNED, COMPLETED;
+    boolean canBecome(PickListStatus next) { return next.ordinal() == ordinal() + 1; }
 }
-class InspectIncomingGoodsProcess {
-    private final WarehouseReceiving receiving; private final QualityControl qc; private final InventoryManager_BP4 inv;
-    InspectIncomingGoodsProcess(WarehouseReceiving r, QualityControl qc, InventoryManager_BP4 inv) {
-        this.receiving = r; this.qc = qc; this.inv = inv;
+class PickList implements JsonWritable {
+    private static final AtomicReferenceFieldUpdater<PickList, PickListStatus> STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(PickList.class, PickListStatus.class, "status");
+    String pickListId; String orderId; volatile PickListStatus status;
+    // Lines in walking order; batch (wave) lists carry waveId and every order they pick for, instead of orderId
+    String waveId, priority, assignedTo; List<String> orderIds; List<PickLine> lines = new ArrayList<>();
+    // Units confirmed per line, parallel to lines, as of the last journal record; the live counts are in progress,
+    // built from these on first use
+    int[] picked; boolean packed;
+    private transient PickProgress progress;
+    public PickList(String id, String oid) { this.pickListId = id; this.orderId = oid; this.status = PickListStatus.PENDING; }
+    PickList(String id, String waveId, String priority, List<String> orderIds, List<PickLine> lines) {
+        this(id, null);
+        this.waveId = waveId; this.priority = priority; this.orderIds = orderIds; this.lines = lines;
     }
-    GoodsReceivedNote execute(String sku, String batchId, int qty) {
-        GoodsBatch batch = receiving.receiveDelivery(sku, batchId, qty);
-        receiving.unpackAndVisualInspect(batch);
-        receiving.moveToQC(batch);
-        QCResult result = qc.performQualityChecks(batch);
-        qc.recordFindings(result);
-        if (result.outcome == InspectionOutcome.FAIL) {
-            inv.quarantine(batch);
-            return null;
-        } else {
-            GoodsReceivedNote grn = inv.createGRN(batch);
-            inv.putawayAndLabel(batch, "A1-01");
-            return grn;
+    public String getPickListId() { return pickListId; }
+    public String getOrderId() { return orderId; }
+    public String getWaveId() { return waveId; }
+    public String getPriority() { return priority; }
+    public String getAssignedTo() { return assignedTo; }
+    public List<String> getOrderIds() { return orderIds == null ? List.of(orderId) : Collections.unmodifiableList(orderIds); }
+    public List<PickLine> getLines() { return Collections.unmodifiableList(lines); }
+    public PickListStatus getStatus() { return status; }
+    // Synchronized with confirm() so no scan lands on a list once it is closed
+    public synchronized boolean markCompleted() { return compareAndSetStatus(PickListStatus.ASSIGNED, PickListStatus.COMPLETED); }
+    synchronized PickProgress.Outcome confirm(String itemId, int qty) {
+        return status != PickListStatus.ASSIGNED ? PickProgress.Outcome.NOT_ASSIGNED : progress().confirm(itemId, qty);
+    }
+    synchronized boolean isFullyPicked() { return progress().openLines() == 0; }
+    synchronized int[] pickedSnapshot() { return progress().picked(); }
+    // A completed list is packed once
+    synchronized boolean markPacked() {
+        if (status != PickListStatus.COMPLETED || packed) return false;
+        packed = true;
+        return true;
+    }
+    // Copies the live counts into picked and journals the list, under the monitor so no scan lands in between
+    synchronized void journal(MutationLog journal) {
+        if (progress != null) picked = progress.picked();
+        journal.record("pickList", pickListId, this);
+    }
+    private PickProgress progress() {
+        if (progress == null) {
+            if (lines == null) lines = new ArrayList<>();
+            progress = new PickProgress(lines, picked == null ? new int[lines.size()] : Arrays.copyOf(picked, lines.size()));
         }
+        return progress;
+    }
+    public boolean compareAndSetStatus(PickListStatus expected, PickListStatus next) {
+        return expected.canBecome(next) && STATUS.compareAndSet(this, expected, next);
+    }
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject().name("pickListId").value(pickListId).name("orderId").value(orderId).name("status").value(status.name()).name("waveId").value(waveId);
+        out.name("priority").value(priority).name("assignedTo").value(assignedTo).name("packed").value(packed);
+        if (orderIds != null) {
+            out.name("orderIds").beginArray();
+            for (String id : orderIds) out.value(id);
+            out.endArray();
+        }
+        if (lines != null) {
+            out.name("lines").beginArray();
+            for (PickLine line : lines) line.writeJson(out);
+            out.endArray();
+            out.name("picked").beginArray();
+            for (int units : pickedSnapshot()) out.value(units);
+            out.endArray();
+        }
+        out.endObject();
     }
 }
 
-// From Business Process 5: Update Inventory Records
-final class PurchaseOrderLine {
-    final String sku; final int expectedQty;
-    PurchaseOrderLine(String sku, int expectedQty) { this.sku = sku; this.expectedQty = expectedQty; }
-}
-final class StockAdjustment {
-    final String sku; final int delta; final String reason;
-    StockAdjustment(String sku, int delta, String reason) { this.sku = sku; this.delta = delta; this.reason = reason; }
+// One stop on a pick path: an item, where it is slotted, and how many units go to each order
+class PickLine implements JsonWritable {
+    String itemId, locationId; int quantity; Map<String, Integer> allocations = new LinkedHashMap<>();
+    PickLine(String itemId, String locationId) { this.itemId = itemId; this.locationId = locationId; }
+    void allocate(String orderId, int qty) { allocations.merge(orderId, qty, Integer::sum); quantity += qty; }
+    public String getItemId() { return itemId; }
+    public String getLocationId() { return locationId; }
+    public int getQuantity() { return quantity; }
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject().name("itemId").value(itemId).name("locationId").value(locationId).name("quantity").value(quantity);
+        out.name("allocations").beginObject();
+        for (Map.Entry<String, Integer> e : allocations.entrySet()) out.name(e.getKey()).value(e.getValue());
+        out.endObject().endObject();
+    }
 }
 
-// Consolidated Inventory System used by BP3, BP5, BP14
-class InventorySystem {
-    private List<Goods> inventory = new ArrayList<>();
+// Pick confirmations against a list's lines, kept in primitive arrays. Per line: units required, units picked, and the
+// next line of the same item (an item slotted in several bins, in walking order). Per item: an open-addressing table
+// (linear probing, at most half full) holding the id's hash, the item's first open line and its units still to pick side
+// by side, so most probes touch one cache line. A confirmation costs O(1) amortized whatever the size of the list;
+// callers hold the list's monitor.
+final class PickProgress {
+    enum Outcome { PICKED, NOT_ASSIGNED, UNKNOWN_ITEM, INVALID_QUANTITY, OVER_PICK }
+
+    private static final int REQUIRED = 0, PICKED = 1, NEXT = 2, LINE = 3; // fields of a line in lineState
+    private static final int HASH = 0, HEAD = 1, LEFT = 2, SLOT = 3;       // fields of a slot in table; HEAD is -1 when free
+
+    private final int[] lineState, table;
+    private final String[] keys;
+    private final int mask;
+    private int openLines;
+
+    PickProgress(List<PickLine> lines, int[] picked) {
+        int n = lines.size(), capacity = Integer.highestOneBit(Math.max(1, n) * 4 - 1);
+        lineState = new int[n * LINE]; table = new int[capacity * SLOT]; keys = new String[capacity]; mask = capacity - 1;
+        for (int slot = 0; slot < capacity; slot++) table[slot * SLOT + HEAD] = -1;
+        int[] tails = new int[capacity];
+        for (int i = 0; i < n; i++) {
+            String itemId = lines.get(i).getItemId();
+            int l = i * LINE, hash = hash(itemId), slot = slotOf(itemId, hash), t = slot * SLOT;
+            lineState[l + REQUIRED] = lines.get(i).getQuantity();
+            lineState[l + PICKED] = picked[i];
+            lineState[l + NEXT] = -1;
+            if (table[t + HEAD] < 0) { table[t + HASH] = hash; table[t + HEAD] = i; keys[slot] = itemId; }
+            else lineState[tails[slot] * LINE + NEXT] = i;
+            tails[slot] = i;
+            int open = Math.max(0, lineState[l + REQUIRED] - picked[i]);
+            table[t + LEFT] += open;
+            if (open > 0) openLines++;
+        }
+        for (int slot = 0; slot < capacity; slot++) if (table[slot * SLOT + HEAD] >= 0) advance(slot * SLOT);
+    }
+
+    // Fills the item's lines in walking order; a scan for more than is still open on them is refused whole
+    Outcome confirm(String itemId, int qty) {
+        int t = slotOf(itemId, hash(itemId)) * SLOT;
+        if (table[t + HEAD] < 0) return Outcome.UNKNOWN_ITEM;
+        if (qty <= 0) return Outcome.INVALID_QUANTITY;
+        if (qty > table[t + LEFT]) return Outcome.OVER_PICK;
+        table[t + LEFT] -= qty;
+        for (int l = table[t + HEAD] * LINE; qty > 0; l = lineState[l + NEXT] * LINE) {
+            int take = Math.min(qty, lineState[l + REQUIRED] - lineState[l + PICKED]);
+            if (take <= 0) continue;
+            lineState[l + PICKED] += take;
+            qty -= take;
+            if (lineState[l + PICKED] == lineState[l + REQUIRED]) openLines--;
+        }
+        advance(t);
+        return Outcome.PICKED;
+    }
+
+    int openLines() { return openLines; }
+
+    int[] picked() {
+        int[] picked = new int[lineState.length / LINE];
+        for (int i = 0; i < picked.length; i++) picked[i] = lineState[i * LINE + PICKED];
+        return picked;
+    }
 
-    public void updateRecords(Goods goods) {
-        System.out.println("System updated: " + goods.getProductName() + " - Quantity: " + goods.getQuantity());
-        inventory.add(goods);
+    private void advance(int t) {
+        int line = table[t + HEAD];
+        while (lineState[line * LINE + PICKED] >= lineState[line * LINE + REQUIRED] && lineState[line * LINE + NEXT] >= 0) {
+            line = lineState[line * LINE + NEXT];
+        }
+        table[t + HEAD] = line;
     }
-    public void storeProduct(Goods goods) {
-        System.out.println("Product stored: " + goods.getProductName());
+
+    private int slotOf(String itemId, int hash) {
+        int slot = hash & mask;
+        while (table[slot * SLOT + HEAD] >= 0 && (table[slot * SLOT + HASH] != hash || !Objects.equals(keys[slot], itemId))) slot = (slot + 1) & mask;
+        return slot;
     }
 
-    // BP5 hooks
-    void postReceipt(GoodsReceivedNote grn, PurchaseOrderLine po) {
-        System.out.println("Posted receipt for " + grn.batch.sku + " qty=" + grn.batch.quantity);
+    private static int hash(String itemId) {
+        int h = Objects.hashCode(itemId) * 0x9E3779B9;
+        return h ^ (h >>> 16);
     }
-    void applyAdjustment(StockAdjustment adj) {
-        System.out.println("Adjusted " + adj.sku + " by " + adj.delta + " (" + adj.reason + ")");
+}
+
+// A released wave: the orders it claimed and the batch pick lists covering them. singleOrderDistance is the travel the same
+// orders would need as one S-shape trip each (what API 13 pick lists give), plannedDistance the travel of the batch lists.
+class Wave implements JsonWritable {
+    String waveId, priority, carrierId; LocalDateTime shipBy, plannedAt;
+    List<String> orderIds = new ArrayList<>(), pickListIds = new ArrayList<>();
+    Map<String, List<String>> pickListsByOrder = new HashMap<>();
+    long plannedDistance, singleOrderDistance;
+    Wave(String waveId, String priority, String carrierId, LocalDateTime shipBy) {
+        this.waveId = waveId; this.priority = priority; this.carrierId = carrierId; this.shipBy = shipBy; this.plannedAt = LocalDateTime.now();
     }
-    void updateBinLocation(String sku, String bin) {
-        System.out.println("Updated bin for " + sku + " => " + bin);
+    public String getWaveId() { return waveId; }
+    public List<String> getPickListIds() { return Collections.unmodifiableList(pickListIds); }
+    public List<String> getPickListIdsForOrder(String orderId) { return pickListsByOrder.getOrDefault(orderId, List.of()); }
+    public long getPlannedDistance() { return plannedDistance; }
+    public long getSingleOrderDistance() { return singleOrderDistance; }
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject().name("waveId").value(waveId).name("priority").value(priority).name("carrierId").value(carrierId);
+        out.name("shipBy").value(JsonSupport.iso(shipBy)).name("plannedAt").value(JsonSupport.iso(plannedAt));
+        out.name("orderCount").value(orderIds.size());
+        out.name("pickListIds").beginArray();
+        for (String id : pickListIds) out.value(id);
+        out.endArray();
+        out.name("plannedDistance").value(plannedDistance).name("singleOrderDistance").value(singleOrderDistance);
+        out.endObject();
     }
-
-    // BP14 hooks
-    public void restock(Goods g) { System.out.println("Restocked: " + g.getSku()); }
-    public void dispose(Goods g) { System.out.println("Disposed: " + g.getSku()); }
 }
 
-class UpdateInventoryRecordsProcess {
-    private final InventorySystem inv;
-    UpdateInventoryRecordsProcess(InventorySystem inv) { this.inv = inv; }
-    void execute(GoodsReceivedNote grn, PurchaseOrderLine po, boolean updateCost, double landedCost) {
-        if (!grn.batch.sku.equals(po.sku)) throw new IllegalArgumentException("SKU mismatch");
-        int diff = grn.batch.quantity - po.expectedQty;
-        if (diff != 0) inv.applyAdjustment(new StockAdjustment(po.sku, diff, "Receipt reconciliation"));
-        inv.postReceipt(grn, po);
-        inv.updateBinLocation(po.sku, "A1-01");
+// Pick paths over bins named <aisle>-<bay> (e.g. "A1-01"). Aisles are ordered by letter prefix then number, and a path
+// walks them S-shape: up the first visited aisle, down the next, and so on. Distances are rectilinear from a depot at the
+// front of the first aisle, with AISLE_PITCH bay-lengths between neighbouring aisles. Unslotted items come last, at the depot.
+final class PickPath {
+    static final int AISLE_PITCH = 3;
+    private static final Comparator<String> AISLE_ORDER = Comparator
+            .comparing((String a) -> a.replaceAll("\\d+$", ""))
+            .thenComparingInt(a -> { String n = a.replaceAll("^.*?(\\d*)$", "$1"); return n.isEmpty() ? 0 : Integer.parseInt(n); })
+            .thenComparing(Comparator.naturalOrder());
+    private static final long UNSLOTTED = -1;
+    // Location -> aisle ordinal << 32 | bay, resolved once per known location
+    private final Map<String, Long> positions = new HashMap<>();
+
+    PickPath(Collection<String> locations) {
+        Set<String> aisles = new HashSet<>();
+        for (String loc : locations) { String aisle = aisle(loc); if (aisle != null) aisles.add(aisle); }
+        List<String> ordered = new ArrayList<>(aisles);
+        ordered.sort(AISLE_ORDER);
+        Map<String, Integer> aisleIndex = new HashMap<>();
+        for (String aisle : ordered) aisleIndex.put(aisle, aisleIndex.size());
+        for (String loc : locations) {
+            String aisle = aisle(loc);
+            if (aisle != null) positions.put(loc, (long) aisleIndex.get(aisle) << 32 | bay(loc));
+        }
     }
-}
 
-// From Business Process 6 & 7: Store Items & Monitor Stock
-class Item {
-    private String itemId, name, category, barcode; private double weight; private int reorderPoint, reorderQuantity;
-    public Item(String id, String n, String cat, String bc, double w, int rp, int rq) {
-        itemId = id; name = n; category = cat; barcode = bc; weight = w; reorderPoint = rp; reorderQuantity = rq;
+    // Sorts the lines into S-shape walking order over the aisles they touch
+    void sort(List<PickLine> lines) {
+        int n = lines.size();
+        long[] pos = new long[n];
+        BitSet visited = new BitSet();
+        for (int i = 0; i < n; i++) { pos[i] = position(lines.get(i).locationId); if (pos[i] != UNSLOTTED) visited.set((int) (pos[i] >>> 32)); }
+        int[] direction = new int[visited.length()];
+        int turn = 0;
+        for (int x = visited.nextSetBit(0); x >= 0; x = visited.nextSetBit(x + 1)) direction[x] = turn++ % 2 == 0 ? 1 : -1;
+        Integer[] order = new Integer[n];
+        int[] aisleKey = new int[n], bayKey = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            if (pos[i] == UNSLOTTED) { aisleKey[i] = Integer.MAX_VALUE; continue; }
+            int x = (int) (pos[i] >>> 32);
+            aisleKey[i] = x; bayKey[i] = direction[x] * (int) pos[i];
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> aisleKey[i]).thenComparingInt(i -> bayKey[i]).thenComparing(i -> lines.get(i).itemId));
+        List<PickLine> sorted = new ArrayList<>(n);
+        for (int i : order) sorted.add(lines.get(i));
+        for (int i = 0; i < n; i++) lines.set(i, sorted.get(i));
     }
-    public String getItemId() { return itemId; }
-    public String getName() { return name; }
-    public int getReorderPoint() { return reorderPoint; }
-    public int getReorderQuantity() { return reorderQuantity; }
-    public BigDecimal getUnitCost() { return BigDecimal.valueOf(new Random().nextDouble() * 100); } // Dummy cost
-    public String getPreferredSupplierId() { return "SUP-01"; }
-}
 
-class StorageLocation {
-    private String locationId; private int capacity, usedSpace; private List<String> storedItemIds = new ArrayList<>();
-    public StorageLocation(String id, int cap) { locationId = id; capacity = cap; }
-    public boolean hasAvailableSpace(int required) { return (usedSpace + required) <= capacity; }
-    public boolean addItem(String itemId, int quantity) {
-        if (hasAvailableSpace(quantity)) {
-            storedItemIds.add(itemId);
-            usedSpace += quantity;
-            return true;
+    // Depot -> each line's location in list order -> depot
+    long distance(List<PickLine> lines) {
+        long total = 0; int px = 0, py = 0;
+        for (PickLine line : lines) {
+            long pos = position(line.locationId);
+            int cx = pos == UNSLOTTED ? 0 : (int) (pos >>> 32) * AISLE_PITCH, cy = pos == UNSLOTTED ? 0 : (int) pos;
+            total += Math.abs(cx - px) + Math.abs(cy - py);
+            px = cx; py = cy;
         }
-        return false;
+        return total + px + py;
     }
-    public String getLocationId() { return locationId; }
-}
 
-class Warehouse {
-    private String warehouseId, name, address; private int totalCapacity, usedCapacity; private Map<String, StorageLocation> storageLocations = new HashMap<>();
-    public Warehouse(String id, String name, String addr, int cap) {
-        this.warehouseId = id; this.name = name; this.address = addr; this.totalCapacity = cap; this.usedCapacity = 0;
+    // S-shape trip over packed positions (sorted in place), for measuring without building PickLines; unslotted stops cost nothing
+    long tripDistance(long[] stops) {
+        Arrays.sort(stops);
+        long total = 0; int px = 0, py = 0, turn = 0, i = 0;
+        while (i < stops.length && stops[i] == UNSLOTTED) i++;
+        while (i < stops.length) {
+            int x = (int) (stops[i] >>> 32), j = i;
+            while (j < stops.length && (int) (stops[j] >>> 32) == x) j++;
+            boolean up = turn++ % 2 == 0;
+            for (int k = 0; k < j - i; k++) {
+                long pos = stops[up ? i + k : j - 1 - k];
+                int cx = x * AISLE_PITCH, cy = (int) pos;
+                total += Math.abs(cx - px) + Math.abs(cy - py);
+                px = cx; py = cy;
+            }
+            i = j;
+        }
+        return total + px + py;
     }
-    public String getWarehouseId() { return warehouseId; }
-    public int getUsedCapacity() { return usedCapacity; }
-    public int getTotalCapacity() { return totalCapacity; }
-    public void addStorageLocation(StorageLocation loc) { storageLocations.put(loc.getLocationId(), loc); }
-    public boolean hasAvailableSpace(int required) { return (usedCapacity + required) <= totalCapacity; }
-    public StorageLocation findAvailableLocation(int required) {
-        return storageLocations.values().stream().filter(l -> l.hasAvailableSpace(required)).findFirst().orElse(null);
+
+    long position(String location) { return location == null ? UNSLOTTED : positions.getOrDefault(location, UNSLOTTED); }
+    private static String aisle(String location) {
+        int dash = location == null ? -1 : location.lastIndexOf('-');
+        return dash <= 0 ? null : location.substring(0, dash);
+    }
+    private static int bay(String location) {
+        try { return Math.max(0, Integer.parseInt(location.substring(location.lastIndexOf('-') + 1))); } catch (NumberFormatException e) { return 0; }
     }
 }
 
-class InventoryRecord {
-    private String recordId, itemId, warehouseId, locationId; private int quantityOnHand; private LocalDateTime lastUpdated;
-    public InventoryRecord(String rid, String iid, String wid, String lid, int qty) {
-        recordId = rid; itemId = iid; warehouseId = wid; locationId = lid; quantityOnHand = qty; lastUpdated = LocalDateTime.now();
+// Groups orders into waves by priority, carrier and carrier cutoff (earliest cutoff first within a priority), merges each
+// wave's order lines per item into path-sorted batch pick lists of at most maxLines stops. Pure planning, no side effects.
+final class WavePlanner {
+    private final PickPath path;
+    private final Map<String, String> itemLocations;
+    private final int maxOrders, maxLines;
+
+    WavePlanner(Map<String, String> itemLocations, PickPath path, int maxOrders, int maxLines) {
+        this.itemLocations = itemLocations; this.path = path;
+        this.maxOrders = maxOrders; this.maxLines = maxLines;
     }
-    public String getRecordId() { return recordId; }
-    public String getItemId() { return itemId; }
-    public int getQuantityOnHand() { return quantityOnHand; }
-    public boolean needsReorder(int reorderPoint) { return quantityOnHand <= reorderPoint; }
-    public void markAsLowStock() { System.out.println("Item " + itemId + " marked as low stock."); }
-    public void updateMonitorTimestamp() { this.lastUpdated = LocalDateTime.now(); }
-}
 
-class StorageManager {
-    private Map<String, Warehouse> warehouses = new HashMap<>();
-    private Map<String, Item> itemCatalog = new HashMap<>();
-    public Map<String, Warehouse> getWarehouses() { return warehouses; }
-    public void addWarehouse(Warehouse wh) { warehouses.put(wh.getWarehouseId(), wh); }
-    public void addItem(Item item) { itemCatalog.put(item.getItemId(), item); }
-    public boolean processItemStorage(String itemId, String whId, int qty, String userId) {
-        Warehouse wh = warehouses.get(whId);
-        if (wh == null || !wh.hasAvailableSpace(qty)) return false;
-        StorageLocation loc = wh.findAvailableLocation(qty);
-        if (loc == null) {
-            loc = new StorageLocation("RANDOM-LOC-" + new Random().nextInt(100), qty + 50);
-            wh.addStorageLocation(loc);
+    static int priorityRank(String priority) {
+        if (priority == null) return 2;
+        switch (priority.toUpperCase(Locale.ROOT)) {
+            case "URGENT": return 0;
+            case "HIGH": case "EXPRESS": return 1;
+            case "LOW": return 3;
+            default: return 2;
         }
-        return loc.addItem(itemId, qty);
     }
-}
 
-class StockAlert {
-    private String alertId; private String itemId; private int currentQuantity;
-    public StockAlert(String itemId, int currentQuantity) {
-        this.alertId = "ALERT-" + System.currentTimeMillis(); this.itemId = itemId; this.currentQuantity = currentQuantity;
+    // Result of planning: waves with their batch pick lists (pick list IDs already filled in on the waves)
+    static final class Plan {
+        final List<Wave> waves = new ArrayList<>();
+        final List<PickList> pickLists = new ArrayList<>();
     }
-}
 
-class StockMonitor {
-    private Map<String, InventoryRecord> inventoryRecords = new HashMap<>();
-    private Map<String, Item> items = new HashMap<>();
-    public Map<String, InventoryRecord> getInventoryRecords() { return inventoryRecords; }
-    public void addInventoryRecord(InventoryRecord record) { inventoryRecords.put(record.getRecordId(), record); }
-    public void addItem(Item item) { items.put(item.getItemId(), item); }
-    public List<StockAlert> performStockMonitoring() {
-        List<StockAlert> alerts = new ArrayList<>();
-        inventoryRecords.values().forEach(record -> {
-            Item item = items.get(record.getItemId());
-            if (item != null && record.needsReorder(item.getReorderPoint())) {
-                alerts.add(new StockAlert(item.getItemId(), record.getQuantityOnHand()));
-                record.markAsLowStock();
-            }
-            record.updateMonitorTimestamp();
-        });
-        return alerts;
+    Plan plan(List<Order> orders) {
+        List<Order> sorted = new ArrayList<>(orders);
+        sorted.sort(Comparator.<Order>comparingInt(o -> priorityRank(o.getPriority()))
+                .thenComparing(Order::getShipBy, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(Order::getCarrierId, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(Order::getOrderId));
+        Plan plan = new Plan();
+        List<Order> group = new ArrayList<>();
+        for (Order order : sorted) {
+            if (!group.isEmpty() && (group.size() == maxOrders || !sameWave(group.get(0), order))) { planWave(group, plan); group = new ArrayList<>(); }
+            group.add(order);
+        }
+        if (!group.isEmpty()) planWave(group, plan);
+        return plan;
     }
-}
 
+    private static boolean sameWave(Order a, Order b) {
+        return priorityRank(a.getPriority()) == priorityRank(b.getPriority())
+                && Objects.equals(a.getCarrierId(), b.getCarrierId()) && Objects.equals(a.getShipBy(), b.getShipBy());
+    }
 
-// From Business Process 8: Reorder Stock
-class PurchaseRequisition {
-    private String requisitionId, itemId, itemName, createdBy, justification, status;
-    public PurchaseRequisition(String itemId, String itemName, int qty, String createdBy, String justification) {
-        this.requisitionId = "PR-" + System.currentTimeMillis();
-        this.itemId = itemId; this.itemName = itemName;
-        this.createdBy = createdBy; this.justification = justification; this.status = "PENDING";
+    private void planWave(List<Order> orders, Plan plan) {
+        Order first = orders.get(0);
+        Wave wave = new Wave(IdGenerator.next("WAVE"), first.getPriority(), first.getCarrierId(), first.getShipBy());
+        Map<String, PickLine> byItem = new LinkedHashMap<>();
+        for (Order order : orders) {
+            wave.orderIds.add(order.getOrderId());
+            List<OrderItem> items = order.getItems();
+            long[] stops = new long[items.size()];
+            for (int i = 0; i < stops.length; i++) {
+                OrderItem item = items.get(i);
+                String loc = itemLocations.get(item.getItemId());
+                byItem.computeIfAbsent(item.getItemId(), id -> new PickLine(id, loc)).allocate(order.getOrderId(), item.getQuantity());
+                stops[i] = path.position(loc);
+            }
+            wave.singleOrderDistance += path.tripDistance(stops);
+        }
+        List<PickLine> lines = new ArrayList<>(byItem.values());
+        path.sort(lines);
+        for (int from = 0; from < lines.size(); from += maxLines) {
+            // Consecutive stretches of the wave's path, re-sorted so every picker starts their own S from the depot
+            List<PickLine> chunk = new ArrayList<>(lines.subList(from, Math.min(from + maxLines, lines.size())));
+            path.sort(chunk);
+            Set<String> chunkOrders = new LinkedHashSet<>();
+            chunk.forEach(l -> chunkOrders.addAll(l.allocations.keySet()));
+            PickList pl = new PickList(IdGenerator.next("PL"), wave.waveId, wave.priority, new ArrayList<>(chunkOrders), chunk);
+            chunkOrders.forEach(o -> wave.pickListsByOrder.computeIfAbsent(o, k -> new ArrayList<>()).add(pl.pickListId));
+            wave.pickListIds.add(pl.pickListId);
+            wave.plannedDistance += path.distance(chunk);
+            plan.pickLists.add(pl);
+        }
+        plan.waves.add(wave);
+    }
+
+    // Lines for a single order's own pick list, in walking order
+    List<PickLine> linesFor(Order order) {
+        Map<String, PickLine> byItem = new LinkedHashMap<>();
+        for (OrderItem item : order.getItems()) {
+            byItem.computeIfAbsent(item.getItemId(), id -> new PickLine(id, itemLocations.get(id))).allocate(order.getOrderId(), item.getQuantity());
+        }
+        List<PickLine> lines = new ArrayList<>(byItem.values());
+        path.sort(lines);
+        return lines;
     }
-    public String getRequisitionId() { return requisitionId; }
-    public String getItemId() { return itemId; }
-    public String getStatus() { return status; }
-    public void approve(String approverName, String supplierId) { this.status = "APPROVED"; }
-    public void reject(String reason) { this.status = "REJECTED"; }
 }
 
-class Supplier_BP8 {
-    private String supplierId, companyName, contactPerson, email, phone, address;
-    public Supplier_BP8(String id, String name, String contact, String email, String phone, String addr) {
-        this.supplierId = id; this.companyName = name; this.contactPerson = contact; this.email = email; this.phone = phone; this.address = addr;
+enum PickerStatus { IDLE, BUSY }
+
+// Scheduling state of one picker; mutated only under the PickScheduler lock
+class PickerState implements JsonWritable {
+    final String pickerId;
+    volatile PickerStatus status = PickerStatus.IDLE;
+    volatile String zone, currentPickListId; // zone: aisle of the first stop of the current (or last) list
+    volatile int queuedLines;
+    volatile long completedLists, completedLines;
+    PickerState(String pickerId) { this.pickerId = pickerId; }
+    public String getPickerId() { return pickerId; }
+    public PickerStatus getStatus() { return status; }
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject().name("pickerId").value(pickerId).name("status").value(status.name()).name("zone").value(zone);
+        out.name("currentPickListId").value(currentPickListId).name("queuedLines").value(queuedLines);
+        out.name("completedLists").value(completedLists).name("completedLines").value(completedLines).endObject();
     }
-    public String getSupplierId() { return supplierId; }
-    public String getCompanyName() { return companyName; }
-    public double getPerformanceRating() { return 4.5; }
-    public boolean isActive() { return true; }
-    public boolean meetsMinimumOrder(BigDecimal val) { return true; }
-    public int getDeliveryLeadTime() { return 7; }
-    public String getPaymentTerms() { return "Net 30"; }
 }
 
-class ProcurementManager_BP8 {
-    private Map<String, Item> items = new HashMap<>();
-    private Map<String, Supplier_BP8> suppliers = new HashMap<>();
-    private Map<String, PurchaseRequisition> purchaseRequisitions = new HashMap<>();
-    private Map<String, PurchaseOrder> purchaseOrders = new HashMap<>();
-    private BigDecimal approvalLimit;
+// Matches PENDING pick lists to idle pickers. Lists queue by order priority, then age (pick list IDs are time-sortable);
+// idle pickers are ordered by lines picked so far, so the least-loaded picker gets the next list. Both are skip lists, so
+// each match is O(log n). Claims take one lock so a list and a picker always move together; metrics read without it.
+final class PickScheduler {
+    private static final Comparator<PickList> QUEUE_ORDER = Comparator
+            .<PickList>comparingInt(pl -> WavePlanner.priorityRank(pl.getPriority())).thenComparing(PickList::getPickListId);
+    private static final Comparator<PickerState> IDLE_ORDER = Comparator
+            .<PickerState>comparingLong(p -> p.completedLines).thenComparing(PickerState::getPickerId);
+
+    private final ConcurrentSkipListSet<PickList> queue = new ConcurrentSkipListSet<>(QUEUE_ORDER);
+    private final ConcurrentSkipListSet<PickerState> idle = new ConcurrentSkipListSet<>(IDLE_ORDER);
+    private final Map<String, PickerState> pickers = new ConcurrentHashMap<>();
+    private final Map<String, Long> queuedAt = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicInteger queueDepth = new AtomicInteger(), busyPickers = new AtomicInteger();
+    private final LongAdder assignments = new LongAdder(), totalWaitMillis = new LongAdder();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+
+    void addPicker(String pickerId) {
+        lock.lock();
+        try {
+            if (pickers.containsKey(pickerId)) return;
+            PickerState picker = new PickerState(pickerId);
+            pickers.put(pickerId, picker);
+            idle.add(picker);
+        } finally { lock.unlock(); }
+    }
 
-    public ProcurementManager_BP8(String id, BigDecimal limit) { this.approvalLimit = limit; }
-    public Map<String, PurchaseRequisition> getPurchaseRequisitions() { return purchaseRequisitions; }
-    public Map<String, PurchaseOrder> getPurchaseOrders() { return purchaseOrders; }
-    public void addItem(Item item) { items.put(item.getItemId(), item); }
-    public void addSupplier(Supplier_BP8 supplier) { suppliers.put(supplier.getSupplierId(), supplier); }
+    boolean hasPicker(String pickerId) { return pickers.containsKey(pickerId); }
 
-    public PurchaseRequisition createPurchaseRequisition(String itemId, int currentStock, String createdBy) {
-        Item item = items.get(itemId);
-        if (item == null || currentStock > item.getReorderPoint()) return null;
-        String justification = "Stock level (" + currentStock + ") is below reorder point (" + item.getReorderPoint() + ")";
-        PurchaseRequisition req = new PurchaseRequisition(item.getItemId(), item.getName(), item.getReorderQuantity(), createdBy, justification);
-        purchaseRequisitions.put(req.getRequisitionId(), req);
-        return req;
+    void enqueue(PickList pl) {
+        lock.lock();
+        try {
+            if (!queue.add(pl)) return;
+            queueDepth.incrementAndGet();
+            queuedAt.putIfAbsent(pl.getPickListId(), System.currentTimeMillis());
+        } finally { lock.unlock(); }
     }
 
-    public boolean approveRequisition(String reqId, String approverName) {
-        PurchaseRequisition req = purchaseRequisitions.get(reqId);
-        if (req == null) return false;
-        Item item = items.get(req.getItemId());
-        String supplierId = findBestSupplier(item);
-        if (supplierId == null) return false;
-        req.approve(approverName, supplierId);
+    // Manual assignment (API 14): the picker must be idle and the list still PENDING
+    boolean assign(PickList pl, String pickerId) {
+        lock.lock();
+        try {
+            PickerState picker = pickers.get(pickerId);
+            if (picker == null || picker.status != PickerStatus.IDLE) return false;
+            return claim(pl, picker);
+        } finally { lock.unlock(); }
+    }
+
+    // Auto-assignment: hands out up to max lists, highest priority and oldest first, to the least-loaded idle pickers
+    List<PickList> assignPending(int max) {
+        List<PickList> assigned = new ArrayList<>();
+        lock.lock();
+        try {
+            while (assigned.size() < max && !queue.isEmpty() && !idle.isEmpty()) {
+                PickList pl = queue.first();
+                if (claim(pl, idle.first())) assigned.add(pl);
+                else if (queue.remove(pl)) { queueDepth.decrementAndGet(); queuedAt.remove(pl.getPickListId()); } // no longer PENDING
+            }
+        } finally { lock.unlock(); }
+        return assigned;
+    }
+
+    private boolean claim(PickList pl, PickerState picker) {
+        if (!pl.compareAndSetStatus(PickListStatus.PENDING, PickListStatus.ASSIGNED)) return false;
+        if (queue.remove(pl)) queueDepth.decrementAndGet();
+        Long since = queuedAt.remove(pl.getPickListId());
+        if (since != null) {
+            long wait = System.currentTimeMillis() - since;
+            totalWaitMillis.add(wait);
+            maxWaitMillis.accumulateAndGet(wait, Math::max);
+        }
+        assignments.increment();
+        idle.remove(picker);
+        pl.assignedTo = picker.pickerId;
+        picker.status = PickerStatus.BUSY;
+        picker.currentPickListId = pl.getPickListId();
+        picker.queuedLines = pl.lines == null ? 0 : pl.lines.size();
+        if (pl.lines != null && !pl.lines.isEmpty()) picker.zone = zoneOf(pl.lines.get(0).getLocationId());
+        busyPickers.incrementAndGet();
         return true;
     }
 
-    public List<PurchaseRequisition> getPendingRequisitions() {
-        return purchaseRequisitions.values().stream()
-                .filter(r -> "PENDING".equals(r.getStatus()))
-                .collect(Collectors.toList());
+    // The list is done (or packed without being assigned): drop it from the queue and free its picker
+    void release(PickList pl) {
+        lock.lock();
+        try {
+            if (queue.remove(pl)) { queueDepth.decrementAndGet(); queuedAt.remove(pl.getPickListId()); }
+            PickerState picker = pl.getAssignedTo() == null ? null : pickers.get(pl.getAssignedTo());
+            if (picker == null || picker.status != PickerStatus.BUSY || !pl.getPickListId().equals(picker.currentPickListId)) return;
+            picker.completedLists++;
+            picker.completedLines += picker.queuedLines;
+            picker.queuedLines = 0;
+            picker.currentPickListId = null;
+            picker.status = PickerStatus.IDLE;
+            idle.add(picker);
+            busyPickers.decrementAndGet();
+        } finally { lock.unlock(); }
     }
 
-    public PurchaseOrder generatePurchaseOrder(String reqId, String deliveryAddress) {
-        PurchaseRequisition req = purchaseRequisitions.get(reqId);
-        if (req == null || !"APPROVED".equals(req.getStatus())) return null;
-        Item item = items.get(req.getItemId());
-        Supplier_BP8 supplier = suppliers.get(item.getPreferredSupplierId());
+    // Replay: an ASSIGNED list makes its picker busy again, a PENDING list goes back on the queue
+    void restore(PickList pl) {
+        if (pl.getStatus() == PickListStatus.PENDING) { enqueue(pl); return; }
+        if (pl.getStatus() != PickListStatus.ASSIGNED || pl.getAssignedTo() == null) return;
+        lock.lock();
+        try {
+            PickerState picker = pickers.get(pl.getAssignedTo());
+            if (picker == null || picker.status != PickerStatus.IDLE) return;
+            idle.remove(picker);
+            picker.status = PickerStatus.BUSY;
+            picker.currentPickListId = pl.getPickListId();
+            picker.queuedLines = pl.lines == null ? 0 : pl.lines.size();
+            busyPickers.incrementAndGet();
+        } finally { lock.unlock(); }
+    }
 
-        PurchaseOrder po = new PurchaseOrder(reqId, supplier.getSupplierId(), supplier.getCompanyName(), deliveryAddress);
-        po.addOrderItem(item.getItemId(), item.getName(), item.getReorderQuantity(), item.getUnitCost());
-        purchaseOrders.put(po.getPurchaseOrderId(), po);
-        return po;
+    Collection<PickerState> getPickers() { return Collections.unmodifiableCollection(pickers.values()); }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long count = assignments.sum();
+        PickList oldest = queue.isEmpty() ? null : queue.first();
+        Long oldestSince = oldest == null ? null : queuedAt.get(oldest.getPickListId());
+        stats.put("queueDepth", queueDepth.get());
+        stats.put("headOfQueueWaitMillis", oldestSince == null ? 0 : System.currentTimeMillis() - oldestSince);
+        stats.put("idlePickers", pickers.size() - busyPickers.get());
+        stats.put("busyPickers", busyPickers.get());
+        stats.put("assignments", count);
+        stats.put("avgWaitMillis", count == 0 ? 0 : totalWaitMillis.sum() / count);
+        stats.put("maxWaitMillis", maxWaitMillis.get());
+        return stats;
     }
 
-    private String findBestSupplier(Item item) {
-        return suppliers.values().stream()
-                .filter(Supplier_BP8::isActive)
-                .filter(s -> s.meetsMinimumOrder(item.getUnitCost().multiply(BigDecimal.valueOf(item.getReorderQuantity()))))
-                .max(Comparator.comparing(Supplier_BP8::getPerformanceRating))
-                .map(Supplier_BP8::getSupplierId)
-                .orElse(null);
+    private static String zoneOf(String location) {
+        int dash = location == null ? -1 : location.lastIndexOf('-');
+        return dash <= 0 ? null : location.substring(0, dash);
     }
 }
 
-
-// From BP9-12 (Picking, Packing, Labeling, Dispatch) – simplified implementation
-class PickList {
-    String pickListId; String orderId; String status;
-    public PickList(String id, String oid) { this.pickListId = id; this.orderId = oid; this.status = "PENDING"; }
-    public String getOrderId() { return orderId; }
-    public void markCompleted() { this.status = "COMPLETED"; }
+// The one copy of every order. Picking and packing both work on it, so a status change made by either is seen (and
+// indexed) by the other.
+final class OrderRepository implements Journaled {
+    private final Map<String, Order> orders = new ConcurrentHashMap<>();
+    private final StatusIndex<OrderStatus, Order> byStatus = new StatusIndex<>(OrderStatus.class, Order::getOrderStatus);
+    private MutationLog journal = MutationLog.NONE;
+
+    public void setJournal(MutationLog journal) { this.journal = journal; }
+    public Order get(String orderId) { return orders.get(orderId); }
+    public Map<String, Order> getOrders() { return Collections.unmodifiableMap(orders); }
+    public NavigableMap<String, Order> getByStatus(OrderStatus status) { return byStatus.get(status); }
+    // Setup data and journal replay: the last write wins
+    public void put(Order o) { orders.put(o.getOrderId(), o); byStatus.update(o.getOrderId(), o); }
+    // Call after moving an order to another status
+    void statusChanged(Order o) { byStatus.update(o.getOrderId(), o); }
+
+    // Adds new orders and journals them; orders whose ID is already taken are left out, their positions in the batch returned
+    BitSet addAll(List<Order> batch) {
+        BitSet duplicates = new BitSet();
+        for (int i = 0; i < batch.size(); i++) {
+            Order o = batch.get(i);
+            if (orders.putIfAbsent(o.getOrderId(), o) != null) { duplicates.set(i); continue; }
+            byStatus.update(o.getOrderId(), o);
+            journal.record("order", o.getOrderId(), o);
+        }
+        return duplicates;
+    }
 }
 
-class PickingManager {
-    private Map<String, Order> orders = new HashMap<>();
-    private Map<String, Customer> customers = new HashMap<>();
-    private Map<String, String> itemLocations = new HashMap<>();
-    private List<String> availablePickers = new ArrayList<>();
-    private Map<String, PickList> pickLists = new HashMap<>();
+// Streams orders from a JSON array or from NDJSON (one order object per line) into the repository, validating each
+// one and committing every BATCH_SIZE accepted orders, so the body is never held in memory. An invalid order is
+// rejected with its reason and the rest carry on; malformed JSON ends the run, keeping what was read before it.
+final class OrderIngestion implements JsonWritable {
+    static final int BATCH_SIZE = Integer.getInteger("warehouse.ingest.batchSize", 1000);
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final Set<String> PRIORITIES = Set.of("URGENT", "HIGH", "EXPRESS", "NORMAL", "LOW");
+
+    private final OrderRepository repo;
+    private final List<Order> batch = new ArrayList<>();
+    private final int[] batchIndexes = new int[BATCH_SIZE]; // position of each batched order in the input
+    private final List<Rejection> errors = new ArrayList<>();
+    private int read, accepted, rejected, batches;
+    private String failure;
+
+    OrderIngestion(OrderRepository repo) { this.repo = repo; }
+
+    OrderIngestion run(JsonReader in) {
+        in.setLenient(true); // NDJSON is a run of top-level values
+        try {
+            if (in.peek() == JsonToken.BEGIN_ARRAY) {
+                in.beginArray();
+                while (in.hasNext()) accept(in);
+                in.endArray();
+            } else {
+                while (in.peek() != JsonToken.END_DOCUMENT) accept(in);
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            failure = "Malformed JSON: " + e.getMessage();
+        }
+        commit();
+        return this;
+    }
+
+    boolean failed() { return failure != null; }
+    public int getAccepted() { return accepted; }
+    public int getRejected() { return rejected; }
+
+    private void accept(JsonReader in) throws IOException {
+        int index = read++;
+        String orderId = null, customerId = null, priority = null, carrierId = null, shipBy = null, error = null;
+        List<OrderItem> items = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "orderId": orderId = in.nextString(); break;
+                case "customerId": customerId = in.nextString(); break;
+                case "priority": priority = in.nextString(); break;
+                case "carrierId": carrierId = in.nextString(); break;
+                case "shipBy": shipBy = in.nextString(); break;
+                case "items":
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        OrderItem item = readItem(in);
+                        if (item.getItemId() == null) error = "Item " + items.size() + " has no itemId";
+                        else if (item.getQuantity() <= 0) error = "Item " + item.getItemId() + " needs a positive quantity";
+                        items.add(item);
+                    }
+                    in.endArray();
+                    break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+
+        priority = priority == null ? "NORMAL" : priority.toUpperCase(Locale.ROOT);
+        LocalDateTime cutoff = null;
+        if (customerId == null || customerId.isBlank()) error = "customerId is required";
+        else if (items.isEmpty()) error = "An order needs at least one item";
+        else if (!PRIORITIES.contains(priority)) error = "Unknown priority " + priority;
+        else if (shipBy != null) {
+            try { cutoff = LocalDateTime.parse(shipBy); } catch (DateTimeParseException e) { error = "shipBy is not an ISO date-time: " + shipBy; }
+        }
+        if (error != null) { reject(index, orderId, error); return; }
+
+        Order order = new Order(orderId == null ? IdGenerator.next("ORD") : orderId, customerId, priority, items);
+        if (carrierId != null || cutoff != null) order.setCarrierCutoff(carrierId, cutoff);
+        order.setProcessingStatus(); // ready for picking
+        batchIndexes[batch.size()] = index;
+        batch.add(order);
+        if (batch.size() == BATCH_SIZE) commit();
+    }
+
+    private static OrderItem readItem(JsonReader in) throws IOException {
+        String itemId = null, itemName = null; int quantity = 0; double unitPrice = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "itemId": itemId = in.nextString(); break;
+                case "itemName": case "name": itemName = in.nextString(); break;
+                case "quantity": case "qty": quantity = in.nextInt(); break;
+                case "unitPrice": case "price": unitPrice = in.nextDouble(); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return new OrderItem(itemId, itemName, quantity, unitPrice);
+    }
+
+    private void commit() {
+        if (batch.isEmpty()) return;
+        BitSet duplicates = repo.addAll(batch);
+        accepted += batch.size() - duplicates.cardinality();
+        batches++;
+        for (int i = duplicates.nextSetBit(0); i >= 0; i = duplicates.nextSetBit(i + 1)) {
+            reject(batchIndexes[i], batch.get(i).getOrderId(), "Duplicate orderId");
+        }
+        batch.clear();
+    }
+
+    private void reject(int index, String orderId, String reason) {
+        rejected++;
+        if (errors.size() < MAX_REPORTED_ERRORS) errors.add(new Rejection(index, orderId, reason));
+    }
 
-    public void addOrder(Order o) { orders.put(o.getOrderId(), o); }
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject().name("accepted").value(accepted).name("rejected").value(rejected).name("batches").value(batches);
+        out.name("errors").beginArray();
+        for (Rejection r : errors) {
+            out.beginObject().name("index").value(r.index).name("orderId").value(r.orderId).name("reason").value(r.reason).endObject();
+        }
+        out.endArray().name("error").value(failure).endObject();
+    }
+
+    private static final class Rejection {
+        final int index; final String orderId, reason;
+        Rejection(int index, String orderId, String reason) { this.index = index; this.orderId = orderId; this.reason = reason; }
+    }
+}
+
+class PickingManager implements Journaled {
+    private final OrderRepository orders;
+    private Map<String, Customer> customers = new ConcurrentHashMap<>();
+    private Map<String, String> itemLocations = new ConcurrentHashMap<>();
+    private NavigableSet<String> availablePickers = new ConcurrentSkipListSet<>();
+    private Map<String, PickList> pickLists = new ConcurrentHashMap<>();
+    private final StatusIndex<PickListStatus, PickList> pickListsByStatus = new StatusIndex<>(PickListStatus.class, PickList::getStatus);
+    private Map<String, Wave> waves = new ConcurrentHashMap<>();
+    private final ReentrantLock planningLock = new ReentrantLock();
+    private volatile PickPath pickPath; // rebuilt lazily after itemLocations change
+    private final PickScheduler scheduler = new PickScheduler();
+    // With -Dwarehouse.picking.autoAssign=true new lists and freed pickers are matched right away; otherwise on request
+    private final boolean autoAssign = Boolean.getBoolean("warehouse.picking.autoAssign");
+    private static final LongAdder SHORT_PICKS = Metrics.DEFAULT.counter("warehouse_short_picks_total", "Pick lines closed below their quantity");
+    private MutationLog journal = MutationLog.NONE;
+
+    public PickingManager() { this(new OrderRepository()); }
+    public PickingManager(OrderRepository orders) { this.orders = orders; }
+    public void setJournal(MutationLog journal) { this.journal = journal; }
+    public Map<String, Order> getOrders() { return orders.getOrders(); }
+    void restorePickList(PickList pl) { pickLists.put(pl.pickListId, pl); pickListsByStatus.update(pl.pickListId, pl); scheduler.restore(pl); }
+    void restoreWave(Wave wave) { waves.put(wave.getWaveId(), wave); }
+    public Map<String, Wave> getWaves() { return Collections.unmodifiableMap(waves); }
+    public void addOrder(Order o) { orders.put(o); }
+    public NavigableMap<String, Order> getOrdersByStatus(OrderStatus status) { return orders.getByStatus(status); }
+    public NavigableMap<String, PickList> getPickListsByStatus(PickListStatus status) { return pickListsByStatus.get(status); }
     public void addCustomer(Customer c) { customers.put(c.getCustomerId(), c); }
-    public void addItemLocation(String iid, String loc) { itemLocations.put(iid, loc); }
-    public void addPicker(String pid) { availablePickers.add(pid); }
-    public List<String> getAvailablePickers() { return availablePickers; }
+    public void addItemLocation(String iid, String loc) { itemLocations.put(iid, loc); pickPath = null; }
+    private WavePlanner planner(int maxOrders, int maxLines) {
+        PickPath path = pickPath;
+        if (path == null) pickPath = path = new PickPath(itemLocations.values());
+        return new WavePlanner(itemLocations, path, maxOrders, maxLines);
+    }
+    public void addPicker(String pid) { availablePickers.add(pid); scheduler.addPicker(pid); if (autoAssign) autoAssignPickLists(Integer.MAX_VALUE); }
+    public Collection<PickerState> getPickerStates() { return scheduler.getPickers(); }
+    public Map<String, Object> getSchedulerStats() { return scheduler.getStats(); }
+    public Collection<String> getAvailablePickers() { return Collections.unmodifiableSet(availablePickers); }
+    public Page<String> getAvailablePickers(String cursor, int limit) { return Page.of(availablePickers, cursor, limit); }
     public Map<String, PickList> getPickLists() { return pickLists; }
 
     public PickList generatePickList(String orderId) {
         Order order = orders.get(orderId);
-        if (order == null || !"PROCESSING".equals(order.getOrderStatus())) return null;
-        PickList pl = new PickList("PL-" + System.currentTimeMillis(), orderId);
+        // Claiming the order first guarantees one pick list per order even under concurrent requests
+        if (order == null || !order.compareAndSetStatus(OrderStatus.PROCESSING, OrderStatus.PICKING)) return null;
+        orders.statusChanged(order);
+        PickList pl = new PickList(IdGenerator.next("PL"), orderId);
+        pl.lines = planner(1, Integer.MAX_VALUE).linesFor(order);
+        pl.priority = order.getPriority();
         pickLists.put(pl.pickListId, pl);
-        order.updateOrderStatus("PICKING");
+        pickListsByStatus.update(pl.pickListId, pl);
+        journal.record("order", orderId, order);
+        pl.journal(journal);
+        scheduler.enqueue(pl);
+        if (autoAssign) autoAssignPickLists(Integer.MAX_VALUE);
         return pl;
     }
 
+    // Claims every PROCESSING order (PROCESSING -> PICKING, so orders already on a single pick list are skipped) and
+    // releases them as waves of batch pick lists. One planning run at a time; claiming keeps it safe against API 13.
+    public List<Wave> planWaves(int maxOrdersPerWave, int maxLinesPerPickList) {
+        WavePlanner.Plan plan;
+        planningLock.lock();
+        try {
+            List<Order> claimed = new ArrayList<>();
+            for (Order order : orders.getByStatus(OrderStatus.PROCESSING).values()) {
+                if (order.compareAndSetStatus(OrderStatus.PROCESSING, OrderStatus.PICKING)) claimed.add(order);
+            }
+            claimed.forEach(orders::statusChanged);
+            plan = planner(maxOrdersPerWave, maxLinesPerPickList).plan(claimed);
+            plan.pickLists.forEach(pl -> {
+                pickLists.put(pl.pickListId, pl);
+                pickListsByStatus.update(pl.pickListId, pl);
+                pl.journal(journal);
+                scheduler.enqueue(pl);
+            });
+            plan.waves.forEach(w -> { waves.put(w.getWaveId(), w); journal.record("wave", w.getWaveId(), w); });
+            claimed.forEach(o -> journal.record("order", o.getOrderId(), o));
+        } finally {
+            planningLock.unlock();
+        }
+        if (autoAssign) autoAssignPickLists(Integer.MAX_VALUE);
+        return plan.waves;
+    }
+
+    // Assigns queued PENDING lists to idle pickers, at most max of them
+    public List<PickList> autoAssignPickLists(int max) {
+        List<PickList> assigned = scheduler.assignPending(max);
+        assigned.forEach(pl -> { pickListsByStatus.update(pl.pickListId, pl); pl.journal(journal); });
+        return assigned;
+    }
+
+    // Orders on a completed batch list whose every pick list in the wave is now complete; each is handed out once (PICKING -> PICKED)
+    public List<String> claimOrdersReadyToPack(PickList pl) {
+        Wave wave = pl.getWaveId() == null ? null : waves.get(pl.getWaveId());
+        if (wave == null) return List.of();
+        List<String> ready = new ArrayList<>();
+        for (String orderId : pl.getOrderIds()) {
+            boolean picked = wave.getPickListIdsForOrder(orderId).stream()
+                    .map(pickLists::get).allMatch(l -> l != null && l.getStatus() == PickListStatus.COMPLETED);
+            Order order = orders.get(orderId);
+            if (picked && order != null && order.compareAndSetStatus(OrderStatus.PICKING, OrderStatus.PICKED)) {
+                orders.statusChanged(order);
+                journal.record("order", orderId, order);
+                ready.add(orderId);
+            }
+        }
+        return ready;
+    }
+
+    // The picker must be idle: a picker works one list at a time
     public boolean assignPickList(String pickListId, String pickerId) {
         PickList pl = pickLists.get(pickListId);
-        if (pl == null || !"PENDING".equals(pl.status) || !availablePickers.contains(pickerId)) return false;
-        pl.status = "ASSIGNED";
+        if (pl == null || !scheduler.assign(pl, pickerId)) return false;
+        pickListsByStatus.update(pickListId, pl);
+        pl.journal(journal);
+        return true;
+    }
+
+    // Only an ASSIGNED list can be completed, and only once
+    public PickList completePickList(String pickListId) {
+        PickList pl = pickLists.get(pickListId);
+        return pl != null && complete(pl) ? pl : null;
+    }
+
+    // API 16: closes an ASSIGNED list, short-picking whatever is still open, or takes one its last scan completed
+    public PickList claimForPacking(String pickListId) {
+        PickList pl = pickLists.get(pickListId);
+        if (pl == null) return null;
+        if (pl.getStatus() == PickListStatus.ASSIGNED) complete(pl);
+        if (!pl.markPacked()) return null;
+        pl.journal(journal);
+        return pl;
+    }
+
+    // Lines closed below their quantity are short picks, reported one by one
+    private boolean complete(PickList pl) {
+        if (!pl.markCompleted()) return false;
+        int[] picked = pl.pickedSnapshot();
+        for (int i = 0; i < picked.length; i++) {
+            PickLine line = pl.lines.get(i);
+            if (picked[i] >= line.getQuantity()) continue;
+            SHORT_PICKS.increment();
+            EventLog.warn("pick.short").with("pickListId", pl.getPickListId()).with("itemId", line.getItemId())
+                    .with("locationId", line.getLocationId()).with("required", line.getQuantity()).with("picked", picked[i]).publish();
+        }
+        pickListsByStatus.update(pl.getPickListId(), pl);
+        pl.journal(journal);
+        scheduler.release(pl);
+        if (autoAssign) autoAssignPickLists(Integer.MAX_VALUE);
         return true;
     }
 
     public boolean recordPickedItem(String listId, String itemId, int qty, String notes) {
+        return recordPickedItems(listId, new String[]{itemId}, new int[]{qty}, notes)[0];
+    }
+
+    // A run of scans against one list, looked up once. Each must name an item on the list and fit what is still open
+    // for it; the scan that satisfies the last line completes the list.
+    public boolean[] recordPickedItems(String listId, String[] itemIds, int[] quantities, String notes) {
+        boolean[] recorded = new boolean[itemIds.length];
         PickList pl = pickLists.get(listId);
-        if (pl == null || !"ASSIGNED".equals(pl.status)) return false;
-        System.out.println("Item " + itemId + " picked for list " + listId + " qty=" + qty);
-        return true;
+        if (pl == null) return recorded;
+        boolean changed = false;
+        for (int i = 0; i < itemIds.length; i++) {
+            PickProgress.Outcome outcome = pl.confirm(itemIds[i], quantities[i]);
+            if (outcome == PickProgress.Outcome.NOT_ASSIGNED) break;
+            recorded[i] = outcome == PickProgress.Outcome.PICKED;
+            changed |= recorded[i];
+            if (recorded[i]) EventLog.info("pick.recorded").with("itemId", itemIds[i]).with("pickListId", listId).with("qty", quantities[i]).publish();
+            else EventLog.warn("pick.rejected").with("itemId", itemIds[i]).with("pickListId", listId).with("qty", quantities[i]).with("reason", outcome.name()).publish();
+        }
+        if (!changed) return recorded;
+        if (pl.isFullyPicked() && complete(pl)) EventLog.info("pickList.completed").with("pickListId", listId).publish();
+        else pl.journal(journal);
+        return recorded;
     }
 }
 
-class PackingManager {
-    private Map<String, Order> orders = new HashMap<>();
-    private Map<String, Package> packages = new HashMap<>();
-    public void addOrder(Order o) { orders.put(o.getOrderId(), o); }
+class PackingManager implements Journaled {
+    private final OrderRepository orders;
+    private Map<String, Package> packages = new ConcurrentHashMap<>();
+    private final StatusIndex<PackageStatus, Package> packagesByStatus = new StatusIndex<>(PackageStatus.class, Package::getStatus);
+    private MutationLog journal = MutationLog.NONE;
+    public PackingManager() { this(new OrderRepository()); }
+    public PackingManager(OrderRepository orders) { this.orders = orders; }
+    public void addOrder(Order o) { orders.put(o); }
+    public void setJournal(MutationLog journal) { this.journal = journal; }
     public Map<String, Package> getPackages() { return packages; }
+    public NavigableMap<String, Package> getPackagesByStatus(PackageStatus status) { return packagesByStatus.get(status); }
+    void restorePackage(Package p) { packages.put(p.getPackageId(), p); packagesByStatus.update(p.getPackageId(), p); }
+    // Dispatch moves packages on to MANIFESTED
+    void packageStatusChanged(Package p) { packagesByStatus.update(p.getPackageId(), p); }
+
+    // One package per order: the order's move to PACKING is claimed first, so a repeated call gets null
     public Package createPackage(String orderId, String pickListId, String packageType) {
         Order o = orders.get(orderId);
-        if (o == null) return null;
-        Package pkg = new Package("PKG-" + System.currentTimeMillis(), orderId, pickListId, packageType);
+        if (o == null || !o.updateOrderStatus(OrderStatus.PACKING)) return null;
+        orders.statusChanged(o);
+        Package pkg = new Package(IdGenerator.next("PKG"), orderId, pickListId, packageType);
         packages.put(pkg.getPackageId(), pkg);
-        o.updateOrderStatus("PACKING");
+        packagesByStatus.update(pkg.getPackageId(), pkg);
+        journal.record("order", orderId, o);
+        journal.record("package", pkg.getPackageId(), pkg);
         return pkg;
     }
+
+    public boolean verifyPackage(String packageId, String notes) {
+        Package pkg = packages.get(packageId);
+        if (pkg == null || !pkg.verifyPackage(notes)) return false;
+        packagesByStatus.update(packageId, pkg);
+        journal.record("package", packageId, pkg);
+        return true;
+    }
+
+    public boolean markLabeled(String packageId, String carrierId) {
+        Package pkg = packages.get(packageId);
+        if (pkg == null || !pkg.markLabeled(carrierId)) return false;
+        packagesByStatus.update(packageId, pkg);
+        journal.record("package", packageId, pkg);
+        return true;
+    }
 }
 
-class LabelManager {
-    private Map<String, Customer> customers = new HashMap<>();
-    private Map<String, Carrier> carriers = new HashMap<>();
-    private Map<String, ShippingLabel> labels = new HashMap<>();
+class LabelManager implements Journaled {
+    private Map<String, Customer> customers = new ConcurrentHashMap<>();
+    private Map<String, Carrier> carriers = new ConcurrentHashMap<>();
+    private Map<String, ShippingLabel> labels = new ConcurrentHashMap<>();
     private Address warehouseAddress;
+    private MutationLog journal = MutationLog.NONE;
 
+    public void setJournal(MutationLog journal) { this.journal = journal; }
+    void restoreLabel(ShippingLabel label) { labels.put(label.getLabelId(), label); }
     public void addCustomer(Customer c) { customers.put(c.getCustomerId(), c); }
     public void addCarrier(Carrier c) { carriers.put(c.getCarrierId(), c); }
     public void setWarehouseAddress(Address a) { this.warehouseAddress = a; }
     public Map<String, ShippingLabel> getShippingLabels() { return labels; }
-    public ShippingLabel generateShippingLabel(String packageId, String carrierId, String serviceLevel) {
-        ShippingLabel label = new ShippingLabel("LBL-" + System.currentTimeMillis(), packageId, "ORD-1001", carrierId);
+    public ShippingLabel generateShippingLabel(Package pkg, String carrierId, String serviceLevel) {
+        ShippingLabel label = new ShippingLabel(IdGenerator.next("LBL"), pkg.getPackageId(), pkg.getOrderId(), carrierId);
         labels.put(label.getLabelId(), label);
+        journal.record("label", label.getLabelId(), label);
         return label;
     }
 }
 
-class DispatchManager {
-    private Map<String, Package> packages = new HashMap<>();
-    private Map<String, DispatchManifest> manifests = new HashMap<>();
-    private Map<String, Carrier> carriers = new HashMap<>();
+// Dispatch keeps only its working set hot: per carrier, the LABELED packages waiting for a manifest, in labeling order.
+// Building a manifest swaps the carrier's queue out under the carrier lock, so it costs O(k) in the packages it ships
+// and no package can land on two manifests. Manifested packages leave the working set; only a package -> manifest index
+// stays behind (the Package itself lives on in PackingManager and the journal).
+class DispatchManager implements Journaled {
+    private static final LongAdder MANIFESTS_BUILT = Metrics.DEFAULT.counter("warehouse_manifests_built_total", "Dispatch manifests built");
+    private Map<String, Package> packages = new ConcurrentHashMap<>(); // ready to ship, by packageId
+    private final Map<String, Set<String>> readyByCarrier = new ConcurrentHashMap<>(); // guarded by carrierLocks
+    private final Map<String, String> manifestByPackage = new ConcurrentHashMap<>(); // cold: shipped packageId -> manifestId
+    private Map<String, DispatchManifest> manifests = new ConcurrentHashMap<>();
+    private Map<String, Carrier> carriers = new ConcurrentHashMap<>();
+    private final StripedLocks carrierLocks = new StripedLocks(16);
+    private final StripedLocks manifestLocks = new StripedLocks(64);
+    private Consumer<Package> packageStatusListener = p -> {};
+    private MutationLog journal = MutationLog.NONE;
+
+    public void setJournal(MutationLog journal) { this.journal = journal; }
+    // Packing indexes packages by status, so it hears about the MANIFESTED transition made here
+    public void setPackageStatusListener(Consumer<Package> listener) { this.packageStatusListener = listener; }
+    public Map<String, Package> getPackages() { return Collections.unmodifiableMap(packages); }
+    public Map<String, DispatchManifest> getManifests() { return Collections.unmodifiableMap(manifests); }
+    public String getManifestIdForPackage(String packageId) { return manifestByPackage.get(packageId); }
+    public int getReadyCount(String carrierId) {
+        return carrierLocks.withLock(carrierId, () -> readyByCarrier.getOrDefault(carrierId, Set.of()).size());
+    }
 
-    public void addPackage(Package p) { packages.put(p.getPackageId(), p); }
+    // Replay: packages on a manifest leave the ready queues, whatever order their lines come back in
+    void restoreManifest(DispatchManifest m) {
+        if (m.packageIds == null) m.packageIds = new ArrayList<>(); // journaled before manifests listed their packages
+        manifests.put(m.getManifestId(), m);
+        for (String packageId : m.getPackageIds()) {
+            manifestByPackage.put(packageId, m.getManifestId());
+            forgetPackage(packageId);
+        }
+    }
+    // Replay of a package leaving the ready queues
+    void forgetPackage(String packageId) {
+        Package p = packages.remove(packageId);
+        if (p != null && p.getCarrierId() != null) {
+            carrierLocks.withLock(p.getCarrierId(), () -> readyByCarrier.getOrDefault(p.getCarrierId(), new HashSet<>()).remove(packageId));
+        }
+    }
+    // Replay replaces Package instances, so keep dispatch pointing at the one PackingManager holds
+    void relinkPackage(Package p) { packages.replace(p.getPackageId(), p); }
+
+    // Queues a LABELED package for its carrier's next manifest; a package already queued or shipped is ignored
+    public boolean addPackage(Package p) {
+        String carrierId = p.getCarrierId();
+        if (carrierId == null || p.getStatus() != PackageStatus.LABELED) return false;
+        boolean added = carrierLocks.withLock(carrierId, () -> {
+            if (manifestByPackage.containsKey(p.getPackageId()) || packages.putIfAbsent(p.getPackageId(), p) != null) return false;
+            readyByCarrier.computeIfAbsent(carrierId, c -> new LinkedHashSet<>()).add(p.getPackageId());
+            return true;
+        });
+        if (added) journal.record("dispatchPackage", p.getPackageId(), p);
+        return added;
+    }
     public void addCarrier(Carrier c) { carriers.put(c.getCarrierId(), c); }
 
     public DispatchManifest createDispatchManifestForCarrier(String carrierId) {
-        if (!carriers.containsKey(carrierId)) return null;
-
-        List<Package> readyPackages = packages.values().stream()
-                .filter(p -> "LABELED".equals(p.getStatus()))
-                .collect(Collectors.toList());
-
-        if (readyPackages.isEmpty()) return null;
-
-        DispatchManifest manifest = new DispatchManifest("MAN-" + System.currentTimeMillis(), carrierId, carriers.get(carrierId).getCarrierName());
-        manifests.put(manifest.getManifestId(), manifest);
-        return manifest;
+        Carrier carrier = carriers.get(carrierId);
+        if (carrier == null) return null;
+
+        return carrierLocks.withLock(carrierId, () -> {
+            Set<String> ready = readyByCarrier.remove(carrierId);
+            if (ready == null || ready.isEmpty()) return null;
+
+            DispatchManifest manifest = new DispatchManifest(IdGenerator.next("MAN"), carrierId, carrier.getCarrierName());
+            List<Package> shipped = new ArrayList<>(ready.size());
+            for (String packageId : ready) {
+                Package p = packages.remove(packageId);
+                if (p == null || !p.compareAndSetStatus(PackageStatus.LABELED, PackageStatus.MANIFESTED)) continue;
+                p.manifestId = manifest.getManifestId();
+                manifest.packageIds.add(packageId);
+                manifestByPackage.put(packageId, manifest.getManifestId());
+                shipped.add(p);
+            }
+            if (shipped.isEmpty()) return null;
+            manifests.put(manifest.getManifestId(), manifest);
+            journal.record("manifest", manifest.getManifestId(), manifest);
+            MANIFESTS_BUILT.increment();
+            shipped.forEach(p -> {
+                packageStatusListener.accept(p);
+                journal.record("package", p.getPackageId(), p);
+                journal.removed("dispatchPackage", p.getPackageId(), p);
+            });
+            return manifest;
+        });
     }
 
     public boolean recordPickup(String manifestId, String sig, String confNum) {
         DispatchManifest manifest = manifests.get(manifestId);
         if (manifest == null) return false;
-        manifest.recordPickup(sig, confNum);
-        return true;
+        return manifestLocks.withLock(manifestId, () -> {
+            if (!manifest.recordPickup(sig, confNum)) return false;
+            journal.record("manifest", manifestId, manifest);
+            return true;
+        });
+    }
+}
+
+// One command of POST /api/batch. Each op acts on one kind of entity, named by `target`: a pick list, return, package or
+// manifest. Commands on the same target run together, in the order they were sent.
+final class BatchCommand {
+    enum Op {
+        PICK("pick", "listId"), APPROVE_RETURN("approveReturn", "returnId"), LABEL("label", "packageId"), HANDOVER("handover", "manifestId");
+        final String wireName, targetField;
+        Op(String wireName, String targetField) { this.wireName = wireName; this.targetField = targetField; }
+    }
+
+    final int index;
+    final Op op;
+    final String target, itemId, carrierId, serviceLevel;
+    final int quantity;
+
+    private BatchCommand(int index, Op op, String target, String itemId, int quantity, String carrierId, String serviceLevel) {
+        this.index = index; this.op = op; this.target = target; this.itemId = itemId; this.quantity = quantity;
+        this.carrierId = carrierId; this.serviceLevel = serviceLevel;
+    }
+
+    String groupKey() { return op.wireName + '/' + target; }
+
+    // A JSON array of {op, <target field>, ...}: pick {listId, itemId, quantity}, approveReturn {returnId},
+    // label {packageId, carrierId, serviceLevel}, handover {manifestId}. A malformed command rejects the whole batch.
+    static List<BatchCommand> readAll(JsonReader in, int maxCommands) throws IOException {
+        List<BatchCommand> commands = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            int index = commands.size();
+            if (index == maxCommands) throw new IllegalArgumentException("Batch exceeds " + maxCommands + " commands");
+            Map<String, String> fields = new HashMap<>();
+            Integer quantity = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                switch (name) {
+                    case "quantity": case "qty": quantity = in.nextInt(); break;
+                    case "op": case "listId": case "returnId": case "packageId": case "manifestId": case "itemId": case "carrierId": case "serviceLevel":
+                        fields.put(name, in.nextString()); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            Op op = null;
+            for (Op candidate : Op.values()) if (candidate.wireName.equals(fields.get("op"))) op = candidate;
+            if (op == null) throw new IllegalArgumentException("Command " + index + ": op must be one of pick, approveReturn, label, handover");
+            String target = fields.get(op.targetField);
+            if (target == null) throw new IllegalArgumentException("Command " + index + ": " + op.targetField + " is required");
+            if (op == Op.PICK && (fields.get("itemId") == null || quantity == null || quantity <= 0)) {
+                throw new IllegalArgumentException("Command " + index + ": pick needs itemId and a positive quantity");
+            }
+            if (op == Op.LABEL && (fields.get("carrierId") == null || fields.get("serviceLevel") == null)) {
+                throw new IllegalArgumentException("Command " + index + ": label needs carrierId and serviceLevel");
+            }
+            commands.add(new BatchCommand(index, op, target, fields.get("itemId"), quantity == null ? 0 : quantity,
+                    fields.get("carrierId"), fields.get("serviceLevel")));
+        }
+        in.endArray();
+        if (commands.isEmpty()) throw new IllegalArgumentException("No commands submitted");
+        return commands;
+    }
+}
+
+// HTTP status and body of one command, as its single route would answer it
+final class CommandResult {
+    final int status;
+    final Object body;
+    CommandResult(int status, Object body) { this.status = status; this.body = body; }
+    boolean succeeded() { return status < 400; }
+}
+
+// The scanner-facing commands behind API 15 (pick), 18 (label), 21 (handover) and 24 (return approval), shared by
+// their single routes and POST /api/batch so both answer alike
+final class WarehouseCommands {
+    private final PickingManager picking;
+    private final PackingManager packing;
+    private final LabelManager labels;
+    private final DispatchManager dispatch;
+    private final ReturnService returns;
+
+    WarehouseCommands(PickingManager picking, PackingManager packing, LabelManager labels, DispatchManager dispatch, ReturnService returns) {
+        this.picking = picking; this.packing = packing; this.labels = labels; this.dispatch = dispatch; this.returns = returns;
+    }
+
+    CommandResult pick(String listId, String itemId, int quantity) {
+        return picked(picking.recordPickedItem(listId, itemId, quantity, "Picked via API"), listId, itemId, quantity);
+    }
+
+    private static CommandResult picked(boolean success, String listId, String itemId, int quantity) {
+        if (!success) return new CommandResult(400, Map.of("error", "Could not record picked item. Check picklist status or item ID."));
+        return new CommandResult(200, Map.of("status", "Item " + itemId + " on list " + listId + " marked as picked with quantity " + quantity));
+    }
+
+    CommandResult approveReturn(String returnId) {
+        if (!returns.approveReturn(returnId)) return new CommandResult(404, Map.of("error", "Return request not found or not pending."));
+        return new CommandResult(200, Map.of("status", "Return request " + returnId + " approved."));
+    }
+
+    // Verify, label, and make the package discoverable by Dispatch
+    CommandResult label(String packageId, String carrierId, String serviceLevel) {
+        Package pkg = packing.getPackages().get(packageId);
+        if (pkg == null) return new CommandResult(404, Map.of("error", "Package not found"));
+        String shippedOn = dispatch.getManifestIdForPackage(packageId);
+        if (shippedOn != null) return new CommandResult(400, Map.of("error", "Package already dispatched on manifest " + shippedOn));
+        if (!packing.verifyPackage(packageId, "Auto-verified by API")) {
+            return new CommandResult(400, Map.of("error", "Package is " + pkg.getStatus() + "; only PACKING packages can be labeled"));
+        }
+        ShippingLabel label = labels.generateShippingLabel(pkg, carrierId, serviceLevel);
+        if (label == null) return new CommandResult(400, Map.of("error", "Could not generate label. Check package status, carrier, or customer address."));
+        packing.markLabeled(packageId, carrierId); // <- enable dispatch eligibility
+        dispatch.addPackage(pkg);                  // <- queue it for the carrier's next manifest
+        return new CommandResult(200, label);
+    }
+
+    CommandResult handover(String manifestId) {
+        if (!dispatch.recordPickup(manifestId, "SIGNATURE_ON_FILE", "CONF-" + new Random().nextInt())) {
+            return new CommandResult(400, Map.of("error", "Manifest not found or not ready for pickup."));
+        }
+        return new CommandResult(200, Map.of("status", "Manifest " + manifestId + " handed over to courier."));
+    }
+
+    // Runs the commands grouped by target, groups in order of first appearance; a pick list's scans are checked against
+    // the list once. Results come back in submission order.
+    List<CommandResult> execute(List<BatchCommand> commands) {
+        Map<String, List<BatchCommand>> byTarget = new LinkedHashMap<>();
+        for (BatchCommand c : commands) byTarget.computeIfAbsent(c.groupKey(), k -> new ArrayList<>()).add(c);
+        CommandResult[] results = new CommandResult[commands.size()];
+        for (List<BatchCommand> group : byTarget.values()) {
+            BatchCommand first = group.get(0);
+            switch (first.op) {
+                case PICK: {
+                    String[] itemIds = new String[group.size()];
+                    int[] quantities = new int[group.size()];
+                    for (int i = 0; i < itemIds.length; i++) { itemIds[i] = group.get(i).itemId; quantities[i] = group.get(i).quantity; }
+                    boolean[] picked = picking.recordPickedItems(first.target, itemIds, quantities, "Picked via batch");
+                    for (int i = 0; i < picked.length; i++) results[group.get(i).index] = picked(picked[i], first.target, itemIds[i], quantities[i]);
+                    break;
+                }
+                case APPROVE_RETURN: for (BatchCommand c : group) results[c.index] = approveReturn(c.target); break;
+                case LABEL: for (BatchCommand c : group) results[c.index] = label(c.target, c.carrierId, c.serviceLevel); break;
+                case HANDOVER: for (BatchCommand c : group) results[c.index] = handover(c.target); break;
+            }
+        }
+        return Arrays.asList(results);
     }
 }
 
 // Minimal supporting classes for BP9-12
+// PENDING -> PROCESSING -> PICKING -> PICKED (batch lists, once every list of the order is done) -> PACKING;
+// single pick lists go straight from PICKING to PACKING
+enum OrderStatus {
+    PENDING, PROCESSING, PICKING, PICKED, PACKING;
+    boolean canBecome(OrderStatus next) { return next.ordinal() == ordinal() + 1 || this == PICKING && next == PACKING; }
+}
 class Order {
-    String orderId, customerId, status, priority;
-    List<OrderItem> items = new ArrayList<>();
-    public Order(String oid, String cid, String prio) { this.orderId = oid; this.customerId = cid; this.priority = prio; this.status = "PENDING"; }
+    private static final AtomicReferenceFieldUpdater<Order, OrderStatus> STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(Order.class, OrderStatus.class, "status");
+    String orderId, customerId, priority; volatile OrderStatus status;
+    String carrierId; LocalDateTime shipBy; // carrier and its cutoff, used to group orders into waves
+    List<OrderItem> items = new CopyOnWriteArrayList<>();
+    public Order(String oid, String cid, String prio) { this.orderId = oid; this.customerId = cid; this.priority = prio; this.status = OrderStatus.PENDING; }
+    Order(String oid, String cid, String prio, List<OrderItem> items) { this(oid, cid, prio); this.items.addAll(items); } // one copy
     public void addOrderItem(String iid, String name, int qty, double price) { items.add(new OrderItem(iid, name, qty, price)); }
     public String getOrderId() { return orderId; }
-    public String getOrderStatus() { return status; }
-    public void setProcessingStatus() { this.status = "PROCESSING"; }
-    public void updateOrderStatus(String newStatus) { this.status = newStatus; }
+    public String getPriority() { return priority; }
+    public List<OrderItem> getItems() { return Collections.unmodifiableList(items); }
+    public String getCarrierId() { return carrierId; }
+    public LocalDateTime getShipBy() { return shipBy; }
+    public void setCarrierCutoff(String carrierId, LocalDateTime shipBy) { this.carrierId = carrierId; this.shipBy = shipBy; }
+    public OrderStatus getOrderStatus() { return status; }
+    public boolean setProcessingStatus() { return compareAndSetStatus(OrderStatus.PENDING, OrderStatus.PROCESSING); }
+    // From whatever status the order holds now, if the lifecycle allows it
+    public boolean updateOrderStatus(OrderStatus next) {
+        for (OrderStatus current = status; current.canBecome(next); current = status) {
+            if (STATUS.compareAndSet(this, current, next)) return true;
+        }
+        return false;
+    }
+    public boolean compareAndSetStatus(OrderStatus expected, OrderStatus next) {
+        return expected.canBecome(next) && STATUS.compareAndSet(this, expected, next);
+    }
+}
+class OrderItem {
+    String itemId, itemName; int quantity; double unitPrice;
+    public OrderItem(String itemId, String itemName, int quantity, double unitPrice) {
+        this.itemId = itemId; this.itemName = itemName; this.quantity = quantity; this.unitPrice = unitPrice;
+    }
+    public String getItemId() { return itemId; }
+    public String getItemName() { return itemName; }
+    public int getQuantity() { return quantity; }
+    public double getUnitPrice() { return unitPrice; }
 }
-class OrderItem { public OrderItem(String a, String b, int c, double d){} }
 class Customer {
     String customerId, firstName, lastName, email; Address shipping, billing;
     public Customer(String id, String fn, String ln, String e) { this.customerId = id; this.firstName = fn; this.lastName = ln; this.email = e; }
@@ -1083,18 +5482,47 @@ class Customer {
 class Address {
     public Address(String a, String b, String c, String d, String e, String f) {}
 }
-class Package {
-    String packageId, orderId, pickListId, packageType, status;
-    public Package(String pid, String oid, String plid, String pt) { this.packageId = pid; this.orderId = oid; this.pickListId = plid; this.packageType = pt; this.status="PACKING"; }
+// PACKING -> VERIFIED -> LABELED -> MANIFESTED
+enum PackageStatus {
+    PACKING, VERIFIED, LABELED, MANIFESTED;
+    boolean canBecome(PackageStatus next) { return next.ordinal() == ordinal() + 1; }
+}
+class Package implements JsonWritable {
+    private static final AtomicReferenceFieldUpdater<Package, PackageStatus> STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(Package.class, PackageStatus.class, "status");
+    String packageId, orderId, pickListId, packageType; volatile PackageStatus status;
+    String carrierId, manifestId;
+    public Package(String pid, String oid, String plid, String pt) { this.packageId = pid; this.orderId = oid; this.pickListId = plid; this.packageType = pt; this.status = PackageStatus.PACKING; }
     public String getPackageId() { return packageId; }
-    public String getStatus() { return status; }
-    public void verifyPackage(String notes) { this.status = "VERIFIED"; }
-    public void markLabeled() { this.status = "LABELED"; }
+    public String getOrderId() { return orderId; }
+    public PackageStatus getStatus() { return status; }
+    public String getCarrierId() { return carrierId; }
+    public String getManifestId() { return manifestId; }
+    public boolean verifyPackage(String notes) { return compareAndSetStatus(PackageStatus.PACKING, PackageStatus.VERIFIED); }
+    public boolean markLabeled(String carrierId) {
+        this.carrierId = carrierId; // published by the status write below
+        return compareAndSetStatus(PackageStatus.VERIFIED, PackageStatus.LABELED);
+    }
+    public boolean compareAndSetStatus(PackageStatus expected, PackageStatus next) {
+        return expected.canBecome(next) && STATUS.compareAndSet(this, expected, next);
+    }
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject().name("packageId").value(packageId).name("orderId").value(orderId).name("pickListId").value(pickListId);
+        out.name("packageType").value(packageType).name("status").value(status.name());
+        out.name("carrierId").value(carrierId).name("manifestId").value(manifestId).endObject();
+    }
 }
-class ShippingLabel {
-    String labelId;
-    public ShippingLabel(String lid, String pid, String oid, String cid) { this.labelId = lid; }
+class ShippingLabel implements JsonWritable {
+    String labelId, packageId, orderId, carrierId;
+    public ShippingLabel(String lid, String pid, String oid, String cid) { this.labelId = lid; this.packageId = pid; this.orderId = oid; this.carrierId = cid; }
     public String getLabelId() { return labelId; }
+    public String getOrderId() { return orderId; }
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject().name("labelId").value(labelId).name("packageId").value(packageId).name("orderId").value(orderId)
+                .name("carrierId").value(carrierId).endObject();
+    }
 }
 class Carrier {
     String carrierId, carrierName, carrierCode;
@@ -1103,11 +5531,31 @@ class Carrier {
     public String getCarrierName() { return carrierName; }
     public void addServiceType(String type, double rate) {}
 }
-class DispatchManifest {
-    String manifestId;
-    public DispatchManifest(String id, String cid, String cname) { this.manifestId = id; }
+class DispatchManifest implements JsonWritable {
+    String manifestId, carrierId, carrierName, status;
+    LocalDateTime createdAt, pickedUpAt;
+    String confirmationNumber;
+    List<String> packageIds = new ArrayList<>();
+    public DispatchManifest(String id, String cid, String cname) {
+        this.manifestId = id; this.carrierId = cid; this.carrierName = cname; this.status = "CREATED"; this.createdAt = LocalDateTime.now();
+    }
     public String getManifestId() { return manifestId; }
-    public void recordPickup(String sig, String conf) {}
+    public String getStatus() { return status; }
+    public List<String> getPackageIds() { return packageIds; }
+    // Callers hold the manifest lock; a manifest is handed over once
+    boolean recordPickup(String sig, String conf) {
+        if (!"CREATED".equals(status)) return false;
+        this.status = "PICKED_UP"; this.pickedUpAt = LocalDateTime.now(); this.confirmationNumber = conf;
+        return true;
+    }
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject().name("manifestId").value(manifestId).name("carrierId").value(carrierId).name("carrierName").value(carrierName);
+        out.name("status").value(status).name("createdAt").value(JsonSupport.iso(createdAt)).name("pickedUpAt").value(JsonSupport.iso(pickedUpAt));
+        out.name("confirmationNumber").value(confirmationNumber).name("packageIds").beginArray();
+        for (String id : packageIds) out.value(id);
+        out.endArray().endObject();
+    }
 }
 
 
@@ -1129,24 +5577,41 @@ class Customer_BP14 {
     public Customer_BP14(String id, String name) { this.id = id; this.name = name; }
     public ReturnRequest initiateReturnRequest(Goods g, String r) { return new ReturnRequest(this, g, r); }
 }
-enum ReturnStatus { PENDING, APPROVED, REJECTED, COMPLETED }
+// PENDING -> APPROVED -> COMPLETED once restocked; PENDING -> REJECTED
+enum ReturnStatus {
+    PENDING, APPROVED, REJECTED, COMPLETED;
+    boolean canBecome(ReturnStatus next) {
+        return this == PENDING ? next == APPROVED || next == REJECTED : this == APPROVED && next == COMPLETED;
+    }
+}
 class ReturnRequest {
-    String returnId; Customer_BP14 customer; Goods goods; String reason; ReturnStatus status;
+    private static final AtomicReferenceFieldUpdater<ReturnRequest, ReturnStatus> STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(ReturnRequest.class, ReturnStatus.class, "status");
+    String returnId; Customer_BP14 customer; Goods goods; String reason; volatile ReturnStatus status;
     public ReturnRequest(Customer_BP14 c, Goods g, String r) {
-        this.returnId = "RET-" + System.currentTimeMillis(); customer = c; goods = g; reason = r; status = ReturnStatus.PENDING;
+        this.returnId = IdGenerator.next("RET"); customer = c; goods = g; reason = r; status = ReturnStatus.PENDING;
     }
-    public void approve() { this.status = ReturnStatus.APPROVED; }
+    public boolean approve() { return compareAndSetStatus(ReturnStatus.PENDING, ReturnStatus.APPROVED); }
     public ReturnStatus getStatus() { return status; }
+    public boolean compareAndSetStatus(ReturnStatus expected, ReturnStatus next) {
+        return expected.canBecome(next) && STATUS.compareAndSet(this, expected, next);
+    }
     public Goods getGoods() { return goods; }
     public String getReturnId() { return returnId; }
 }
 
-class ReturnService {
+class ReturnService implements Journaled {
     private InventorySystem ims;
-    private Map<String, ReturnRequest> returnRequests = new HashMap<>();
-    private Map<String, Customer_BP14> customers = new HashMap<>();
-    private Map<String, Goods> items = new HashMap<>();
+    private Map<String, ReturnRequest> returnRequests = new ConcurrentHashMap<>();
+    private final StatusIndex<ReturnStatus, ReturnRequest> returnsByStatus = new StatusIndex<>(ReturnStatus.class, ReturnRequest::getStatus);
+    private Map<String, Customer_BP14> customers = new ConcurrentHashMap<>();
+    private Map<String, Goods> items = new ConcurrentHashMap<>();
+    private MutationLog journal = MutationLog.NONE;
     public ReturnService(InventorySystem ims) { this.ims = ims; setupReturnData(); }
+    public void setJournal(MutationLog journal) { this.journal = journal; }
+    public Map<String, ReturnRequest> getReturnRequests() { return Collections.unmodifiableMap(returnRequests); }
+    public NavigableMap<String, ReturnRequest> getReturnsByStatus(ReturnStatus status) { return returnsByStatus.get(status); }
+    void restoreReturn(ReturnRequest r) { returnRequests.put(r.getReturnId(), r); returnsByStatus.update(r.getReturnId(), r); }
 
     private void setupReturnData() {
         customers.put("CUST-001", new Customer_BP14("CUST-001", "John Doe"));
@@ -1159,25 +5624,29 @@ class ReturnService {
         if (c == null || g == null) return null;
         ReturnRequest request = new ReturnRequest(c, g, reason);
         returnRequests.put(request.getReturnId(), request);
+        returnsByStatus.update(request.getReturnId(), request);
+        journal.record("return", request.getReturnId(), request);
         return request;
     }
 
     public boolean approveReturn(String returnId) {
         ReturnRequest request = returnRequests.get(returnId);
-        if (request == null) return false;
-        request.approve();
+        if (request == null || !request.approve()) return false;
+        returnsByStatus.update(returnId, request);
+        journal.record("return", returnId, request);
         return true;
     }
 
     public String processReceivedReturn(String returnId, String staffName) {
         ReturnRequest request = returnRequests.get(returnId);
         if (request == null) return "Return request not found.";
-        if (request.getStatus() != ReturnStatus.APPROVED) return "Return request not approved.";
+        // Claim the return before restocking so a repeated call can never restock twice
+        if (!request.compareAndSetStatus(ReturnStatus.APPROVED, ReturnStatus.COMPLETED)) return "Return request not approved.";
+        returnsByStatus.update(returnId, request);
+        journal.record("return", returnId, request);
 
-        // Simplified inspection: assume good condition
-        ims.restock(request.getGoods());
-        ims.updateRecords(request.getGoods());
-        request.status = ReturnStatus.COMPLETED;
+        // Simplified inspection: assume good condition, one unit back into the returns bin
+        ims.restock(request.getGoods().getSku(), 1, returnId);
         return "Return processed and item restocked.";
     }
 }
@@ -1212,11 +5681,21 @@ class WarehouseStaff_BP15 {
     public WarehouseStaff_BP15(String n) { this.name = n; }
     public InventoryData gatherInventoryData(String itemId) { return new InventoryData(itemId, 100); }
 }
-class AuditService {
-    private Map<String, AuditRequest> requests = new HashMap<>();
-    private Map<String, InventoryData> auditData = new HashMap<>();
-    public void addRequest(AuditRequest r) { requests.put(r.getRequestId(), r); }
-    public void addInventoryData(String reqId, InventoryData d) { auditData.put(reqId, d); }
+class AuditService implements Journaled {
+    private Map<String, AuditRequest> requests = new ConcurrentHashMap<>();
+    private Map<String, InventoryData> auditData = new ConcurrentHashMap<>();
+    private MutationLog journal = MutationLog.NONE;
+    public void setJournal(MutationLog journal) { this.journal = journal; }
+    public Map<String, AuditRequest> getRequests() { return Collections.unmodifiableMap(requests); }
+    public Map<String, InventoryData> getAuditData() { return Collections.unmodifiableMap(auditData); }
+    public void addRequest(AuditRequest r) {
+        requests.put(r.getRequestId(), r);
+        journal.record("auditRequest", r.getRequestId(), r);
+    }
+    public void addInventoryData(String reqId, InventoryData d) {
+        auditData.put(reqId, d);
+        journal.record("auditData", reqId, d);
+    }
 
     public boolean validateRecords(InventoryData data) { return data.getQuantity() >= 0; }
 
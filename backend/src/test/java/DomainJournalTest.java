@@ -0,0 +1,70 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DomainJournalTest {
+    @TempDir Path dir;
+
+    @Test
+    void tornLastLineIsDroppedAndEarlierRecordsReplayed() throws Exception {
+        Files.write(dir.resolve("journal-000001.log"), List.of(line("IR-1", 5), line("IR-2", 6), "{\"k\":\"inventoryRecord\",\"id\":\"IR-3\",\"v\":{\"rec"),
+                StandardCharsets.UTF_8);
+
+        Map<String, InventoryRecord> restored = recover();
+
+        assertEquals(Set.of("IR-1", "IR-2"), restored.keySet());
+        assertEquals(6, restored.get("IR-2").getQuantityOnHand());
+    }
+
+    @Test
+    void corruptLineBeforeTheEndFailsRecovery() throws Exception {
+        Files.write(dir.resolve("journal-000001.log"), List.of(line("IR-1", 5), "{\"k\":\"inventoryRecord\",\"id\":\"IR-2\",\"v\":{", line("IR-3", 7)),
+                StandardCharsets.UTF_8);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, this::recover);
+        assertTrue(e.getMessage().contains("line 2"), e.getMessage());
+    }
+
+    @Test
+    void recordsAfterCloseAreRefusedAndEverythingBeforeIsKept() throws Exception {
+        DomainJournal journal = journal(new ConcurrentHashMap<>());
+        journal.recover();
+        journal.start();
+        for (int i = 0; i < 1_000; i++) journal.record("inventoryRecord", "IR-" + i, record("IR-" + i, i));
+        journal.close();
+        journal.record("inventoryRecord", "IR-late", record("IR-late", 1));
+
+        Map<String, InventoryRecord> restored = recover();
+
+        assertEquals(1_000, restored.size());
+        assertEquals(999, restored.get("IR-999").getQuantityOnHand());
+        assertFalse(restored.containsKey("IR-late"));
+    }
+
+    private Map<String, InventoryRecord> recover() {
+        Map<String, InventoryRecord> restored = new ConcurrentHashMap<>();
+        journal(restored).recover();
+        return restored;
+    }
+
+    private DomainJournal journal(Map<String, InventoryRecord> restored) {
+        DomainJournal journal = new DomainJournal(dir, 64, Long.MAX_VALUE, Long.MAX_VALUE);
+        journal.register("inventoryRecord", InventoryRecord.class, restored::put, restored::remove);
+        return journal;
+    }
+
+    private static InventoryRecord record(String id, int quantity) { return new InventoryRecord(id, "ITEM-1", "WH-1", "A1-01", quantity); }
+
+    private static String line(String id, int quantity) {
+        return "{\"k\":\"inventoryRecord\",\"id\":\"" + id + "\",\"v\":" + DomainJournal.createGson().toJson(record(id, quantity)) + "}";
+    }
+}
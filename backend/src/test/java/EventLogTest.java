@@ -0,0 +1,44 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventLogTest {
+
+    @Test
+    void writesPublishedEventsAsJsonLines() {
+        StringWriter out = new StringWriter();
+        EventLog log = new EventLog(out, 16, EventLog.Level.INFO);
+        log.event(EventLog.Level.INFO, "pick.recorded").with("itemId", "ITEM-1").with("qty", 3).publish();
+        log.event(EventLog.Level.DEBUG, "below.level").with("ignored", 1).publish();
+        log.close();
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(1, lines.length);
+        assertTrue(lines[0].contains("\"event\":\"pick.recorded\",\"itemId\":\"ITEM-1\",\"qty\":3}"), lines[0]);
+    }
+
+    @Test
+    void eventNeverPublishedIsAbandonedAndLaterEventsStillWritten() {
+        StringWriter out = new StringWriter();
+        EventLog log = new EventLog(out, 4, EventLog.Level.INFO);
+        try {
+            log.event(EventLog.Level.INFO, "claimed.then.threw").with("value", failingValue());
+            fail("expected the with() argument to throw");
+        } catch (IllegalStateException expected) {
+            // the slot stays claimed and unpublished
+        }
+        for (int i = 0; i < 10; i++) log.event(EventLog.Level.INFO, "after").with("i", i).publish();
+        log.close();
+
+        String written = out.toString();
+        assertFalse(written.contains("claimed.then.threw"));
+        assertTrue(written.contains("\"event\":\"after\",\"i\":0}"), written);
+        assertTrue(written.contains("\"event\":\"log.dropped\""), written);
+        // Every event is either written or counted as dropped: the ten after it, plus the abandoned one
+        assertEquals(11, written.split("\"event\":\"after\"").length - 1 + log.getDropped(), written);
+    }
+
+    private static Object failingValue() { throw new IllegalStateException("boom"); }
+}
@@ -0,0 +1,182 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Every thread drives the same manager instance through the striped-lock and compare-and-set paths, released together
+// by a start gate; afterwards the totals must match what the threads were told succeeded, so a lost update fails.
+class ManagerConcurrencyTest {
+    private static final int THREADS = 8;
+
+    @Test
+    void procurementOrdersEachRequisitionOnce() throws Exception {
+        ProcurementManager_BP8 manager = new ProcurementManager_BP8("MGR-TEST", new BigDecimal("10000"));
+        for (int i = 0; i < 50; i++) manager.addItem(item(i));
+        Supplier_BP8 supplier = new Supplier_BP8("SUP-01", "Supplier", "Contact", "s@example.com", "555-0", "1 Supply Rd");
+        for (int i = 0; i < 50; i++) supplier.setQuote(itemId(i), BigDecimal.TEN);
+        manager.addSupplier(supplier);
+        List<String> shared = new ArrayList<>();
+        for (int i = 0; i < 200; i++) shared.add(manager.createPurchaseRequisition(itemId(i % 50), 0, "TEST").getRequisitionId());
+        LongAdder ordered = new LongAdder(), created = new LongAdder();
+
+        hammer(t -> {
+            // All threads race to approve and order the same requisitions, each in its own order, and add their own
+            List<String> ids = new ArrayList<>(shared);
+            Collections.shuffle(ids, new Random(t));
+            for (int i = 0; i < ids.size(); i++) {
+                manager.approveRequisition(ids.get(i), "TEST-" + t);
+                if (manager.generatePurchaseOrder(ids.get(i), "1 Test St") != null) ordered.increment();
+                PurchaseRequisition own = manager.createPurchaseRequisition(itemId(i % 50), 0, "TEST-" + t);
+                created.increment();
+                assertTrue(manager.approveRequisition(own.getRequisitionId(), "TEST-" + t));
+                assertNotNull(manager.generatePurchaseOrder(own.getRequisitionId(), "1 Test St"));
+                ordered.increment();
+            }
+        });
+
+        assertEquals(shared.size() + created.sum(), manager.getPurchaseRequisitions().size());
+        assertEquals(manager.getPurchaseRequisitions().size(), ordered.sum(), "one purchase order per requisition");
+        assertEquals(ordered.sum(), manager.getPurchaseOrders().size());
+        for (PurchaseRequisition req : manager.getPurchaseRequisitions().values()) assertEquals(RequisitionStatus.ORDERED, req.getStatus());
+        assertEquals(manager.getPurchaseRequisitions().size(), manager.getRequisitionsByStatus(RequisitionStatus.ORDERED).size());
+    }
+
+    @Test
+    void putAwayKeepsEveryStoredUnit() throws Exception {
+        StorageManager storage = new StorageManager();
+        Warehouse wh = new Warehouse("WH-1", "Test Warehouse", "1 Test St", Integer.MAX_VALUE);
+        // Few small bins, so threads keep landing on the same bin, fill it and open overflow bins
+        for (int i = 0; i < 16; i++) wh.addStorageLocation(new StorageLocation("LOC-" + i, 1_000));
+        storage.addWarehouse(wh);
+        LongAdder stored = new LongAdder(), refused = new LongAdder();
+
+        hammer(t -> {
+            for (int i = 0; i < 5_000; i++) {
+                if (storage.processItemStorage(itemId(i % 100), "WH-1", 1, "TEST-" + t)) stored.increment();
+                else refused.increment();
+            }
+        });
+
+        assertEquals(0, refused.sum(), "full bins are overflowed into new ones");
+        assertEquals(THREADS * 5_000L, stored.sum());
+        long used = 0;
+        for (StorageLocation loc : wh.getStorageLocations().values()) {
+            assertTrue(loc.getUsedSpace() <= loc.getCapacity(), loc.getLocationId() + " over capacity");
+            used += loc.getUsedSpace();
+        }
+        assertEquals(stored.sum(), used);
+        assertEquals(stored.sum(), wh.getUsedCapacity());
+    }
+
+    @Test
+    void pickListsAreGeneratedAndAssignedOnce() throws Exception {
+        PickingManager picking = new PickingManager();
+        for (int i = 0; i < 500; i++) {
+            Order order = new Order("ORD-" + i, "CUST-1", "NORMAL");
+            order.addOrderItem(itemId(i % 20), "Item", 1, 1.0);
+            order.setProcessingStatus();
+            picking.addOrder(order);
+        }
+        for (int p = 1; p <= THREADS; p++) picking.addPicker("PICKER-0" + p);
+        LongAdder generated = new LongAdder(), assigned = new LongAdder(), completed = new LongAdder();
+
+        hammer(t -> {
+            Random random = new Random(t);
+            for (int i = 0; i < 500; i++) {
+                if (picking.generatePickList("ORD-" + i) != null) generated.increment();
+                List<String> ids = new ArrayList<>(picking.getPickLists().keySet());
+                if (ids.isEmpty()) continue; // the order's claim is in, its list not yet filed
+                if (picking.assignPickList(ids.get(random.nextInt(ids.size())), "PICKER-0" + (1 + random.nextInt(THREADS)))) assigned.increment();
+                if (picking.completePickList(ids.get(random.nextInt(ids.size()))) != null) completed.increment();
+            }
+        });
+
+        assertEquals(500, generated.sum(), "one pick list per order");
+        assertEquals(500, picking.getPickLists().size());
+        assertEquals(500, picking.getPickLists().values().stream().map(PickList::getOrderId).distinct().count());
+        assertEquals(assigned.sum(), picking.getPickLists().values().stream().filter(pl -> pl.getAssignedTo() != null).count());
+        assertEquals(completed.sum(), picking.getPickListsByStatus(PickListStatus.COMPLETED).size());
+        Map<String, Long> held = picking.getPickLists().values().stream().filter(pl -> pl.getStatus() == PickListStatus.ASSIGNED)
+                .collect(Collectors.groupingBy(PickList::getAssignedTo, Collectors.counting()));
+        assertTrue(held.values().stream().allMatch(n -> n == 1), "a picker holds one list at a time");
+        assertEquals(held.size(), picking.getPickerStates().stream().filter(p -> p.getStatus() == PickerStatus.BUSY).count());
+        for (PickListStatus status : PickListStatus.values()) {
+            long scanned = picking.getPickLists().values().stream().filter(pl -> pl.getStatus() == status).count();
+            assertEquals(scanned, picking.getPickListsByStatus(status).size(), status + " pick lists in the status index");
+        }
+    }
+
+    @Test
+    void concurrentScansCountEveryUnit() throws Exception {
+        int perThread = 250, lines = 20;
+        List<PickLine> pickLines = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            PickLine line = new PickLine(itemId(i), "A1-" + i);
+            line.allocate("ORD-" + i, THREADS * perThread);
+            pickLines.add(line);
+        }
+        PickList pl = new PickList("PL-TEST", "WAVE-TEST", "NORMAL", new ArrayList<>(), pickLines);
+        assertTrue(pl.compareAndSetStatus(PickListStatus.PENDING, PickListStatus.ASSIGNED));
+        PickingManager picking = new PickingManager();
+        picking.restorePickList(pl);
+        ConcurrentLinkedQueue<String> rejected = new ConcurrentLinkedQueue<>();
+
+        hammer(t -> {
+            for (int i = 0; i < perThread; i++) {
+                for (int l = 0; l < lines; l++) {
+                    if (!picking.recordPickedItem("PL-TEST", itemId((l + t) % lines), 1, "TEST")) rejected.add(itemId(l));
+                }
+            }
+        });
+
+        assertEquals(List.of(), new ArrayList<>(rejected));
+        int[] picked = pl.pickedSnapshot();
+        for (int l = 0; l < lines; l++) assertEquals(THREADS * perThread, picked[l], "units picked on line " + l);
+        assertEquals(PickListStatus.COMPLETED, pl.getStatus(), "the last scan completes the list");
+        assertFalse(picking.recordPickedItem("PL-TEST", itemId(0), 1, "TEST"), "no scan lands on a completed list");
+    }
+
+    private static String itemId(int i) { return "ITEM-" + i; }
+
+    private static Item item(int i) {
+        return new Item(itemId(i), "Item " + i, "Category", String.valueOf(1_000_000 + i), 1.0, 20, 100, BigDecimal.TEN);
+    }
+
+    // Runs work(thread) on THREADS threads started together and rethrows the first failure
+    private static void hammer(IntConsumer work) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    work.accept(id);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }, "stress-" + t);
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+        if (!failures.isEmpty()) {
+            Throwable first = failures.poll();
+            if (first instanceof Error) throw (Error) first;
+            throw (Exception) first;
+        }
+    }
+}
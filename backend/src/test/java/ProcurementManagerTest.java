@@ -0,0 +1,56 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcurementManagerTest {
+
+    @Test
+    void requisitionWithoutItsSupplierStaysApprovedForRetry() {
+        PurchaseRequisition req = approvedRequisition();
+        // A restart that replays the requisition before its supplier, or without it
+        ProcurementManager_BP8 manager = new ProcurementManager_BP8("MGR-TEST", new BigDecimal("10000"));
+        manager.addItem(item());
+        manager.restoreRequisition(req);
+
+        assertNull(manager.generatePurchaseOrder(req.getRequisitionId(), "1 Test St"));
+        assertTrue(manager.consolidateApproved(Duration.ZERO).isEmpty());
+        assertEquals(RequisitionStatus.APPROVED, req.getStatus());
+        assertTrue(manager.getPurchaseOrders().isEmpty());
+
+        manager.addSupplier(supplier());
+        assertNotNull(manager.generatePurchaseOrder(req.getRequisitionId(), "1 Test St"));
+        assertEquals(RequisitionStatus.ORDERED, req.getStatus());
+    }
+
+    @Test
+    void requisitionWithoutItsItemStaysApproved() {
+        PurchaseRequisition req = approvedRequisition();
+        ProcurementManager_BP8 manager = new ProcurementManager_BP8("MGR-TEST", new BigDecimal("10000"));
+        manager.addSupplier(supplier());
+        manager.restoreRequisition(req);
+
+        assertNull(manager.generatePurchaseOrder(req.getRequisitionId(), "1 Test St"));
+        assertTrue(manager.consolidateApproved(Duration.ZERO).isEmpty());
+        assertEquals(RequisitionStatus.APPROVED, req.getStatus());
+    }
+
+    private static PurchaseRequisition approvedRequisition() {
+        ProcurementManager_BP8 source = new ProcurementManager_BP8("MGR-SOURCE", new BigDecimal("10000"));
+        source.addItem(item());
+        source.addSupplier(supplier());
+        PurchaseRequisition req = source.createPurchaseRequisition("ITEM-1", 0, "TEST");
+        assertTrue(source.approveRequisition(req.getRequisitionId(), "TEST"));
+        return req;
+    }
+
+    private static Item item() { return new Item("ITEM-1", "Item", "Category", "1000001", 1.0, 20, 100, BigDecimal.TEN); }
+
+    private static Supplier_BP8 supplier() {
+        Supplier_BP8 supplier = new Supplier_BP8("SUP-01", "Supplier", "Contact", "s@example.com", "555-0", "1 Supply Rd");
+        supplier.setQuote("ITEM-1", BigDecimal.TEN);
+        return supplier;
+    }
+}
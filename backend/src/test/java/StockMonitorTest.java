@@ -0,0 +1,61 @@
+import com.google.gson.stream.JsonReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The stock ledger is wired to the monitor the way the server wires them, so every posting must reach the item's record
+class StockMonitorTest {
+
+    @Test
+    void adjustmentBelowReorderPointAlertsSubscribers() throws Exception {
+        InventorySystem ledger = new InventorySystem();
+        StockMonitor monitor = new StockMonitor();
+        ledger.setMovementListener(m -> monitor.ledgerBalanceChanged("WH-1", m));
+        monitor.addItem(item());
+        ledger.receive("ITEM-1", "A1-01", 30, "GRN-1");
+        List<StockAlert> alerts = new ArrayList<>();
+        monitor.subscribe(alerts::add);
+        assertTrue(monitor.getLowStockAlerts().isEmpty());
+
+        // API 29's body, posted the way the route posts it
+        try (JsonReader in = new JsonReader(new StringReader("{\"sku\":\"ITEM-1\",\"bin\":\"A1-01\",\"delta\":-15,\"reason\":\"Cycle count\"}"))) {
+            ledger.post(List.of(StockAdjustment.read(in)));
+        }
+
+        assertEquals(1, alerts.size());
+        assertEquals("ITEM-1", alerts.get(0).getItemId());
+        assertEquals(15, alerts.get(0).getCurrentQuantity());
+        InventoryRecord record = monitor.getRecordAtLocation("A1-01");
+        assertEquals(alerts.get(0).getRecordId(), record.getRecordId());
+        assertEquals(ledger.getOnHand("ITEM-1"), record.getQuantityOnHand());
+    }
+
+    @Test
+    void recordsAndLedgerAgreeAfterReconcile() {
+        InventorySystem ledger = new InventorySystem();
+        StockMonitor monitor = new StockMonitor();
+        // As after recovery: a seeded record the ledger has never seen, and one that disagrees with the ledger
+        ledger.receive("ITEM-1", "A1-02", 12, "GRN-1");
+        ledger.setMovementListener(m -> monitor.ledgerBalanceChanged("WH-1", m));
+        monitor.addItem(item());
+        monitor.addInventoryRecord(new InventoryRecord("IR-1", "ITEM-1", "WH-1", "A1-01", 30));
+        monitor.addInventoryRecord(new InventoryRecord("IR-2", "ITEM-1", "WH-1", "A1-02", 40));
+
+        monitor.reconcile(ledger);
+        ledger.restock("ITEM-1", 1, "RET-1");
+        ledger.dispose("ITEM-1", "A1-01", 2, "DMG-1");
+
+        assertEquals(28, monitor.getInventoryRecords().get("IR-1").getQuantityOnHand());
+        assertEquals(12, monitor.getInventoryRecords().get("IR-2").getQuantityOnHand());
+        long recorded = monitor.getRecordsForItem("ITEM-1").stream().mapToLong(InventoryRecord::getQuantityOnHand).sum();
+        assertEquals(3, monitor.getRecordsForItem("ITEM-1").size(), "the returns bin gets a record");
+        assertEquals(ledger.getOnHand("ITEM-1"), recorded);
+    }
+
+    private static Item item() { return new Item("ITEM-1", "Item", "Category", "1000001", 1.0, 20, 100, BigDecimal.TEN); }
+}
@@ -85,7 +85,7 @@ export const WarehouseApi = {
     updateFromReceipt: () => fetchJson<StatusResponse>("/inventory/records/update-from-receipt", { method: "POST" }),
 
     // API 9
-    getStockLevel: (itemId: string) => fetchJson<InventoryRecord>(`/inventory/stock-levels/${itemId}`),
+    getStockLevel: (itemId: string) => fetchJson<InventoryRecord[]>(`/inventory/stock-levels/${itemId}`),
 
     // API 10
     runStockMonitor: () => fetchJson<any[]>("/inventory/stock-monitor/run", { method: "POST" }), // Returns List<StockAlert>
@@ -57,8 +57,8 @@ export interface StockMonitorResult {
   reorderTriggered: boolean
 }
 
-export async function getStockLevels(itemId: string): Promise<ApiResponse<InventoryRecord>> {
-  return fetchFromJavaBackend<InventoryRecord>(`/api/inventory/stock-levels/${itemId}`)
+export async function getStockLevels(itemId: string): Promise<ApiResponse<InventoryRecord[]>> {
+  return fetchFromJavaBackend<InventoryRecord[]>(`/api/inventory/stock-levels/${itemId}`)
 }
 
 export async function runStockMonitoring(): Promise<ApiResponse<StockMonitorResult>> {
@@ -240,6 +240,7 @@ export async function getPackageDetails(packageId: string): Promise<ApiResponse<
 export interface ShippingLabel {
   labelId: string
   packageId: string
+  orderId: string
   carrierId: string
   trackingNumber: string
   serviceLevel: string
@@ -121,15 +121,9 @@ export interface Package {
 
 export interface ShippingLabel {
   labelId: string
-  // Other fields like packageId, orderId, carrierId are private in Java class
-  // but Gson serializes all fields by default unless transient.
-  // Based on constructor:
-  // this.labelId = lid;
-  // The other fields are not stored as fields in the class definition provided in the snippet
-  // (only labelId is defined as a field in ShippingLabel class in the text provided).
-  // However, looking closely at ShippingLabel class:
-  // class ShippingLabel { String labelId; ... }
-  // It seems only labelId is exposed.
+  packageId: string
+  orderId: string // the labeled package's order
+  carrierId: string
 }
 
 export interface DispatchManifest {
@@ -52,6 +52,7 @@ export interface Package {
 export interface ShippingLabel {
   labelId: string
   packageId: string
+  orderId: string
   carrierId: string
 }
 